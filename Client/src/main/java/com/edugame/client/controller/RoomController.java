@@ -1540,6 +1540,17 @@ public class RoomController {
                     });
                 }
 
+                @Override
+                public void onStats(VoiceChatManager.VoiceStats stats) {
+                    Platform.runLater(() -> {
+                        if (btnVoiceChat == null || !isVoiceChatActive) return;
+                        btnVoiceChat.setTooltip(new Tooltip(
+                                "Voice Chat đang bật (Nhấn để tắt)\n" +
+                                "Độ trễ: " + stats.bufferedMs + "/" + stats.targetMs + " ms" +
+                                " · Mất: " + stats.lost + " · Đến trễ: " + stats.late));
+                    });
+                }
+
                 @Override
                 public void onError(String error) {
                     Platform.runLater(() -> {
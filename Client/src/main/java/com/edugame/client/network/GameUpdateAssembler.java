@@ -0,0 +1,137 @@
+package com.edugame.client.network;
+
+import com.edugame.common.Protocol;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GameUpdateAssembler - Ghép GAME_UPDATE keyframe + delta thành snapshot đầy đủ
+ *
+ * Server chỉ gửi người chơi / field đã đổi (delta, có baseVersion) và định kỳ
+ * gửi keyframe đầy đủ. Callback của controller luôn nhận danh sách vị trí đầy
+ * đủ như trước. Delta không nối tiếp được version đang có (bị rớt frame) thì
+ * bỏ qua cho đến keyframe kế tiếp.
+ *
+ * Server không còn gửi PLAYER_ANSWERED / PLAYER_PROGRESS riêng: chúng được
+ * dựng lại từ field "answered" và currentQuestion, lấy qua takeEvents().
+ *
+ * Only used from the listener thread.
+ */
+final class GameUpdateAssembler {
+
+    private String roomId;
+    private long version = -1; // -1 = waiting for a keyframe
+    private final Map<Integer, Map<String, Object>> players = new LinkedHashMap<>();
+    private final List<Map<String, Object>> events = new ArrayList<>();
+
+    /**
+     * @return full GAME_UPDATE to hand to the UI, or null if this delta cannot be applied
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> apply(Map<String, Object> update) {
+        Object versionValue = update.get("version");
+        List<Map<String, Object>> positions = (List<Map<String, Object>>) update.get("positions");
+        if (versionValue == null || positions == null) {
+            return update; // Old server: every update is a full snapshot
+        }
+
+        String updateRoom = String.valueOf(update.get("roomId"));
+        long updateVersion = ((Number) versionValue).longValue();
+
+        boolean keyframe = Boolean.TRUE.equals(update.get("keyframe"));
+        if (keyframe) {
+            if (!updateRoom.equals(roomId)) {
+                players.clear(); // New race
+            }
+            roomId = updateRoom;
+        } else {
+            Object base = update.get("baseVersion");
+            if (version < 0 || !updateRoom.equals(roomId) ||
+                    base == null || ((Number) base).longValue() != version) {
+                System.out.println("⚠️ [CLIENT] GAME_UPDATE delta v" + updateVersion +
+                        " skipped (have v" + version + "), waiting for keyframe");
+                return null;
+            }
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        for (Map<String, Object> record : positions) {
+            Object userIdValue = record.get("userId");
+            if (userIdValue == null) {
+                continue;
+            }
+            int userId = ((Number) userIdValue).intValue();
+            seen.add(userId);
+            Map<String, Object> state = players.computeIfAbsent(userId, id -> new LinkedHashMap<>());
+            Object previousQuestion = state.get("currentQuestion");
+            if (keyframe) {
+                state.clear();
+            }
+            state.putAll(record);
+
+            if (Boolean.TRUE.equals(record.get("answered"))) {
+                events.add(answeredEvent(updateRoom, update.get("timestamp"), state));
+            }
+            Object question = record.get("currentQuestion");
+            if (previousQuestion != null && question != null &&
+                    ((Number) previousQuestion).intValue() != ((Number) question).intValue()) {
+                events.add(progressEvent(updateRoom, update.get("timestamp"), state));
+            }
+        }
+        if (keyframe) {
+            players.keySet().retainAll(seen);
+        }
+        version = updateVersion;
+
+        List<Map<String, Object>> full = new ArrayList<>(players.size());
+        for (Map<String, Object> state : players.values()) {
+            full.add(new LinkedHashMap<>(state));
+            // One-shot: shown once, not on every later update
+            state.put("gotNitro", false);
+            state.remove("answered");
+        }
+
+        Map<String, Object> assembled = new LinkedHashMap<>(update);
+        assembled.put("positions", full);
+        return assembled;
+    }
+
+    /**
+     * PLAYER_ANSWERED / PLAYER_PROGRESS carried by the last applied update
+     */
+    List<Map<String, Object>> takeEvents() {
+        List<Map<String, Object>> taken = new ArrayList<>(events);
+        events.clear();
+        return taken;
+    }
+
+    private static Map<String, Object> answeredEvent(String roomId, Object timestamp, Map<String, Object> state) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", Protocol.PLAYER_ANSWERED);
+        event.put("roomId", roomId);
+        event.put("userId", state.get("userId"));
+        event.put("isCorrect", state.get("lastAnswerCorrect"));
+        event.put("timeTaken", state.get("lastAnswerTime"));
+        event.put("position", state.get("position"));
+        event.put("score", state.get("score"));
+        event.put("gotNitro", state.get("gotNitro"));
+        event.put("timestamp", timestamp);
+        return event;
+    }
+
+    private static Map<String, Object> progressEvent(String roomId, Object timestamp, Map<String, Object> state) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", Protocol.PLAYER_PROGRESS);
+        event.put("roomId", roomId);
+        event.put("userId", state.get("userId"));
+        event.put("currentQuestion", state.get("currentQuestion"));
+        event.put("totalQuestions", state.get("totalQuestions"));
+        event.put("timestamp", timestamp);
+        return event;
+    }
+}
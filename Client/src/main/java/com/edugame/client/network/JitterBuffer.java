@@ -0,0 +1,275 @@
+package com.edugame.client.network;
+
+import com.edugame.common.wire.VoiceHeader;
+
+/**
+ * JitterBuffer - Bộ đệm phát cho một người nói (một streamId)
+ *
+ * - Frame được xếp theo sequence trong vòng SLOTS ô, phát theo đúng thứ tự;
+ *   packet đến sau khi đã qua lượt phát thì bỏ (late)
+ * - Độ trễ mục tiêu tự điều chỉnh theo jitter đo được (RFC 3550, từ
+ *   timestamp): chờ đủ target frame mới bắt đầu phát, đệm quá target + 2
+ *   thì bỏ bớt 1 frame để kéo độ trễ xuống
+ * - Mất frame: lặp lại frame trước, mỗi lần nhỏ đi một nửa (repeat/fade);
+ *   thiếu dữ liệu thì "kéo dài" bằng cách đó tối đa MAX_CONCEAL frame rồi
+ *   dừng và đệm lại
+ * - Sau marker FLAG_SILENCE: phát comfort noise ở mức người nói gửi
+ *
+ * put() runs on the receive thread, pull() on the playback thread.
+ */
+final class JitterBuffer {
+
+    static final int FRAME_SAMPLES = 512;           // 32 ms at 16 kHz
+    static final int FRAME_MS = FRAME_SAMPLES / 16;
+
+    private static final int SLOTS = 16;             // Power of two
+    private static final int MASK = SLOTS - 1;
+    private static final int MIN_TARGET_FRAMES = 1;
+    private static final int MAX_TARGET_FRAMES = 8;
+    private static final int MAX_CONCEAL = 3;
+    private static final long COMFORT_NOISE_MS = 10_000;
+
+    private final short[][] frames = new short[SLOTS][FRAME_SAMPLES];
+    private final int[] seqs = new int[SLOTS];
+    private final boolean[] filled = new boolean[SLOTS];
+    private int buffered;
+
+    private final short[] last = new short[FRAME_SAMPLES]; // Last frame played, faded for concealment
+    private boolean playing;
+    private int playSeq;
+    private int concealRun;
+
+    // Talkspurt end / comfort noise
+    private boolean silenceMarked;
+    private int silenceSeq;
+    private boolean comfortNoise;
+    private int noiseAmplitude;
+    private int noiseSeed = 0x2545F491;
+
+    // Jitter estimate in samples (RFC 3550 interarrival jitter)
+    private boolean haveTransit;
+    private long lastTransit;
+    private double jitter;
+
+    private long lastArrival;
+
+    // Stats
+    private long late;
+    private long lost;
+    private long concealed;
+
+    /**
+     * Store one packet (audio or silence marker)
+     */
+    synchronized void put(byte[] packet, int length, long arrivalMs) {
+        int seq = VoiceHeader.sequence(packet);
+        lastArrival = arrivalMs;
+
+        long transit = arrivalMs * (FRAME_SAMPLES / FRAME_MS) - (VoiceHeader.timestamp(packet) & 0xFFFFFFFFL);
+        if (haveTransit) {
+            jitter += (Math.abs(transit - lastTransit) - jitter) / 16;
+        }
+        lastTransit = transit;
+        haveTransit = true;
+
+        if (playing && seqDiff(seq, playSeq) < 0) {
+            late++;
+            return;
+        }
+
+        if ((VoiceHeader.flags(packet) & VoiceHeader.FLAG_SILENCE) != 0) {
+            silenceMarked = true;
+            silenceSeq = seq;
+            int level = length > VoiceHeader.SIZE ? packet[VoiceHeader.SIZE] & 0xFF : 127;
+            noiseAmplitude = (int) (32768 * Math.pow(10, -level / 20.0));
+            return;
+        }
+
+        if (playing && seqDiff(seq, playSeq) >= SLOTS) {
+            // Far ahead (long gap or sender restarted): start over from this packet
+            clear();
+        }
+
+        int slot = seq & MASK;
+        if (filled[slot]) {
+            if (seqs[slot] == seq) {
+                return; // Duplicate
+            }
+            buffered--; // Unplayed older frame overwritten - it counts as lost when its turn comes
+        }
+
+        // PCM 16-bit little-endian, padded / cut to one frame
+        short[] frame = frames[slot];
+        int samples = Math.min(FRAME_SAMPLES, (length - VoiceHeader.SIZE) / 2);
+        for (int i = 0; i < samples; i++) {
+            int at = VoiceHeader.SIZE + 2 * i;
+            frame[i] = (short) ((packet[at] & 0xFF) | (packet[at + 1] << 8));
+        }
+        for (int i = samples; i < FRAME_SAMPLES; i++) {
+            frame[i] = 0;
+        }
+        seqs[slot] = seq;
+        filled[slot] = true;
+        buffered++;
+    }
+
+    /**
+     * Add the next 32 ms of this speaker into mix
+     * @return true if anything (audio, concealment or comfort noise) was added
+     */
+    synchronized boolean pull(int[] mix, long nowMs) {
+        if (!playing) {
+            if (buffered == 0 || buffered < getTargetFrames()) {
+                return addComfortNoise(mix, nowMs);
+            }
+            playSeq = lowestBufferedSeq();
+            playing = true;
+            concealRun = 0;
+            comfortNoise = false;
+            if (silenceMarked && seqDiff(silenceSeq, playSeq) < 0) {
+                silenceMarked = false; // Marker of the previous pause
+            }
+        }
+
+        // The silence marker uses a sequence number but carries no audio. If the next
+        // talkspurt is already here, step over it - it is not a lost frame
+        if (silenceMarked && playSeq == silenceSeq && buffered > 0 && !isBuffered(playSeq)) {
+            silenceMarked = false;
+            playSeq = (playSeq + 1) & 0xFFFF;
+        }
+
+        // Too much queued: skip a frame to bring latency back to target
+        if (buffered > getTargetFrames() + 2 && isBuffered(playSeq)) {
+            filled[playSeq & MASK] = false;
+            buffered--;
+            playSeq = (playSeq + 1) & 0xFFFF;
+        }
+
+        if (isBuffered(playSeq)) {
+            int slot = playSeq & MASK;
+            short[] frame = frames[slot];
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                mix[i] += frame[i];
+            }
+            System.arraycopy(frame, 0, last, 0, FRAME_SAMPLES);
+            filled[slot] = false;
+            buffered--;
+            playSeq = (playSeq + 1) & 0xFFFF;
+            concealRun = 0;
+            return true;
+        }
+
+        // Talkspurt ended with a silence marker: stop cleanly, no concealment
+        if (silenceMarked && buffered == 0 && seqDiff(silenceSeq, playSeq) >= 0) {
+            silenceMarked = false;
+            playing = false;
+            comfortNoise = noiseAmplitude > 0;
+            return addComfortNoise(mix, nowMs);
+        }
+
+        if (buffered > 0 && (buffered >= getTargetFrames() || concealRun > 0)) {
+            // Later frames are here and we waited: this one is lost
+            lost++;
+            conceal(mix);
+            playSeq = (playSeq + 1) & 0xFFFF;
+            return true;
+        }
+
+        if (concealRun < MAX_CONCEAL) {
+            // Nothing yet: stretch with concealment without moving on (latency grows by a frame)
+            conceal(mix);
+            return true;
+        }
+
+        // Gave up waiting: re-buffer before playing again
+        playing = false;
+        concealRun = 0;
+        return false;
+    }
+
+    synchronized int getBufferedMs() {
+        return buffered * FRAME_MS;
+    }
+
+    synchronized int getTargetMs() {
+        return getTargetFrames() * FRAME_MS;
+    }
+
+    synchronized long getLate() {
+        return late;
+    }
+
+    synchronized long getLost() {
+        return lost;
+    }
+
+    synchronized long getConcealed() {
+        return concealed;
+    }
+
+    synchronized long getLastArrival() {
+        return lastArrival;
+    }
+
+    // ==================== INTERNALS (hold the lock) ====================
+
+    private int getTargetFrames() {
+        int frames = 1 + (int) Math.ceil(3 * jitter / FRAME_SAMPLES);
+        return Math.max(MIN_TARGET_FRAMES, Math.min(MAX_TARGET_FRAMES, frames));
+    }
+
+    private void conceal(int[] mix) {
+        concealRun++;
+        concealed++;
+        for (int i = 0; i < FRAME_SAMPLES; i++) {
+            last[i] = (short) (last[i] / 2);
+            mix[i] += last[i];
+        }
+    }
+
+    private boolean addComfortNoise(int[] mix, long nowMs) {
+        if (!comfortNoise || nowMs - lastArrival > COMFORT_NOISE_MS) {
+            return false;
+        }
+        int seed = noiseSeed;
+        for (int i = 0; i < FRAME_SAMPLES; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            mix[i] += (int) ((long) (seed >> 16) * noiseAmplitude >> 15);
+        }
+        noiseSeed = seed;
+        return true;
+    }
+
+    private boolean isBuffered(int seq) {
+        int slot = seq & MASK;
+        return filled[slot] && seqs[slot] == seq;
+    }
+
+    private int lowestBufferedSeq() {
+        int lowest = -1;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (filled[slot] && (lowest < 0 || seqDiff(seqs[slot], lowest) < 0)) {
+                lowest = seqs[slot];
+            }
+        }
+        return lowest;
+    }
+
+    private void clear() {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            filled[slot] = false;
+        }
+        buffered = 0;
+        playing = false;
+        concealRun = 0;
+    }
+
+    /**
+     * a - b for 16-bit sequence numbers that wrap
+     */
+    private static int seqDiff(int a, int b) {
+        return (short) (a - b);
+    }
+}
@@ -4,6 +4,8 @@ import com.edugame.client.controller.RoomController;
 import com.edugame.client.model.User;
 import com.edugame.client.util.SceneManager;
 import com.edugame.common.Protocol;
+import com.edugame.common.wire.BinaryCodec;
+import com.edugame.common.wire.FrameReader;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -33,8 +35,10 @@ import java.util.function.Consumer;
 public class ServerConnection {
     private static ServerConnection instance;
     private Socket socket;
-    private BufferedReader reader;
+    private FrameReader reader;
     private PrintWriter writer;
+    private OutputStream rawOut; // Socket stream under writer, for binary frames
+    private volatile boolean binaryWire = false; // Server agreed to binary hot messages at LOGIN
     private Gson gson;
     private volatile boolean connected;
 
@@ -64,6 +68,7 @@ public class ServerConnection {
     private long lastHeartbeatTime = 0;
     private int missedHeartbeats = 0;
     private static final int MAX_MISSED_HEARTBEATS = 3;
+    private static final int MAX_FRAME_BYTES = 4 * 1024 * 1024;
 
     // Listener management
     private Thread listenerThread;
@@ -213,6 +218,7 @@ public class ServerConnection {
     private Consumer<Map<String, Object>> gameQuestionCallback;
     private Consumer<Map<String, Object>> answerResultCallback;
     private Consumer<Map<String, Object>> gameUpdateCallback;
+    private final GameUpdateAssembler gameUpdateAssembler = new GameUpdateAssembler();
     private Consumer<Map<String, Object>> positionUpdateCallback;
     private Consumer<Map<String, Object>> gameEndCallback;
     private Consumer<Map<String, Object>> nitroBoostCallback;
@@ -311,8 +317,9 @@ public class ServerConnection {
             socket.setTcpNoDelay(true); // Disable Nagle's algorithm
             socket.setSoTimeout(0);
 
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
+            reader = new FrameReader(socket.getInputStream(), MAX_FRAME_BYTES);
+            rawOut = socket.getOutputStream();
+            writer = new PrintWriter(rawOut, true);
             connected = true;
 
             System.out.println("✅ Connected to server: " + host + ":" + port);
@@ -344,11 +351,13 @@ public class ServerConnection {
                 System.out.println("🎧 Listener thread STARTED");
 
                 try {
-                    String line;
-                    while (isListening && isConnected() && (line = reader.readLine()) != null) {
+                    Object frame;
+                    while (isListening && isConnected() && (frame = reader.read()) != null) {
 
                         try {
-                            JsonObject json = gson.fromJson(line, JsonObject.class);
+                            JsonObject json = frame instanceof String line
+                                    ? gson.fromJson(line, JsonObject.class)
+                                    : (JsonObject) frame; // Binary frame, decoded straight to JSON
                             String type = json.has("type") ? json.get("type").getAsString() : "UNKNOWN";
 
                             System.out.println("📨 Received: " + type);
@@ -590,8 +599,22 @@ public class ServerConnection {
 
             case Protocol.GAME_UPDATE:
                 System.out.println("🔄 [CLIENT] Received game state update");
+                Map<String, Object> snapshot = gameUpdateAssembler.apply(data);
+                if (snapshot == null) {
+                    break;
+                }
+                // Answers / progress ride in the same frame now
+                for (Map<String, Object> event : gameUpdateAssembler.takeEvents()) {
+                    if (Protocol.PLAYER_ANSWERED.equals(event.get("type"))) {
+                        if (playerAnsweredCallback != null) {
+                            playerAnsweredCallback.accept(event);
+                        }
+                    } else if (playerProgressCallback != null) {
+                        playerProgressCallback.accept(event);
+                    }
+                }
                 if (gameUpdateCallback != null) {
-                    gameUpdateCallback.accept(data);
+                    gameUpdateCallback.accept(snapshot);
                 }
                 break;
 
@@ -1266,6 +1289,9 @@ public class ServerConnection {
             if (request instanceof JsonObject json) {
                 jsonString = json.toString();
             } else if (request instanceof Map<?, ?> map) {
+                if (trySendBinary(map)) {
+                    return;
+                }
                 // Chuyển Map sang JSON string
                 jsonString = new Gson().toJson(map);
             } else {
@@ -2155,6 +2181,7 @@ public class ServerConnection {
             request.put("type", "LOGIN");
             request.put("username", username);
             request.put("password", password);
+            request.put(Protocol.KEY_WIRE, Protocol.WIRE_BINARY);
 
             writer.println(gson.toJson(request));
 
@@ -2163,6 +2190,9 @@ public class ServerConnection {
 
             boolean success = jsonResponse.get("success").getAsBoolean();
             if (success) {
+                // Old servers don't echo "wire" - stay on JSON
+                binaryWire = jsonResponse.has(Protocol.KEY_WIRE) &&
+                        Protocol.WIRE_BINARY.equals(jsonResponse.get(Protocol.KEY_WIRE).getAsString());
                 currentUsername = username;
                 currentUserId = jsonResponse.get("userId").getAsInt();
                 currentFullName = jsonResponse.get("fullName").getAsString();
@@ -2276,6 +2306,9 @@ public class ServerConnection {
             heartbeat.put("timestamp", System.currentTimeMillis());
 
             // Send directly without logging
+            if (trySendBinary(heartbeat)) {
+                return;
+            }
             if (writer != null && !writer.checkError()) {
                 String json = gson.toJson(heartbeat);
                 writer.println(json);
@@ -2712,6 +2745,11 @@ public class ServerConnection {
             data.put("sessionToken", sessionToken);
         }
 
+        if (trySendBinary(data)) {
+            System.out.println("📤 Sending (binary): " + data.get("type"));
+            return;
+        }
+
         if (writer != null && !writer.checkError()) {
             String json = gson.toJson(data);
             System.out.println("📤 Sending: " + data.get("type"));
@@ -2726,6 +2764,31 @@ public class ServerConnection {
         }
     }
 
+    /**
+     * Send a hot game message (SUBMIT_ANSWER, HEARTBEAT...) as a binary frame
+     * when the server negotiated it.
+     * @return false if the message must be sent as JSON instead
+     */
+    private boolean trySendBinary(Map<?, ?> data) {
+        if (!binaryWire || writer == null) {
+            return false;
+        }
+        byte[] frame = BinaryCodec.encode(data);
+        if (frame == null) {
+            return false;
+        }
+        try {
+            synchronized (writer) {
+                writer.flush(); // Keep ordering with JSON lines already written
+                rawOut.write(frame);
+                rawOut.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Failed to send binary frame: " + e.getMessage());
+        }
+        return true;
+    }
+
     /**
      * Register a one-time callback for any message type
      */
@@ -3708,6 +3771,7 @@ public class ServerConnection {
      * Clear all session data
      */
     private void clearSessionData() {
+        binaryWire = false;
         currentUsername = null;
         currentUserId = 0;
         currentFullName = null;
@@ -0,0 +1,74 @@
+package com.edugame.client.network;
+
+/**
+ * VoiceActivityDetector - Phát hiện có người đang nói theo năng lượng frame
+ *
+ * - RMS của frame so với ngưỡng = max(MIN_SPEECH_RMS, nền nhiễu × SPEECH_RATIO)
+ * - Nền nhiễu học từ các frame im lặng (giảm nhanh, tăng chậm) nên quạt,
+ *   điều hoà... không bị coi là tiếng nói mãi
+ * - Hangover: vẫn coi là đang nói thêm HANGOVER_FRAMES frame sau frame
+ *   to cuối cùng để không cắt cụt cuối câu
+ *
+ * PCM 16-bit little-endian mono. Only used from the send thread.
+ */
+final class VoiceActivityDetector {
+
+    private static final double MIN_SPEECH_RMS = 150;
+    private static final double SPEECH_RATIO = 3.0;
+    private static final double INITIAL_NOISE_RMS = 100;
+    private static final int HANGOVER_FRAMES = 10; // ~320 ms at 32 ms frames
+
+    private double noiseRms = INITIAL_NOISE_RMS;
+    private int hangover;
+
+    /**
+     * @return true if this frame should be sent as audio
+     */
+    boolean isSpeech(byte[] pcm, int offset, int length) {
+        double rms = rms(pcm, offset, length);
+
+        if (rms > Math.max(MIN_SPEECH_RMS, noiseRms * SPEECH_RATIO)) {
+            hangover = HANGOVER_FRAMES;
+            noiseRms *= 1.001; // A loud noise that never stops slowly becomes the floor
+            return true;
+        }
+
+        // Quiet frame: follow the noise floor, quickly down, slowly up
+        noiseRms += (rms - noiseRms) * (rms < noiseRms ? 0.2 : 0.05);
+
+        if (hangover > 0) {
+            hangover--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Background noise level for comfort noise, in -dBov (0 = full scale, 127 = silence)
+     */
+    int getNoiseLevel() {
+        if (noiseRms < 1) {
+            return 127;
+        }
+        long level = Math.round(-20 * Math.log10(noiseRms / 32768.0));
+        return (int) Math.max(0, Math.min(127, level));
+    }
+
+    void reset() {
+        noiseRms = INITIAL_NOISE_RMS;
+        hangover = 0;
+    }
+
+    private static double rms(byte[] pcm, int offset, int length) {
+        int samples = length / 2;
+        if (samples == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[offset + 2 * i] & 0xFF) | (pcm[offset + 2 * i + 1] << 8));
+            sum += (long) sample * sample;
+        }
+        return Math.sqrt((double) sum / samples);
+    }
+}
@@ -1,8 +1,13 @@
 package com.edugame.client.network;
 
+import com.edugame.common.Protocol;
+import com.edugame.common.wire.VoiceHeader;
+
 import javax.sound.sampled.*;
 import java.io.IOException;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -14,18 +19,29 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * - Receive audio từ server và play
  * - Auto-detect microphone
  * - Echo cancellation support
+ *
+ * Audio packets carry a VoiceHeader with the short room / stream ids the
+ * server returns in VOICE_JOINED; JOIN_VOICE is retried until they arrive.
+ * Received audio goes through a JitterBuffer per speaker and is mixed by the
+ * playback thread, not written straight to the speakers.
  */
 public class VoiceChatManager {
 
     // ==================== Constants ====================
     private static final int SAMPLE_RATE = 16000; // 16kHz
-    private float volumeGain = 3.0f;
+    private volatile float volumeGain = 3.0f;
     private static final int SAMPLE_SIZE_IN_BITS = 16;
     private static final int CHANNELS = 1; // Mono
     private static final boolean SIGNED = true;
     private static final boolean BIG_ENDIAN = false;
     private static final int BUFFER_SIZE = 1024; // Bytes per packet
     private static final int UDP_PORT = 9999; // Port cho voice chat
+    private static final long JOIN_RETRY_MS = 1000;
+    private static final long SILENCE_MARKER_INTERVAL_MS = 5000; // Also keeps us active on the server
+    private static final int MUTED_POLL_MS = 100;
+    private static final int PLAYBACK_LINE_FRAMES = 3;     // Audio queued in the sound card
+    private static final long STATS_INTERVAL_MS = 1000;
+    private static final long STREAM_IDLE_MS = 30_000;     // Drop a speaker's buffer after this
 
     // ==================== Fields ====================
     private DatagramSocket udpSocket;
@@ -34,11 +50,32 @@ public class VoiceChatManager {
     private String roomId;
     private int userId;
 
+    // Ids from VOICE_JOINED, -1 until the server answered
+    private volatile int voiceRoomId = -1;
+    private volatile int voiceStreamId = -1;
+
+    // Send thread only: packet reused for every frame, mic reads straight after the header
+    private final byte[] sendBuffer = new byte[VoiceHeader.SIZE + BUFFER_SIZE];
+    private DatagramPacket sendPacket;
+    private int sequence;
+    private int timestamp;
+    private long lastJoinAttempt;
+    private final VoiceActivityDetector vad = new VoiceActivityDetector();
+    private boolean inSilence;
+    private long lastSilenceMarker;
+
     private TargetDataLine microphone;
     private SourceDataLine speakers;
 
     private Thread sendThread;
     private Thread receiveThread;
+    private Thread playbackThread;
+
+    // One jitter buffer per speaker (index = streamId) + one for the server mix; copy-on-write
+    private final Object streamLock = new Object();
+    private volatile JitterBuffer[] streamBuffers = new JitterBuffer[0];
+    private volatile JitterBuffer mixedBuffer;
+    private volatile VoiceStats stats = VoiceStats.EMPTY;
 
     private AtomicBoolean isRecording = new AtomicBoolean(false);
     private AtomicBoolean isPlaying = new AtomicBoolean(false);
@@ -95,6 +132,7 @@ public class VoiceChatManager {
         try {
             // Create UDP socket
             udpSocket = new DatagramSocket();
+            sendPacket = new DatagramPacket(sendBuffer, sendBuffer.length, serverAddress, serverPort);
             System.out.println("✅ UDP socket created on port: " + udpSocket.getLocalPort());
 
             // Setup microphone
@@ -152,6 +190,9 @@ public class VoiceChatManager {
         if (receiveThread != null) {
             receiveThread.interrupt();
         }
+        if (playbackThread != null) {
+            playbackThread.interrupt();
+        }
 
         // Close audio lines
         if (microphone != null && microphone.isOpen()) {
@@ -199,6 +240,9 @@ public class VoiceChatManager {
      */
     public void setMuted(boolean muted) {
         isRecording.set(!muted);
+        if (!muted) {
+            vad.reset();
+        }
 
         if (muted && microphone != null && microphone.isOpen()) {
             microphone.stop();
@@ -248,7 +292,7 @@ public class VoiceChatManager {
             }
 
             speakers = (SourceDataLine) AudioSystem.getLine(info);
-            speakers.open(audioFormat, BUFFER_SIZE * 4);
+            speakers.open(audioFormat, JitterBuffer.FRAME_SAMPLES * 2 * PLAYBACK_LINE_FRAMES);
             speakers.start();
 
             System.out.println("✅ Speakers setup complete");
@@ -268,20 +312,23 @@ public class VoiceChatManager {
         microphone.start();
 
         sendThread = new Thread(() -> {
-            byte[] buffer = new byte[BUFFER_SIZE];
-
             System.out.println("🎤 Recording thread started");
 
             while (isRunning.get()) {
                 try {
                     if (isRecording.get()) {
-                        int bytesRead = microphone.read(buffer, 0, buffer.length);
+                        int bytesRead = microphone.read(sendBuffer, VoiceHeader.SIZE, BUFFER_SIZE);
 
                         if (bytesRead > 0) {
-                            sendAudioPacket(buffer, bytesRead);
+                            if (vad.isSpeech(sendBuffer, VoiceHeader.SIZE, bytesRead)) {
+                                sendAudioPacket(bytesRead);
+                            } else {
+                                sendSilence(bytesRead / 2);
+                            }
                         }
                     } else {
-                        Thread.sleep(100);
+                        Thread.sleep(MUTED_POLL_MS);
+                        sendSilence(SAMPLE_RATE * MUTED_POLL_MS / 1000);
                     }
 
                 } catch (InterruptedException e) {
@@ -299,6 +346,55 @@ public class VoiceChatManager {
         sendThread.start();
     }
 
+    /**
+     * Start playback: every frame, pull 32 ms from each speaker's jitter
+     * buffer, mix, apply gain and write to the speakers. The blocking write
+     * paces the loop at the sound card's rate.
+     */
+    private void startPlayback() {
+        playbackThread = new Thread(() -> {
+            int[] mix = new int[JitterBuffer.FRAME_SAMPLES];
+            byte[] out = new byte[JitterBuffer.FRAME_SAMPLES * 2];
+            long nextStats = System.currentTimeMillis() + STATS_INTERVAL_MS;
+
+            System.out.println("🔈 Playback thread started");
+
+            while (isRunning.get()) {
+                try {
+                    long now = System.currentTimeMillis();
+                    Arrays.fill(mix, 0);
+                    for (JitterBuffer buffer : streamBuffers) {
+                        if (buffer != null) {
+                            buffer.pull(mix, now);
+                        }
+                    }
+                    JitterBuffer mixed = mixedBuffer;
+                    if (mixed != null) {
+                        mixed.pull(mix, now);
+                    }
+
+                    applyGain(mix, out);
+                    speakers.write(out, 0, out.length);
+
+                    if (now >= nextStats) {
+                        nextStats = now + STATS_INTERVAL_MS;
+                        updateStats(now);
+                    }
+
+                } catch (Exception e) {
+                    if (isRunning.get()) {
+                        System.err.println("❌ Error playing audio: " + e.getMessage());
+                    }
+                }
+            }
+
+            System.out.println("🛑 Playback thread stopped");
+        }, "VoiceChat-Playback");
+
+        playbackThread.setDaemon(true);
+        playbackThread.start();
+    }
+
     /**
      * Start receiving and playing audio
      */
@@ -313,9 +409,12 @@ public class VoiceChatManager {
 
             while (isRunning.get()) {
                 try {
+                    packet.setLength(buffer.length);
                     udpSocket.receive(packet);
 
-                    if (isPlaying.get()) {
+                    if (!VoiceHeader.isVoice(buffer, packet.getLength())) {
+                        handleControlMessage(packet);
+                    } else if (isPlaying.get()) {
                         processAudioPacket(packet);
                     }
 
@@ -330,49 +429,26 @@ public class VoiceChatManager {
         }, "VoiceChat-Receive");
 
         receiveThread.start();
+        startPlayback();
     }
 
     /**
      * Send audio packet to server
+     * Format: [VoiceHeader] [audio data] - audio is already in sendBuffer after the header
      */
-    private void sendAudioPacket(byte[] audioData, int length) {
+    private void sendAudioPacket(int length) {
         try {
-            // Create packet with metadata
-            // Format: [userId(4)] [roomId length(4)] [roomId] [audio data]
-
-            byte[] roomIdBytes = roomId.getBytes();
-            int totalLength = 4 + 4 + roomIdBytes.length + length;
-            byte[] packetData = new byte[totalLength];
-
-            // Write userId (4 bytes)
-            packetData[0] = (byte) (userId >> 24);
-            packetData[1] = (byte) (userId >> 16);
-            packetData[2] = (byte) (userId >> 8);
-            packetData[3] = (byte) userId;
-
-            // Write roomId length (4 bytes)
-            int offset = 4;
-            packetData[offset++] = (byte) (roomIdBytes.length >> 24);
-            packetData[offset++] = (byte) (roomIdBytes.length >> 16);
-            packetData[offset++] = (byte) (roomIdBytes.length >> 8);
-            packetData[offset++] = (byte) roomIdBytes.length;
-
-            // Write roomId
-            System.arraycopy(roomIdBytes, 0, packetData, offset, roomIdBytes.length);
-            offset += roomIdBytes.length;
-
-            // Write audio data
-            System.arraycopy(audioData, 0, packetData, offset, length);
-
-            // Send packet
-            DatagramPacket packet = new DatagramPacket(
-                    packetData,
-                    totalLength,
-                    serverAddress,
-                    serverPort
-            );
+            if (!ensureJoined()) {
+                return;
+            }
 
-            udpSocket.send(packet);
+            VoiceHeader.write(sendBuffer, 0, voiceRoomId, voiceStreamId, sequence, timestamp);
+            sequence = (sequence + 1) & 0xFFFF;
+            timestamp += length / 2; // 16-bit mono: 2 bytes per sample
+            inSilence = false;
+
+            sendPacket.setLength(VoiceHeader.SIZE + length);
+            udpSocket.send(sendPacket);
 
         } catch (IOException e) {
             System.err.println("❌ Error sending audio: " + e.getMessage());
@@ -380,54 +456,156 @@ public class VoiceChatManager {
     }
 
     /**
-     * Process received audio packet
+     * @return true once the server gave us ids; until then JOIN_VOICE is
+     * re-sent every JOIN_RETRY_MS (the request or its answer was lost)
+     */
+    private boolean ensureJoined() {
+        if (voiceRoomId >= 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() - lastJoinAttempt >= JOIN_RETRY_MS) {
+            sendJoinVoiceMessage();
+        }
+        return false;
+    }
+
+    /**
+     * Silent frame (or muted): send a comfort-noise marker when the pause
+     * starts and then every SILENCE_MARKER_INTERVAL_MS, nothing in between.
+     * The timestamp keeps running so receivers see the real length of the pause.
+     */
+    private void sendSilence(int samples) {
+        try {
+            long now = System.currentTimeMillis();
+            if (ensureJoined() && (!inSilence || now - lastSilenceMarker >= SILENCE_MARKER_INTERVAL_MS)) {
+                VoiceHeader.write(sendBuffer, VoiceHeader.FLAG_SILENCE, voiceRoomId, voiceStreamId, sequence, timestamp);
+                sendBuffer[VoiceHeader.SIZE] = (byte) vad.getNoiseLevel();
+                sequence = (sequence + 1) & 0xFFFF;
+                inSilence = true;
+                lastSilenceMarker = now;
+
+                sendPacket.setLength(VoiceHeader.SIZE + 1);
+                udpSocket.send(sendPacket);
+            }
+            timestamp += samples;
+
+        } catch (IOException e) {
+            System.err.println("❌ Error sending silence marker: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handle VOICE_JOINED:voiceRoomId:streamId / VOICE_LEFT from the server
+     */
+    private void handleControlMessage(DatagramPacket packet) {
+        String message = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.US_ASCII).trim();
+
+        if (message.startsWith(Protocol.VOICE_JOINED + ":")) {
+            String[] parts = message.split(":");
+            try {
+                voiceStreamId = Integer.parseInt(parts[2]);
+                voiceRoomId = Integer.parseInt(parts[1]);
+                System.out.println("✅ Voice joined: room=" + voiceRoomId + ", stream=" + voiceStreamId);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ Invalid VOICE_JOINED: " + message);
+            }
+        }
+    }
+
+    /**
+     * Process received audio packet: queue it in its speaker's jitter buffer
      */
     private void processAudioPacket(DatagramPacket packet) {
         try {
             byte[] data = packet.getData();
-            int length = packet.getLength();
-
-            // Parse metadata
-            int senderId = ((data[0] & 0xFF) << 24) |
-                    ((data[1] & 0xFF) << 16) |
-                    ((data[2] & 0xFF) << 8) |
-                    (data[3] & 0xFF);
+            int streamId = VoiceHeader.streamId(data);
 
             // Don't play own audio (echo prevention)
-            if (senderId == userId) {
+            if (streamId == voiceStreamId) {
                 return;
             }
 
-            int offset = 4;
-            int roomIdLength = ((data[offset++] & 0xFF) << 24) |
-                    ((data[offset++] & 0xFF) << 16) |
-                    ((data[offset++] & 0xFF) << 8) |
-                    (data[offset++] & 0xFF);
+            bufferFor(streamId).put(data, packet.getLength(), System.currentTimeMillis());
 
-            offset += roomIdLength; // Skip roomId
+        } catch (Exception e) {
+            System.err.println("❌ Error processing audio: " + e.getMessage());
+        }
+    }
+
+    private JitterBuffer bufferFor(int streamId) {
+        if (streamId == VoiceHeader.MIXED_STREAM) {
+            JitterBuffer mixed = mixedBuffer;
+            if (mixed == null) {
+                mixed = new JitterBuffer();
+                mixedBuffer = mixed;
+            }
+            return mixed;
+        }
+        JitterBuffer[] buffers = streamBuffers;
+        if (streamId < buffers.length && buffers[streamId] != null) {
+            return buffers[streamId];
+        }
+        synchronized (streamLock) {
+            buffers = Arrays.copyOf(streamBuffers, Math.max(streamBuffers.length, streamId + 1));
+            JitterBuffer buffer = new JitterBuffer();
+            buffers[streamId] = buffer;
+            streamBuffers = buffers;
+            return buffer;
+        }
+    }
 
-            // Play audio data
-            int audioLength = length - offset;
-            if (audioLength > 0 && speakers != null && speakers.isOpen()) {
-//                speakers.write(data, offset, audioLength);
-                // Amplify audio before playing
-                byte[] amplified = amplifyAudio(data, offset, audioLength);
-                speakers.write(amplified, 0, amplified.length);
+    /**
+     * Refresh stats for the UI and drop buffers of speakers gone quiet for good
+     */
+    private void updateStats(long now) {
+        int bufferedMs = 0;
+        int targetMs = 0;
+        int speakers = 0;
+        long late = 0, lost = 0, concealed = 0;
+
+        synchronized (streamLock) {
+            JitterBuffer[] buffers = streamBuffers.clone();
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] != null && now - buffers[i].getLastArrival() > STREAM_IDLE_MS) {
+                    buffers[i] = null;
+                }
+            }
+            streamBuffers = buffers;
+        }
 
+        JitterBuffer[] buffers = Arrays.copyOf(streamBuffers, streamBuffers.length + 1);
+        buffers[buffers.length - 1] = mixedBuffer;
+        for (JitterBuffer buffer : buffers) {
+            if (buffer == null) {
+                continue;
             }
+            speakers++;
+            bufferedMs = Math.max(bufferedMs, buffer.getBufferedMs());
+            targetMs = Math.max(targetMs, buffer.getTargetMs());
+            late += buffer.getLate();
+            lost += buffer.getLost();
+            concealed += buffer.getConcealed();
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error processing audio: " + e.getMessage());
+        stats = new VoiceStats(speakers, bufferedMs, targetMs, late, lost, concealed);
+        if (statusListener != null) {
+            statusListener.onStats(stats);
         }
     }
 
-
+    /**
+     * Latest playback stats (refreshed every second while voice chat runs)
+     */
+    public VoiceStats getStats() {
+        return stats;
+    }
 
     /**
      * Send JOIN_VOICE message to server
      */
     private void sendJoinVoiceMessage() {
         try {
+            lastJoinAttempt = System.currentTimeMillis();
             String message = "JOIN_VOICE:" + userId + ":" + roomId;
             byte[] data = message.getBytes();
 
@@ -475,29 +653,21 @@ public class VoiceChatManager {
         System.out.println("🔊 Volume set to: " + gain + "x");
     }
 
-    private byte[] amplifyAudio(byte[] input, int offset, int length) {
-        byte[] output = new byte[length];
-
-        for (int i = 0; i < length; i += 2) {
-            // PCM 16-bit little-endian
-            int low = input[offset + i] & 0xFF;
-            int high = input[offset + i + 1];
-
-            short sample = (short) ((high << 8) | low);
-
-            // Multiply volume
-            int amplified = (int) (sample * volumeGain);
+    /**
+     * Apply volume to the mixed frame and encode it into out (16-bit little-endian)
+     */
+    private void applyGain(int[] mix, byte[] out) {
+        float gain = volumeGain;
+        for (int i = 0; i < mix.length; i++) {
+            int amplified = (int) (mix[i] * gain);
 
             // Clamp to 16-bit range
             if (amplified > Short.MAX_VALUE) amplified = Short.MAX_VALUE;
             if (amplified < Short.MIN_VALUE) amplified = Short.MIN_VALUE;
 
-            // Write back
-            output[i]     = (byte) (amplified & 0xFF);
-            output[i + 1] = (byte) ((amplified >> 8) & 0xFF);
+            out[2 * i] = (byte) amplified;
+            out[2 * i + 1] = (byte) (amplified >> 8);
         }
-
-        return output;
     }
 
     // ==================== Interface ====================
@@ -509,5 +679,40 @@ public class VoiceChatManager {
         void onVoiceStarted();
         void onVoiceStopped();
         void onError(String error);
+
+        /**
+         * Playback stats, about once a second (called from the playback thread)
+         */
+        default void onStats(VoiceStats stats) {
+        }
+    }
+
+    /**
+     * Playback quality across all speakers being heard
+     */
+    public static final class VoiceStats {
+        static final VoiceStats EMPTY = new VoiceStats(0, 0, 0, 0, 0, 0);
+
+        public final int speakers;
+        public final int bufferedMs;  // Audio waiting in the fullest jitter buffer
+        public final int targetMs;    // Highest target latency chosen from measured jitter
+        public final long late;       // Packets that arrived after their turn to play
+        public final long lost;       // Packets that never arrived (concealed)
+        public final long concealed;  // Frames filled by repeat/fade
+
+        VoiceStats(int speakers, int bufferedMs, int targetMs, long late, long lost, long concealed) {
+            this.speakers = speakers;
+            this.bufferedMs = bufferedMs;
+            this.targetMs = targetMs;
+            this.late = late;
+            this.lost = lost;
+            this.concealed = concealed;
+        }
+
+        @Override
+        public String toString() {
+            return "buffered=" + bufferedMs + "ms, target=" + targetMs + "ms, late=" + late +
+                    ", lost=" + lost + ", concealed=" + concealed;
+        }
     }
 }
\ No newline at end of file
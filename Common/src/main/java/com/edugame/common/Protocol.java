@@ -1,5 +1,7 @@
 package com.edugame.common;
 
+import java.util.List;
+
 /**
  * Protocol class defines message types and constants for client-server communication
  * Used in EduGame platform for multiplayer math racing and social interaction.
@@ -139,7 +141,7 @@ public class Protocol {
     // UDP Voice Chat Messages
     public static final String JOIN_VOICE = "JOIN_VOICE";    // UDP: JOIN_VOICE:userId:roomId
     public static final String LEAVE_VOICE = "LEAVE_VOICE";  // UDP: LEAVE_VOICE:userId:roomId
-    public static final String VOICE_JOINED = "VOICE_JOINED";
+    public static final String VOICE_JOINED = "VOICE_JOINED";  // UDP: VOICE_JOINED:voiceRoomId:streamId (ids for VoiceHeader)
     public static final String VOICE_LEFT = "VOICE_LEFT";
 
     // Voice Chat Port
@@ -277,5 +279,23 @@ public class Protocol {
     // Position & Movement (Race Track)
     public static final double START_POSITION = 0.0;
 
+    // ============================================
+    // WIRE FORMAT
+    // ============================================
+    // Client adds "wire": "binary" to LOGIN; server echoes it in the LOGIN
+    // response when it will send binary frames from then on.
+    public static final String KEY_WIRE = "wire";
+    public static final String WIRE_BINARY = "binary";
+
+    // Message types with a binary codec. Wire id = index + 1 - append only!
+    public static final List<String> BINARY_MESSAGE_TYPES = List.of(
+            HEARTBEAT,
+            HEARTBEAT_ACK,
+            GAME_UPDATE,
+            SUBMIT_ANSWER,
+            ANSWER_RESULT,
+            GAME_QUESTION
+    );
+
 
 }
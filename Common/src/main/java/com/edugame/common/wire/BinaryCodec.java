@@ -0,0 +1,458 @@
+package com.edugame.common.wire;
+
+import com.edugame.common.Protocol;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BinaryCodec - Hand-written codecs for the hot game messages
+ *
+ * Frame: [MAGIC][length:int32][typeId:u8][presence:varint][fields...]
+ *  - length counts everything after itself
+ *  - typeId comes from Protocol.BINARY_MESSAGE_TYPES (index + 1)
+ *  - presence has one bit per schema field, fields follow in schema order
+ *
+ * encode() returns null for anything a schema does not describe exactly
+ * (unknown key, unexpected value type) - callers then send JSON instead,
+ * so the decoded JsonObject always equals what parsing the JSON line would give.
+ */
+public final class BinaryCodec {
+
+    /** First byte of a binary frame. JSON lines never start with 0x00. */
+    public static final int MAGIC = 0x00;
+    public static final int HEADER_SIZE = 5;
+
+    private enum Kind { INT, LONG, DOUBLE, BOOL, STRING, STRING_LIST, RECORD, RECORD_LIST }
+
+    private static final class Field {
+        final String name;
+        final Kind kind;
+        final Field[] nested;
+
+        Field(String name, Kind kind) {
+            this(name, kind, null);
+        }
+
+        Field(String name, Kind kind, Field[] nested) {
+            this.name = name;
+            this.kind = kind;
+            this.nested = nested;
+        }
+    }
+
+    // ==================== SCHEMAS ====================
+
+    private static final Field[] HEARTBEAT = {
+            new Field("timestamp", Kind.LONG),
+            new Field("sessionToken", Kind.STRING)
+    };
+
+    private static final Field[] HEARTBEAT_ACK = {
+            new Field("timestamp", Kind.LONG)
+    };
+
+    private static final Field[] POSITION = {
+            new Field("userId", Kind.INT),
+            new Field("position", Kind.DOUBLE),
+            new Field("score", Kind.INT),
+            new Field("correctStreak", Kind.INT),
+            new Field("wrongStreak", Kind.INT),
+            new Field("gotNitro", Kind.BOOL),
+            new Field("currentQuestion", Kind.INT),
+            new Field("totalQuestions", Kind.INT),
+            new Field("lastAnswerCorrect", Kind.BOOL),
+            new Field("lastAnswerTime", Kind.LONG),
+            new Field("answered", Kind.BOOL)
+    };
+
+    private static final Field[] GAME_UPDATE = {
+            new Field("roomId", Kind.STRING),
+            new Field("timestamp", Kind.LONG),
+            new Field("positions", Kind.RECORD_LIST, POSITION),
+            // Delta updates: records carry userId + changed fields only
+            new Field("version", Kind.LONG),
+            new Field("baseVersion", Kind.LONG),
+            new Field("keyframe", Kind.BOOL)
+    };
+
+    // Two client variants: (room_id, answer index) and (questionId, answer letter)
+    private static final Field[] SUBMIT_ANSWER = {
+            new Field("room_id", Kind.STRING),
+            new Field("roomId", Kind.STRING),
+            new Field("answer", Kind.INT),
+            new Field("username", Kind.STRING),
+            new Field("timestamp", Kind.LONG),
+            new Field("sessionToken", Kind.STRING),
+            new Field("questionId", Kind.INT),
+            new Field("timeSpent", Kind.LONG)
+    };
+
+    private static final Field[] ANSWER_RESULT = {
+            new Field("success", Kind.BOOL),
+            new Field("isCorrect", Kind.BOOL),
+            new Field("timeTaken", Kind.LONG),
+            new Field("correctStreak", Kind.INT),
+            new Field("message", Kind.STRING)
+    };
+
+    private static final Field[] QUESTION = {
+            new Field("questionId", Kind.INT),
+            new Field("questionText", Kind.STRING),
+            new Field("timeLimit", Kind.INT),
+            new Field("options", Kind.STRING_LIST)
+    };
+
+    // Both the nested ("question": {...}) and the flat layout are in use
+    private static final Field[] GAME_QUESTION = {
+            new Field("roomId", Kind.STRING),
+            new Field("questionNumber", Kind.INT),
+            new Field("totalQuestions", Kind.INT),
+            new Field("question", Kind.RECORD, QUESTION),
+            new Field("timestamp", Kind.LONG),
+            new Field("questionId", Kind.INT),
+            new Field("questionText", Kind.STRING),
+            new Field("timeLimit", Kind.INT),
+            new Field("options", Kind.STRING_LIST)
+    };
+
+    private static final Map<String, Integer> TYPE_IDS = new HashMap<>();
+    private static final Field[][] SCHEMAS = new Field[Protocol.BINARY_MESSAGE_TYPES.size() + 1][];
+
+    static {
+        for (int i = 0; i < Protocol.BINARY_MESSAGE_TYPES.size(); i++) {
+            TYPE_IDS.put(Protocol.BINARY_MESSAGE_TYPES.get(i), i + 1);
+        }
+        register(Protocol.HEARTBEAT, HEARTBEAT);
+        register(Protocol.HEARTBEAT_ACK, HEARTBEAT_ACK);
+        register(Protocol.GAME_UPDATE, GAME_UPDATE);
+        register(Protocol.SUBMIT_ANSWER, SUBMIT_ANSWER);
+        register(Protocol.ANSWER_RESULT, ANSWER_RESULT);
+        register(Protocol.GAME_QUESTION, GAME_QUESTION);
+    }
+
+    private static void register(String type, Field[] schema) {
+        SCHEMAS[TYPE_IDS.get(type)] = schema;
+    }
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * True if this message type has a binary codec
+     */
+    public static boolean supports(Object type) {
+        return type instanceof String && TYPE_IDS.containsKey(type);
+    }
+
+    // ==================== ENCODE ====================
+
+    /**
+     * Encode a message into one complete binary frame.
+     * @return the frame, or null if the message must go as JSON
+     */
+    public static byte[] encode(Map<?, ?> message) {
+        Object type = message.get("type");
+        Integer typeId = type instanceof String ? TYPE_IDS.get(type) : null;
+        if (typeId == null) {
+            return null;
+        }
+
+        Out out = new Out();
+        out.writeHeader();
+        out.write(typeId);
+        if (!writeRecord(out, SCHEMAS[typeId], message, true)) {
+            return null;
+        }
+        return out.finish();
+    }
+
+    private static boolean writeRecord(Out out, Field[] schema, Map<?, ?> record, boolean topLevel) {
+        // Any key the schema doesn't know means JSON (nulls are skipped, like Gson does)
+        for (Map.Entry<?, ?> entry : record.entrySet()) {
+            if (entry.getValue() == null || (topLevel && "type".equals(entry.getKey()))) {
+                continue;
+            }
+            if (indexOf(schema, entry.getKey()) < 0) {
+                return false;
+            }
+        }
+
+        Object[] values = new Object[schema.length];
+        long presence = 0;
+        for (int i = 0; i < schema.length; i++) {
+            Object value = record.get(schema[i].name);
+            if (value != null) {
+                values[i] = value;
+                presence |= 1L << i;
+            }
+        }
+
+        out.writeVarLong(presence);
+        for (int i = 0; i < schema.length; i++) {
+            if (values[i] != null && !writeValue(out, schema[i], values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(Field[] schema, Object name) {
+        for (int i = 0; i < schema.length; i++) {
+            if (schema[i].name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean writeValue(Out out, Field field, Object value) {
+        switch (field.kind) {
+            case INT:
+                if (!(value instanceof Integer)) return false;
+                out.writeVarLong(zigzag((Integer) value));
+                return true;
+            case LONG:
+                if (!(value instanceof Long) && !(value instanceof Integer)) return false;
+                out.writeVarLong(zigzag(((Number) value).longValue()));
+                return true;
+            case DOUBLE:
+                if (!(value instanceof Double) && !(value instanceof Float)) return false;
+                out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+                return true;
+            case BOOL:
+                if (!(value instanceof Boolean)) return false;
+                out.write((Boolean) value ? 1 : 0);
+                return true;
+            case STRING:
+                if (!(value instanceof String)) return false;
+                out.writeString((String) value);
+                return true;
+            case STRING_LIST: {
+                if (!(value instanceof List)) return false;
+                List<?> list = (List<?>) value;
+                out.writeVarLong(list.size());
+                for (Object item : list) {
+                    if (!(item instanceof String)) return false;
+                    out.writeString((String) item);
+                }
+                return true;
+            }
+            case RECORD:
+                if (!(value instanceof Map)) return false;
+                return writeRecord(out, field.nested, (Map<?, ?>) value, false);
+            case RECORD_LIST: {
+                if (!(value instanceof List)) return false;
+                List<?> list = (List<?>) value;
+                out.writeVarLong(list.size());
+                for (Object item : list) {
+                    if (!(item instanceof Map) || !writeRecord(out, field.nested, (Map<?, ?>) item, false)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    // ==================== DECODE ====================
+
+    /**
+     * Decode the body of a binary frame (everything after the length field).
+     * Builds the JsonObject directly, no Map / Gson tree round-trip.
+     * @return message including "type"
+     * @throws IllegalArgumentException on an unknown type id or malformed body
+     */
+    public static JsonObject decode(byte[] buf, int offset, int length) {
+        In in = new In(buf, offset, length);
+        int typeId = in.readByte();
+        if (typeId <= 0 || typeId >= SCHEMAS.length) {
+            throw new IllegalArgumentException("Unknown binary message type id: " + typeId);
+        }
+
+        JsonObject message = new JsonObject();
+        message.addProperty("type", Protocol.BINARY_MESSAGE_TYPES.get(typeId - 1));
+        readRecord(in, SCHEMAS[typeId], message);
+        if (!in.atEnd()) {
+            throw new IllegalArgumentException("Trailing bytes in binary frame");
+        }
+        return message;
+    }
+
+    private static void readRecord(In in, Field[] schema, JsonObject into) {
+        long presence = in.readVarLong();
+        for (int i = 0; i < schema.length; i++) {
+            if ((presence & (1L << i)) != 0) {
+                into.add(schema[i].name, readValue(in, schema[i]));
+            }
+        }
+    }
+
+    private static JsonElement readValue(In in, Field field) {
+        switch (field.kind) {
+            case INT:
+                return new JsonPrimitive((int) unzigzag(in.readVarLong()));
+            case LONG:
+                return new JsonPrimitive(unzigzag(in.readVarLong()));
+            case DOUBLE:
+                return new JsonPrimitive(Double.longBitsToDouble(in.readLong()));
+            case BOOL:
+                return new JsonPrimitive(in.readByte() != 0);
+            case STRING:
+                return new JsonPrimitive(in.readString());
+            case STRING_LIST: {
+                int size = in.readCount();
+                JsonArray list = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(in.readString());
+                }
+                return list;
+            }
+            case RECORD: {
+                JsonObject record = new JsonObject();
+                readRecord(in, field.nested, record);
+                return record;
+            }
+            case RECORD_LIST: {
+                int size = in.readCount();
+                JsonArray list = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    JsonObject record = new JsonObject();
+                    readRecord(in, field.nested, record);
+                    list.add(record);
+                }
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported field kind: " + field.kind);
+        }
+    }
+
+    /**
+     * Read the big-endian length that follows MAGIC in a frame header
+     */
+    public static int readLength(byte[] buf, int offset) {
+        return ((buf[offset] & 0xFF) << 24) | ((buf[offset + 1] & 0xFF) << 16) |
+                ((buf[offset + 2] & 0xFF) << 8) | (buf[offset + 3] & 0xFF);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // ==================== BUFFERS ====================
+
+    private static final class Out extends ByteArrayOutputStream {
+        Out() {
+            super(128);
+        }
+
+        void writeHeader() {
+            write(MAGIC);
+            write(0);
+            write(0);
+            write(0);
+            write(0);
+        }
+
+        void writeVarLong(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeLong(long v) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (v >>> shift));
+            }
+        }
+
+        void writeString(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        byte[] finish() {
+            int length = count - HEADER_SIZE;
+            buf[1] = (byte) (length >>> 24);
+            buf[2] = (byte) (length >>> 16);
+            buf[3] = (byte) (length >>> 8);
+            buf[4] = (byte) length;
+            return toByteArray();
+        }
+    }
+
+    private static final class In {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        In(byte[] buf, int offset, int length) {
+            this.buf = buf;
+            this.pos = offset;
+            this.end = offset + length;
+        }
+
+        int readByte() {
+            if (pos >= end) {
+                throw new IllegalArgumentException("Truncated binary frame");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | readByte();
+            }
+            return v;
+        }
+
+        int readCount() {
+            long n = readVarLong();
+            if (n < 0 || n > end - pos) {
+                throw new IllegalArgumentException("Bad element count: " + n);
+            }
+            return (int) n;
+        }
+
+        String readString() {
+            int n = readCount();
+            String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+
+        boolean atEnd() {
+            return pos == end;
+        }
+    }
+}
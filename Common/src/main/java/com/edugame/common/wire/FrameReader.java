@@ -0,0 +1,119 @@
+package com.edugame.common.wire;
+
+import com.google.gson.JsonObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FrameReader - Reads a stream that may mix JSON lines and binary frames
+ *
+ * Each frame is classified by its first byte: MAGIC starts a binary frame,
+ * anything else is a newline-terminated JSON line. Works with old peers
+ * that only ever send JSON.
+ */
+public class FrameReader {
+
+    private final InputStream in;
+    private final int maxFrameBytes;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+    public FrameReader(InputStream in, int maxFrameBytes) {
+        this.in = new BufferedInputStream(in, 16 * 1024);
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Block until the next frame.
+     * @return String for a JSON line, JsonObject for a binary frame, null at end of stream
+     */
+    public Object read() throws IOException {
+        while (true) {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            if (first == BinaryCodec.MAGIC) {
+                return readBinary();
+            }
+            String text = readLine(first);
+            if (text == null) {
+                return null;
+            }
+            if (!text.isEmpty()) {
+                return text;
+            }
+        }
+    }
+
+    /**
+     * Convenience for request/response code that expects JSON (e.g. LOGIN)
+     */
+    public String readLine() throws IOException {
+        Object frame = read();
+        if (frame == null || frame instanceof String) {
+            return (String) frame;
+        }
+        throw new IOException("Expected JSON line but got binary frame: " + ((JsonObject) frame).get("type"));
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private JsonObject readBinary() throws IOException {
+        byte[] header = readFully(4);
+        int length = BinaryCodec.readLength(header, 0);
+        if (length <= 0 || length > maxFrameBytes) {
+            throw new IOException("Bad binary frame length: " + length);
+        }
+        byte[] body = readFully(length);
+        try {
+            return BinaryCodec.decode(body, 0, length);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed binary frame: " + e.getMessage(), e);
+        }
+    }
+
+    private String readLine(int first) throws IOException {
+        line.reset();
+        int b = first;
+        while (b != '\n') {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                break;
+            }
+            line.write(b);
+            if (line.size() > maxFrameBytes) {
+                throw new IOException("JSON line exceeds " + maxFrameBytes + " bytes");
+            }
+            b = in.read();
+        }
+
+        byte[] bytes = line.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] data = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(data, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Stream ended inside a binary frame");
+            }
+            read += n;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,114 @@
+package com.edugame.common.wire;
+
+import java.nio.ByteBuffer;
+
+/**
+ * VoiceHeader - Header cố định 12 byte đứng trước PCM trong mỗi packet voice UDP
+ *
+ * [magic:u8][flags:u8][roomId:u16][streamId:u16][sequence:u16][timestamp:u32][audio...]
+ *  - magic: 0xA0 | version - packet cũ bắt đầu bằng userId (byte cao = 0)
+ *    hoặc "JOIN_VOICE"/"LEAVE_VOICE" nên không bị nhầm
+ *  - roomId / streamId: id ngắn server cấp khi JOIN_VOICE
+ *    (trả về "VOICE_JOINED:roomId:streamId"), chỉ có nghĩa trong phiên voice đó;
+ *    packet server trộn sẵn dùng streamId = MIXED_STREAM
+ *  - sequence: tăng 1 mỗi packet của stream, quay vòng ở 65536
+ *  - timestamp: số sample (16 kHz) tính từ đầu stream, quay vòng
+ *
+ * Big-endian. Static helpers for byte[] (client) and ByteBuffer (server relay),
+ * all absolute so they never move the buffer position.
+ */
+public final class VoiceHeader {
+
+    public static final int VERSION = 1;
+    public static final int MAGIC = 0xA0 | VERSION;
+    public static final int SIZE = 12;
+
+    /** Largest roomId / streamId the server hands out */
+    public static final int MAX_ID = 0xFFFE;
+
+    /** streamId of audio mixed by the server (all other speakers of the room) */
+    public static final int MIXED_STREAM = 0xFFFF;
+
+    /** flags: payload is a server mix, not one speaker */
+    public static final int FLAG_MIXED = 0x01;
+
+    /**
+     * flags: comfort-noise marker instead of audio - the speaker is silent.
+     * Payload is one byte, the background noise level in -dBov (0..127).
+     */
+    public static final int FLAG_SILENCE = 0x02;
+
+    private VoiceHeader() {
+    }
+
+    public static void write(byte[] packet, int flags, int roomId, int streamId, int sequence, int timestamp) {
+        packet[0] = (byte) MAGIC;
+        packet[1] = (byte) flags;
+        packet[2] = (byte) (roomId >> 8);
+        packet[3] = (byte) roomId;
+        packet[4] = (byte) (streamId >> 8);
+        packet[5] = (byte) streamId;
+        packet[6] = (byte) (sequence >> 8);
+        packet[7] = (byte) sequence;
+        packet[8] = (byte) (timestamp >> 24);
+        packet[9] = (byte) (timestamp >> 16);
+        packet[10] = (byte) (timestamp >> 8);
+        packet[11] = (byte) timestamp;
+    }
+
+    // ==================== byte[] ====================
+
+    public static boolean isVoice(byte[] packet, int length) {
+        return length >= SIZE && (packet[0] & 0xFF) == MAGIC;
+    }
+
+    public static int flags(byte[] packet) {
+        return packet[1] & 0xFF;
+    }
+
+    public static int roomId(byte[] packet) {
+        return u16(packet, 2);
+    }
+
+    public static int streamId(byte[] packet) {
+        return u16(packet, 4);
+    }
+
+    public static int sequence(byte[] packet) {
+        return u16(packet, 6);
+    }
+
+    public static int timestamp(byte[] packet) {
+        return (u16(packet, 8) << 16) | u16(packet, 10);
+    }
+
+    // ==================== ByteBuffer ====================
+
+    public static boolean isVoice(ByteBuffer packet) {
+        return packet.limit() >= SIZE && (packet.get(0) & 0xFF) == MAGIC;
+    }
+
+    public static int flags(ByteBuffer packet) {
+        return packet.get(1) & 0xFF;
+    }
+
+    public static int roomId(ByteBuffer packet) {
+        return packet.getShort(2) & 0xFFFF;
+    }
+
+    public static int streamId(ByteBuffer packet) {
+        return packet.getShort(4) & 0xFFFF;
+    }
+
+    public static int sequence(ByteBuffer packet) {
+        return packet.getShort(6) & 0xFFFF;
+    }
+
+    public static int timestamp(ByteBuffer packet) {
+        return packet.getInt(8);
+    }
+
+    private static int u16(byte[] packet, int offset) {
+        return ((packet[offset] & 0xFF) << 8) | (packet[offset + 1] & 0xFF);
+    }
+}
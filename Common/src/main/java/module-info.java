@@ -1,4 +1,6 @@
 module com.edugame.common {
     requires javafx.fxml;
+    requires transitive com.google.gson;
     exports com.edugame.common;
-}
\ No newline at end of file
+    exports com.edugame.common.wire;
+}
@@ -1,7 +1,14 @@
 package com.edugame.server;
 
 import com.edugame.common.Protocol;
+import com.edugame.server.database.DatabaseConnection;
+import com.edugame.server.database.GameResultWriter;
+import com.edugame.server.database.LeaderboardIndex;
+import com.edugame.server.database.QuestionCache;
 import com.edugame.server.network.GameServer;
+import com.edugame.server.network.VoiceChatServer;
+import com.edugame.server.util.ActorMailbox;
+import com.edugame.server.util.TimerService;
 import com.edugame.server.web.WebServer;
 import com.edugame.server.web.CloudflareTunnel;  // ✅ NEW IMPORT
 
@@ -57,13 +64,20 @@ public class ServerMain {
         System.out.println("   'web'       - Show web URLs");
         System.out.println("   'tunnel'    - Start Cloudflare Tunnel");  // ✅ NEW
         System.out.println("   'public'    - Show public URL");          // ✅ NEW
+        System.out.println("   'voicemix'  - Set voice mixing of a room");
         System.out.println("   'stop'      - Stop all servers");
         System.out.println("   'help'      - Show this help message");
         System.out.println("========================================\n");
 
         while (running) {
             System.out.print("Server> ");
-            String command = scanner.nextLine().trim().toLowerCase();
+            String line = scanner.nextLine().trim();
+            String command = line.toLowerCase();
+
+            if (command.startsWith("voicemix")) {
+                voiceMix(line);
+                continue;
+            }
 
             switch (command) {
                 case "status":
@@ -91,6 +105,9 @@ public class ServerMain {
                     cloudflareTunnel.stop();  // ✅ Stop tunnel first
                     webServer.stop();
                     gameServer.stop();
+                    GameResultWriter.getInstance().shutdown();
+                    DatabaseConnection.shutdown();
+                    TimerService.getInstance().shutdown();
                     running = false;
                     break;
 
@@ -118,9 +135,34 @@ public class ServerMain {
         System.out.println("🎮 Game Server: " + (gameServer.isRunning() ? "✓ Running" : "✗ Stopped"));
         System.out.println("   Port: " + gameServer.getPort());
         System.out.println("   Connected: " + gameServer.getConnectedClientsCount() + " clients");
+        System.out.println("   Outbound: " + gameServer.getOutboundSummary());
+        System.out.println("   Timers: " + TimerService.getInstance().getSummary());
+        System.out.println("   Sessions: " + ActorMailbox.getSummary());
+        System.out.println("   Matchmaking: " + gameServer.getMatchmakingSummary());
+        System.out.println("   Rooms: " + gameServer.getRoomSummary());
+        System.out.println("   Dispatch: " + gameServer.getDispatchLaneSummary() +
+                " (hist " + gameServer.getDispatchHistogramLegend() + ")");
+        for (String line : gameServer.getDispatchStats()) {
+            System.out.println("      " + line);
+        }
+        VoiceChatServer voice = GameServer.getVoiceChatServer();
+        if (voice != null && voice.isRunning()) {
+            System.out.println("   Voice: " + voice.getStatsSummary());
+            for (String line : voice.getRoomStats()) {
+                System.out.println("      " + line);
+            }
+        }
+        System.out.println();
+        System.out.println("🗄️ DB Pool: " + DatabaseConnection.getPool().getStatsSummary());
+        System.out.println("   Question cache: " + QuestionCache.getInstance().getStatsSummary());
+        System.out.println("   Result writer: " + GameResultWriter.getInstance().getStatsSummary());
+        System.out.println("   Leaderboard index: " + LeaderboardIndex.getInstance().getStatsSummary());
         System.out.println();
         System.out.println("🌐 Web Server: " + (webServer.isRunning() ? "✓ Running" : "✗ Stopped"));
         System.out.println("   URL: " + webServer.getUrl());
+        System.out.println("   Executor: " + webServer.getExecutorSummary());
+        System.out.println("   Page cache: " + webServer.getPageCacheSummary());
+        System.out.println("   Avatar cache: " + webServer.getAvatarCacheSummary());
         System.out.println();
         System.out.println("☁️ Cloudflare Tunnel: " + (cloudflareTunnel.isRunning() ? "✓ Running" : "✗ Stopped"));
         if (cloudflareTunnel.isRunning() && cloudflareTunnel.getPublicUrl() != null) {
@@ -230,6 +272,29 @@ public class ServerMain {
         System.out.println("========================================\n");
     }
 
+    /**
+     * voicemix &lt;roomId&gt; on|off|auto
+     */
+    private static void voiceMix(String line) {
+        String[] parts = line.split("\\s+");
+        VoiceChatServer voice = GameServer.getVoiceChatServer();
+        if (voice == null || !voice.isRunning()) {
+            System.out.println("❌ Voice chat server is not running");
+            return;
+        }
+        if (parts.length == 2) {
+            System.out.println("🎚️ " + parts[1] + ": " + voice.getMixMode(parts[1]));
+            return;
+        }
+        VoiceChatServer.MixMode mode = parts.length == 3 ? VoiceChatServer.parseMixMode(parts[2], null) : null;
+        if (mode == null) {
+            System.out.println("❌ Usage: voicemix <roomId> [on|off|auto]");
+            return;
+        }
+        voice.setMixMode(parts[1], mode);
+        System.out.println("✅ Voice mix mode of " + parts[1] + " set to " + mode);
+    }
+
     private static void showHelp() {
         System.out.println("\n========================================");
         System.out.println("📝 AVAILABLE COMMANDS");
@@ -239,6 +304,7 @@ public class ServerMain {
         System.out.println("web     - Show web server URLs (local + public)");
         System.out.println("tunnel  - Start Cloudflare Tunnel for HTTPS");  // ✅ UPDATED
         System.out.println("public  - Show public URL (if tunnel running)"); // ✅ NEW
+        System.out.println("voicemix <roomId> on|off|auto - Server-side voice mixing for a room");
         System.out.println("stop    - Stop all servers gracefully");
         System.out.println("help    - Show this help message");
 
@@ -161,6 +161,318 @@ public class ConfigManager {
         }
     }
 
+    /**
+     * Get TCP transport mode: "blocking" (thread-per-connection) or "nio"
+     */
+    public static String getServerTransport() {
+        return get("server.transport", "blocking").trim().toLowerCase();
+    }
+
+    /**
+     * Number of selector threads used by the NIO transport
+     */
+    public static int getNioIoThreads() {
+        return getInt("server.nio.io.threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Number of worker threads running message dispatch in NIO mode
+     */
+    public static int getNioWorkerThreads() {
+        return getInt("server.nio.worker.threads", Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    /**
+     * Max pending dispatch tasks before the NIO transport pauses reads
+     */
+    public static int getNioWorkerQueueSize() {
+        return getInt("server.nio.worker.queue", 10000);
+    }
+
+    /**
+     * Max size of one inbound frame - JSON line or binary (bytes)
+     */
+    public static int getNioMaxFrameBytes() {
+        return getInt("server.nio.max.frame.bytes", 4 * 1024 * 1024);
+    }
+
+    /**
+     * Threads shared by all game sessions (each session runs on one at a time)
+     */
+    public static int getGameSessionThreads() {
+        return getInt("game.session.threads", Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Threads running callbacks of the shared TimerService
+     */
+    public static int getTimerWorkerThreads() {
+        return getInt("server.timer.worker.threads", Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Threads running DB-backed requests (leaderboard, friends, messages...)
+     */
+    public static int getDispatchDbThreads() {
+        return getInt("server.dispatch.db.threads", 16);
+    }
+
+    /**
+     * Pending DB-backed requests (all connections) before new ones are refused
+     */
+    public static int getDispatchDbQueueSize() {
+        return getInt("server.dispatch.db.queue", 1000);
+    }
+
+    /**
+     * Pending DB-backed requests of one connection before new ones are refused
+     */
+    public static int getDispatchDbLaneMax() {
+        return getInt("server.dispatch.db.lane.max", 32);
+    }
+
+    /**
+     * Allow clients to negotiate binary frames for hot game messages at LOGIN
+     */
+    public static boolean isBinaryWireEnabled() {
+        return Boolean.parseBoolean(get("server.wire.binary", "true").trim());
+    }
+
+    /**
+     * Frames a client may have queued before the slow-consumer policy kicks in
+     */
+    public static int getOutboundMaxFrames() {
+        return getInt("server.outbound.max.frames", 512);
+    }
+
+    /**
+     * How long a client's send queue may stay full before it is disconnected (ms)
+     */
+    public static int getOutboundStallTimeoutMs() {
+        return getInt("server.outbound.stall.timeout.ms", 10_000);
+    }
+
+    /**
+     * Drop unsent GAME_UPDATE snapshots when a newer one is queued
+     */
+    public static boolean isOutboundDropUpdates() {
+        return Boolean.parseBoolean(get("server.outbound.drop.updates", "true").trim());
+    }
+
+    /**
+     * Minimum gap between two GAME_UPDATE flushes of a session (changes in between are merged)
+     */
+    public static int getGameUpdateFlushMs() {
+        return getInt("game.update.flush.ms", 100);
+    }
+
+    /**
+     * Full GAME_UPDATE at most this often (deltas in between)
+     */
+    public static int getGameUpdateKeyframeMs() {
+        return getInt("game.update.keyframe.ms", 5000);
+    }
+
+    /**
+     * Threads that set up matched games (questions, DB room, notifications)
+     */
+    public static int getMatchmakingWorkerThreads() {
+        return getInt("matchmaking.worker.threads", 4);
+    }
+
+    /**
+     * How often waiting players are grouped into matches (ms)
+     */
+    public static int getMatchmakingTickMs() {
+        return getInt("matchmaking.tick.ms", 500);
+    }
+
+    /**
+     * Max score spread accepted by a player who just joined the queue
+     */
+    public static int getMatchmakingWindowBase() {
+        return getInt("matchmaking.window.base", 200);
+    }
+
+    /**
+     * How much the accepted spread widens per second of waiting
+     */
+    public static int getMatchmakingWindowGrowthPerSec() {
+        return getInt("matchmaking.window.growth.per.sec", 25);
+    }
+
+    /**
+     * Widest score spread ever accepted
+     */
+    public static int getMatchmakingWindowMax() {
+        return getInt("matchmaking.window.max", 1000);
+    }
+
+    /**
+     * Finished games queued for the result writer; more are spilled to the journal
+     */
+    public static int getResultsQueueMax() {
+        return getInt("results.queue.max", 1000);
+    }
+
+    /**
+     * Max finished games written in one transaction
+     */
+    public static int getResultsBatchMax() {
+        return getInt("results.batch.max", 50);
+    }
+
+    /**
+     * How long the result writer waits to fill a batch (ms)
+     */
+    public static int getResultsLingerMs() {
+        return getInt("results.linger.ms", 200);
+    }
+
+    /**
+     * Journal of game results not yet in the database (replayed on start)
+     */
+    public static String getResultsJournalFile() {
+        return get("results.journal.file", "data/results-journal.jsonl").trim();
+    }
+
+    /**
+     * How long shutdown waits for queued game results to be written (ms)
+     */
+    public static int getResultsShutdownTimeoutMs() {
+        return getInt("results.shutdown.timeout.ms", 10_000);
+    }
+
+    /**
+     * Web server executor: "pool" (bounded, sheds with 503) or "virtual" (Java 21+)
+     */
+    public static String getWebExecutorMode() {
+        return get("web.executor", "pool").trim().toLowerCase();
+    }
+
+    /**
+     * Web handler threads in "pool" mode
+     */
+    public static int getWebThreads() {
+        return getInt("web.threads", 10);
+    }
+
+    /**
+     * Web requests allowed to wait for a thread before new ones get 503
+     */
+    public static int getWebQueueMax() {
+        return getInt("web.queue.max", 100);
+    }
+
+    /**
+     * How long a rendered web page is served before it is rebuilt (ms)
+     */
+    public static int getWebCacheTtlMs() {
+        return getInt("web.cache.ttl.ms", 5000);
+    }
+
+    /**
+     * Max rendered pages kept (one per profile + leaderboard + statistics)
+     */
+    public static int getWebCacheMaxEntries() {
+        return getInt("web.cache.max.entries", 1000);
+    }
+
+    /**
+     * Memory budget for cached avatars and thumbnails (bytes)
+     */
+    public static int getWebAvatarCacheBytes() {
+        return getInt("web.avatar.cache.bytes", 16 * 1024 * 1024);
+    }
+
+    /**
+     * Avatar files larger than this are streamed from disk, not cached (bytes)
+     */
+    public static int getWebAvatarInlineMaxBytes() {
+        return getInt("web.avatar.inline.max.bytes", 256 * 1024);
+    }
+
+    /**
+     * Max physical JDBC connections held by the pool
+     */
+    public static int getDbPoolMaxSize() {
+        return getInt("db.pool.max.size", 20);
+    }
+
+    /**
+     * Idle connections the pool keeps open even when unused
+     */
+    public static int getDbPoolMinIdle() {
+        return getInt("db.pool.min.idle", 2);
+    }
+
+    /**
+     * How long a caller waits for a free connection before failing (ms)
+     */
+    public static int getDbPoolAcquireTimeoutMs() {
+        return getInt("db.pool.acquire.timeout.ms", 5000);
+    }
+
+    /**
+     * Idle time after which a pooled connection is closed (ms)
+     */
+    public static int getDbPoolIdleTimeoutMs() {
+        return getInt("db.pool.idle.timeout.ms", 600_000);
+    }
+
+    /**
+     * Max age of a pooled connection before it is retired (ms)
+     */
+    public static int getDbPoolMaxLifetimeMs() {
+        return getInt("db.pool.max.lifetime.ms", 1_800_000);
+    }
+
+    /**
+     * Connections idle longer than this are validated before reuse (ms)
+     */
+    public static int getDbPoolValidationIntervalMs() {
+        return getInt("db.pool.validation.interval.ms", 30_000);
+    }
+
+    /**
+     * Number of UDP voice relay workers (one SO_REUSEPORT socket each where supported)
+     */
+    public static int getVoiceRelayThreads() {
+        return getInt("voice.relay.threads", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * Kernel send/receive buffer of each voice relay socket (bytes)
+     */
+    public static int getVoiceSocketBufferBytes() {
+        return getInt("voice.socket.buffer.bytes", 1024 * 1024);
+    }
+
+    /**
+     * Default voice mix mode for rooms without their own setting: off, on or auto
+     */
+    public static String getVoiceMixMode() {
+        return get("voice.mix.mode", "off").trim().toLowerCase();
+    }
+
+    /**
+     * Voice members from which an AUTO room switches to server mixing
+     */
+    public static int getVoiceMixAutoMembers() {
+        return getInt("voice.mix.auto.members", 4);
+    }
+
+    /**
+     * Parse an int config value, falling back to default on missing/invalid input
+     */
+    private static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     /**
      * Kiểm tra xem API Key đã được cấu hình chưa
      */
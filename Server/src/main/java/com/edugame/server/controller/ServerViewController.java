@@ -1157,20 +1157,7 @@ public class ServerViewController {
         Set<Integer> onlineIds = new HashSet<>();
 
         if (gameServer != null && gameServer.isRunning()) {
-            try {
-                // Get connected clients from server
-                List<ClientHandler> clients = gameServer.getConnectedClients();
-
-                if (clients != null) {
-                    for (ClientHandler client : clients) {
-                        if (client != null && client.getCurrentUser() != null) {
-                            onlineIds.add(client.getCurrentUser().getUserId());
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                System.err.println("⚠️ Error getting online users: " + e.getMessage());
-            }
+            onlineIds.addAll(gameServer.getOnlineUserIds());
         }
 
         return onlineIds;
@@ -1185,22 +1172,9 @@ public class ServerViewController {
             return false;
         }
 
-        try {
-            List<ClientHandler> clients = gameServer.getConnectedClients();
-            if (clients != null) {
-                for (ClientHandler client : clients) {
-                    if (client != null && client.getCurrentUser() != null &&
-                            client.getCurrentUser().getUserId() == userId) {
-                        return true;
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️ Error checking user online status: " + e.getMessage());
-        }
-
-        return false;
+        return gameServer.isUserOnline(userId);
     }
+
 // ==================== Chat MANAGEMENT ====================
     /**
      * Setup Server Chat tab with recipient table and message composer
@@ -0,0 +1,378 @@
+package com.edugame.server.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ConnectionPool - Bounded JDBC connection pool
+ *
+ * - At most maxSize physical connections, whatever the number of callers
+ * - Borrowers wait up to acquireTimeoutMs, then get SQLTimeoutException
+ * - Connections idle longer than validationIntervalMs are checked with isValid()
+ * - Idle connections are evicted after idleTimeoutMs (keeping minIdle)
+ * - Connections are retired after maxLifetimeMs
+ *
+ * Callers use the normal JDBC pattern: Connection.close() returns it to the pool.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long HOUSEKEEPING_INTERVAL_MS = 30_000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long validationIntervalMs;
+
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password,
+                          int maxSize, int minIdle,
+                          long acquireTimeoutMs, long idleTimeoutMs,
+                          long maxLifetimeMs, long validationIntervalMs) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxSize));
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.validationIntervalMs = validationIntervalMs;
+        this.permits = new Semaphore(this.maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DbPool-Housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // ==================== BORROW / RETURN ====================
+
+    /**
+     * Borrow a connection. Caller must close() it to give it back.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs +
+                        "ms waiting for a database connection (" + getStatsSummary() + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            while (true) {
+                PooledConnection pooled = idle.pollFirst();
+
+                if (pooled == null) {
+                    if (reserveSlot()) {
+                        pooled = create();
+                    } else {
+                        // Pool is full - a connection is being returned or retired right now
+                        long remaining = deadline - System.nanoTime();
+                        pooled = remaining > 0 ? idle.pollFirst(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (pooled == null) {
+                            timeoutCount.incrementAndGet();
+                            throw new SQLTimeoutException("Timed out waiting for a database connection (" +
+                                    getStatsSummary() + ")");
+                        }
+                    }
+                }
+
+                if (isUsable(pooled)) {
+                    recordWait(System.nanoTime() - start);
+                    borrowCount.incrementAndGet();
+                    return pooled.lease();
+                }
+
+                destroy(pooled);
+            }
+        } catch (InterruptedException e) {
+            permits.release();
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        try {
+            boolean healthy = !closed && !pooled.isExpired(System.currentTimeMillis()) && pooled.reset();
+            if (healthy) {
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerFirst(pooled); // LIFO keeps hot connections hot, lets cold ones idle out
+            } else {
+                destroy(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean reserveSlot() {
+        while (true) {
+            int current = totalConnections.get();
+            if (current >= maxSize) {
+                return false;
+            }
+            if (totalConnections.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        try {
+            Connection raw = DriverManager.getConnection(url, user, password);
+            raw.setAutoCommit(true);
+            createdCount.incrementAndGet();
+            return new PooledConnection(raw);
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        destroyedCount.incrementAndGet();
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            // Ignore - connection is being discarded
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (pooled.isExpired(now)) {
+            return false;
+        }
+        if (now - pooled.lastUsedAt < validationIntervalMs) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // ==================== HOUSEKEEPING ====================
+
+    /**
+     * Evict idle/expired connections and top up to minIdle
+     */
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+            List<PooledConnection> evicted = new ArrayList<>();
+
+            Iterator<PooledConnection> it = idle.descendingIterator(); // oldest-used first
+            int idleCount = idle.size();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean tooIdle = idleCount > minIdle && now - pooled.lastUsedAt > idleTimeoutMs;
+                if ((tooIdle || pooled.isExpired(now)) && idle.remove(pooled)) {
+                    evicted.add(pooled);
+                    idleCount--;
+                }
+            }
+            for (PooledConnection pooled : evicted) {
+                destroy(pooled);
+            }
+
+            while (!closed && idle.size() < minIdle && reserveSlot()) {
+                idle.offerLast(create());
+            }
+
+            if (!evicted.isEmpty()) {
+                System.out.println("🧹 [DbPool] Evicted " + evicted.size() + " connections (" + getStatsSummary() + ")");
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ [DbPool] Housekeeping error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close all idle connections and stop handing out new ones
+     */
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+        System.out.println("✓ [DbPool] Closed");
+    }
+
+    // ==================== METRICS ====================
+
+    public int getMaxSize() { return maxSize; }
+    public int getTotalConnections() { return totalConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return maxSize - permits.availablePermits(); }
+    public int getWaitingThreads() { return permits.getQueueLength(); }
+    public long getBorrowCount() { return borrowCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getDestroyedCount() { return destroyedCount.get(); }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public String getStatsSummary() {
+        return String.format("total=%d/%d, active=%d, idle=%d, waiting=%d, borrows=%d, timeouts=%d, avgWait=%.2fms",
+                getTotalConnections(), maxSize, getActiveConnections(), getIdleConnections(),
+                getWaitingThreads(), getBorrowCount(), getTimeoutCount(), getAverageWaitMillis());
+    }
+
+    // ==================== POOLED CONNECTION ====================
+
+    /**
+     * One physical connection plus bookkeeping. Each lease hands out a fresh
+     * proxy so a stale reference cannot use the connection after close().
+     */
+    private final class PooledConnection {
+        final Connection raw;
+        final long createdAt;
+        volatile long lastUsedAt;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+
+        boolean isExpired(long now) {
+            return maxLifetimeMs > 0 && now - createdAt > maxLifetimeMs;
+        }
+
+        /**
+         * Undo per-borrower state (open transaction, autocommit off)
+         */
+        boolean reset() {
+            try {
+                if (raw.isClosed()) {
+                    return false;
+                }
+                if (!raw.getAutoCommit()) {
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+                raw.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(this));
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.raw + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(pooled.raw, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.edugame.server.database;
 
+import com.edugame.server.config.ConfigManager;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
     private static DatabaseConnection instance;
-
+    private static volatile ConnectionPool pool;
 
     // Database configuration
     private static final String DB_HOST = "localhost";
@@ -36,16 +37,46 @@ public class DatabaseConnection {
     }
 
     /**
-     * Always return a NEW connection.
-     * Caller is responsible for closing it after use.
+     * Borrow a connection from the pool.
+     * Caller is responsible for closing it after use (close() returns it to the pool).
      */
     public static Connection getConnection() throws SQLException {
-        Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        conn.setAutoCommit(true);
-        if (conn != null && !conn.isClosed()) {
-            System.out.println("✓ Database connection established");
+        return getPool().getConnection();
+    }
+
+    /**
+     * Lazily create the shared pool (sizes come from config.properties)
+     */
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    getInstance(); // make sure the driver is loaded
+                    p = new ConnectionPool(DB_URL, DB_USER, DB_PASSWORD,
+                            ConfigManager.getDbPoolMaxSize(),
+                            ConfigManager.getDbPoolMinIdle(),
+                            ConfigManager.getDbPoolAcquireTimeoutMs(),
+                            ConfigManager.getDbPoolIdleTimeoutMs(),
+                            ConfigManager.getDbPoolMaxLifetimeMs(),
+                            ConfigManager.getDbPoolValidationIntervalMs());
+                    pool = p;
+                    System.out.println("✓ Database connection pool created (max=" + p.getMaxSize() + ")");
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Close all pooled connections (server shutdown)
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
         }
-        return conn;
     }
 
     /**
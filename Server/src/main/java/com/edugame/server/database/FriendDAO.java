@@ -8,10 +8,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class FriendDAO {
-    private Connection connection;
 
+    /**
+     * Connections are borrowed from the pool per call.
+     * Constructor keeps its throws clause so existing callers compile unchanged.
+     */
     public FriendDAO() throws SQLException {
-        this.connection = DatabaseConnection.getConnection();
     }
 
     /**
@@ -29,7 +31,8 @@ public class FriendDAO {
                 "ORDER BY total_score DESC " +
                 "LIMIT ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, currentUserId);
             stmt.setString(2, "%" + searchQuery + "%");
             stmt.setString(3, "%" + searchQuery + "%");
@@ -83,7 +86,8 @@ public class FriendDAO {
 
         String sql = "INSERT INTO friends (user_id, friend_id, status, created_at) VALUES (?, ?, 'pending', NOW())";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, friendId);
 
@@ -110,7 +114,8 @@ public class FriendDAO {
         String sql = "UPDATE friends SET status = 'accepted', updated_at = NOW() " +
                 "WHERE user_id = ? AND friend_id = ? AND status = 'pending'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, friendId); // người gửi lời mời
             stmt.setInt(2, userId);   // người nhận (hiện tại)
 
@@ -136,7 +141,8 @@ public class FriendDAO {
         String sql = "UPDATE friends SET status = 'rejected', updated_at = NOW() " +
                 "WHERE user_id = ? AND friend_id = ? AND status = 'pending'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, friendId);
             stmt.setInt(2, userId);
 
@@ -161,7 +167,8 @@ public class FriendDAO {
                 "((user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)) " +
                 "AND status = 'accepted'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, friendId);
             stmt.setInt(3, friendId);
@@ -193,7 +200,8 @@ public class FriendDAO {
                 "WHERE (f.user_id = ? OR f.friend_id = ?) AND f.status = 'accepted' " +
                 "ORDER BY u.is_online DESC, u.full_name ASC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
             stmt.setInt(3, userId);
@@ -239,7 +247,8 @@ public class FriendDAO {
                 "WHERE f.friend_id = ? AND f.status = 'pending' " +
                 "ORDER BY f.created_at DESC";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
 
             ResultSet rs = stmt.executeQuery();
@@ -278,7 +287,8 @@ public class FriendDAO {
                 "WHERE ((user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)) " +
                 "AND status = 'accepted'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, friendId);
             stmt.setInt(3, friendId);
@@ -303,7 +313,8 @@ public class FriendDAO {
                 "WHERE ((user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)) " +
                 "AND status = 'pending'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, friendId);
             stmt.setInt(3, friendId);
@@ -335,7 +346,8 @@ public class FriendDAO {
                 "WHERE ((user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)) " +
                 "AND status = 'pending'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, friendId);
             stmt.setInt(3, friendId);
@@ -364,7 +376,8 @@ public class FriendDAO {
         String sql = "SELECT COUNT(*) FROM friends " +
                 "WHERE (user_id = ? OR friend_id = ?) AND status = 'accepted'";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, userId);
 
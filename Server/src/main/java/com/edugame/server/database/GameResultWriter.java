@@ -0,0 +1,742 @@
+package com.edugame.server.database;
+
+import com.edugame.server.config.ConfigManager;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameResultWriter - Write-behind lưu kết quả game
+ *
+ * - submit() ghi record vào journal (file) rồi xếp hàng, trả về ngay -
+ *   GAME_END không phải chờ DB
+ * - 1 thread gom nhiều trận vào một transaction: batch INSERT game_results,
+ *   batch UPDATE game_sessions, và một UPDATE users đã cộng dồn cho mỗi user
+ * - Id của record được ghi vào game_result_applied trong cùng transaction:
+ *   record replay lại (crash sau commit, trước ack) được bỏ qua, không cộng điểm 2 lần
+ * - Lỗi tạm thời (mất kết nối, timeout) → retry với backoff, record vẫn nằm
+ *   trong journal; lỗi khác → tách từng trận, trận hỏng chuyển sang file failed
+ * - Hàng đợi có giới hạn: đầy thì record chỉ nằm trong journal (spill), worker
+ *   đọc lại khi hàng đợi rảnh - thread gọi (GameSession) không bao giờ chờ DB
+ * - Record chưa ghi xong khi tắt server được ghi lại khi khởi động (journal replay)
+ */
+public final class GameResultWriter {
+
+    private static final String INSERT_RESULT = """
+            INSERT INTO game_results (
+                session_id, user_id, score, correct_answers,
+                wrong_answers, time_taken, rank_position, created_at
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, NOW())
+            """;
+
+    private static final String FINISH_SESSION =
+            "UPDATE game_sessions SET finished_at = NOW() WHERE session_id = ?";
+
+    private static final String UPDATE_USER = """
+            UPDATE users
+            SET total_score = total_score + ?,
+                math_score = math_score + ?,
+                english_score = english_score + ?,
+                literature_score = literature_score + ?,
+                total_games = total_games + ?,
+                wins = wins + ?
+            WHERE user_id = ?
+            """;
+
+    private static final String CREATE_APPLIED = """
+            CREATE TABLE IF NOT EXISTS game_result_applied (
+                record_id CHAR(36) PRIMARY KEY
+            )
+            """;
+
+    private static final String INSERT_APPLIED = "INSERT INTO game_result_applied (record_id) VALUES (?)";
+
+    private static final String CLEAR_APPLIED = "DELETE FROM game_result_applied";
+
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final long PRUNE_INTERVAL_MS = 10 * 60_000;
+    private static final int MAX_DATA_ATTEMPTS = 3;
+
+    private static volatile GameResultWriter instance;
+
+    private final Gson gson = new Gson();
+    private final LinkedBlockingDeque<GameResultRecord> queue;
+    private final int maxBatch;
+    private final long lingerMs;
+    private final Thread worker;
+
+    private final File journalFile;
+    private final File failedFile;
+    private final Object journalLock = new Object();
+    private BufferedWriter journal; // Guarded by journalLock
+    private int unacked = 0;        // Guarded by journalLock
+    private int spilled = 0;        // Guarded by journalLock - journaled but not queued
+    private final List<GameResultRecord> overflow = new ArrayList<>(); // Guarded by journalLock - spilled while journal is disabled
+
+    // Worker thread only
+    private boolean appliedTableReady = false;
+    private long lastPrune = 0;
+
+    private volatile boolean accepting = true;
+    private volatile boolean stopping = false;
+
+    private final AtomicInteger pending = new AtomicInteger(); // Queued or being written by the worker
+    private final AtomicLong gamesWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong spills = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    private GameResultWriter() {
+        this.queue = new LinkedBlockingDeque<>(ConfigManager.getResultsQueueMax());
+        this.maxBatch = ConfigManager.getResultsBatchMax();
+        this.lingerMs = ConfigManager.getResultsLingerMs();
+        this.journalFile = new File(ConfigManager.getResultsJournalFile());
+        this.failedFile = new File(journalFile.getPath() + ".failed");
+
+        // Record chưa ghi được coi như đã spill: worker đọc lại từ journal
+        List<GameResultRecord> unsaved = replayJournal();
+        pending.addAndGet(unsaved.size());
+
+        this.worker = new Thread(this::runWorker, "ResultWriter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+
+        if (!unsaved.isEmpty()) {
+            System.out.println("♻️ [ResultWriter] Replaying " + unsaved.size() + " unsaved game results from journal");
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "ResultWriter-Shutdown"));
+    }
+
+    public static GameResultWriter getInstance() {
+        if (instance == null) {
+            synchronized (GameResultWriter.class) {
+                if (instance == null) {
+                    instance = new GameResultWriter();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // ==================== SUBMIT ====================
+
+    /**
+     * Lưu kết quả một trận (không bao giờ chờ DB)
+     */
+    public void submit(GameResultRecord record) {
+        record.id = UUID.randomUUID().toString();
+
+        // Ghi journal và xếp hàng cùng một lock để reloadSpilled() thấy đúng record nào chưa vào hàng đợi
+        synchronized (journalLock) {
+            journalAppend(record);
+            if (!accepting) {
+                System.err.println("⚠️ [ResultWriter] Shutting down, result of session " + record.sessionId +
+                        " kept in journal for next start");
+                return;
+            }
+            pending.incrementAndGet();
+            if (queue.offer(record)) {
+                return;
+            }
+
+            // Hàng đợi đầy: chỉ giữ trong journal, worker đọc lại khi rảnh
+            spilled++;
+            if (journal == null) {
+                overflow.add(record);
+            }
+            if (spilled == 1) {
+                System.err.println("⚠️ [ResultWriter] Queue full, spilling game results to journal");
+            }
+        }
+        spills.incrementAndGet();
+    }
+
+    // ==================== WORKER ====================
+
+    private void runWorker() {
+        List<GameResultRecord> batch = new ArrayList<>(maxBatch);
+
+        while (true) {
+            try {
+                if (queue.isEmpty() && !stopping) {
+                    reloadSpilled();
+                }
+                GameResultRecord first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    continue;
+                }
+
+                batch.clear();
+                batch.add(first);
+
+                // Đợi thêm một chút để gom nhiều trận vào cùng transaction
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    GameResultRecord next = remaining > 0 && !stopping
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                try {
+                    writeWithRetry(batch);
+                } finally {
+                    pending.addAndGet(-batch.size());
+                }
+
+            } catch (InterruptedException e) {
+                if (stopping) {
+                    break;
+                }
+            } catch (Exception e) {
+                System.err.println("❌ [ResultWriter] Unexpected error: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Đưa record bị spill (chỉ nằm trong journal) trở lại hàng đợi khi còn chỗ.
+     * Chỉ gọi từ worker giữa hai batch, nên record chưa ack mà không có trong
+     * hàng đợi chính là record bị spill.
+     */
+    private void reloadSpilled() {
+        synchronized (journalLock) {
+            if (spilled == 0) {
+                return;
+            }
+            List<GameResultRecord> waiting;
+            if (journal != null) {
+                Set<String> queued = new HashSet<>();
+                for (GameResultRecord record : queue) {
+                    queued.add(record.id);
+                }
+                waiting = new ArrayList<>();
+                for (GameResultRecord record : readJournal().values()) {
+                    if (!queued.contains(record.id)) {
+                        waiting.add(record);
+                    }
+                }
+            } else {
+                waiting = overflow;
+            }
+
+            int moved = 0;
+            while (moved < waiting.size() && queue.offer(waiting.get(moved))) {
+                moved++;
+            }
+            spilled = waiting.size() - moved;
+            if (journal == null) {
+                overflow.subList(0, moved).clear();
+            }
+        }
+    }
+
+    private void writeWithRetry(List<GameResultRecord> batch) {
+        long backoff = 200;
+        int dataFailures = 0;
+
+        while (true) {
+            try {
+                writeBatch(batch);
+                onWritten(batch);
+                return;
+            } catch (SQLException e) {
+                if (stopping) {
+                    // DB vẫn lỗi lúc tắt server: để lại trong journal cho lần khởi động sau
+                    System.err.println("⚠️ [ResultWriter] Giving up for now, " + batch.size() +
+                            " games stay in journal: " + e.getMessage());
+                    return;
+                }
+                if (!isTransient(e)) {
+                    dataFailures++;
+                    if (dataFailures >= MAX_DATA_ATTEMPTS) {
+                        isolateFailures(batch, e);
+                        return;
+                    }
+                }
+
+                retries.incrementAndGet();
+                System.err.println("⚠️ [ResultWriter] Batch of " + batch.size() + " games failed, retry in " +
+                        backoff + "ms: " + e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    // Shutdown - checked on the next failure
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Lỗi dữ liệu: ghi từng trận riêng để một trận hỏng không chặn cả batch
+     */
+    private void isolateFailures(List<GameResultRecord> batch, SQLException cause) {
+        for (GameResultRecord record : batch) {
+            List<GameResultRecord> single = Collections.singletonList(record);
+            try {
+                if (batch.size() > 1) {
+                    writeBatch(single);
+                    onWritten(single);
+                    continue;
+                }
+            } catch (SQLException e) {
+                cause = e;
+            }
+            deadLetter(record, cause);
+        }
+    }
+
+    private void writeBatch(List<GameResultRecord> batch) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (!appliedTableReady) {
+                try (Statement ddl = conn.createStatement()) {
+                    ddl.execute(CREATE_APPLIED);
+                }
+                appliedTableReady = true;
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_RESULT);
+                 PreparedStatement finish = conn.prepareStatement(FINISH_SESSION);
+                 PreparedStatement users = conn.prepareStatement(UPDATE_USER);
+                 PreparedStatement applied = conn.prepareStatement(INSERT_APPLIED)) {
+
+                // userId tăng dần → thứ tự khoá hàng ổn định giữa các transaction
+                Map<Integer, UserDelta> deltas = new TreeMap<>();
+                boolean anyFinish = false;
+                Set<String> done = appliedIds(conn, batch);
+
+                for (GameResultRecord record : batch) {
+                    if (done.contains(record.id)) {
+                        // Đã commit ở lần trước nhưng chưa kịp ack (crash / mất kết nối lúc commit)
+                        System.out.println("♻️ [ResultWriter] Result of session " + record.sessionId +
+                                " already saved, skipping");
+                        continue;
+                    }
+                    applied.setString(1, record.id);
+                    applied.addBatch();
+
+                    String subjectColumn = UserDAO.subjectScoreColumn(record.subject);
+                    for (PlayerResult p : record.players) {
+                        insert.setInt(1, record.sessionId);
+                        insert.setInt(2, p.userId);
+                        insert.setInt(3, p.score);
+                        insert.setInt(4, p.correctAnswers);
+                        insert.setInt(5, p.wrongAnswers);
+                        insert.setInt(6, record.timeTaken);
+                        insert.setInt(7, p.rank);
+                        insert.addBatch();
+
+                        deltas.computeIfAbsent(p.userId, id -> new UserDelta()).add(p, subjectColumn);
+                    }
+                    if (record.finishSession) {
+                        finish.setInt(1, record.sessionId);
+                        finish.addBatch();
+                        anyFinish = true;
+                    }
+                }
+
+                for (Map.Entry<Integer, UserDelta> entry : deltas.entrySet()) {
+                    UserDelta d = entry.getValue();
+                    users.setInt(1, d.totalScore);
+                    users.setInt(2, d.mathScore);
+                    users.setInt(3, d.englishScore);
+                    users.setInt(4, d.literatureScore);
+                    users.setInt(5, d.games);
+                    users.setInt(6, d.wins);
+                    users.setInt(7, entry.getKey());
+                    users.addBatch();
+                }
+
+                if (done.size() == batch.size()) {
+                    conn.commit();
+                    return;
+                }
+                applied.executeBatch();
+                insert.executeBatch();
+                if (anyFinish) {
+                    finish.executeBatch();
+                }
+                users.executeBatch();
+                conn.commit();
+
+                LeaderboardIndex leaderboard = LeaderboardIndex.getInstance();
+                for (Map.Entry<Integer, UserDelta> entry : deltas.entrySet()) {
+                    UserDelta d = entry.getValue();
+                    leaderboard.addScores(entry.getKey(), d.totalScore,
+                            d.mathScore, d.englishScore, d.literatureScore);
+                }
+
+            } catch (SQLException e) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ignored) {
+                    // Connection is probably gone - pool discards it
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Id trong batch đã có trong game_result_applied
+     */
+    private static Set<String> appliedIds(Connection conn, List<GameResultRecord> batch) throws SQLException {
+        String marks = String.join(",", Collections.nCopies(batch.size(), "?"));
+        Set<String> ids = new HashSet<>();
+        try (PreparedStatement select = conn.prepareStatement(
+                "SELECT record_id FROM game_result_applied WHERE record_id IN (" + marks + ")")) {
+            for (int i = 0; i < batch.size(); i++) {
+                select.setString(i + 1, batch.get(i).id);
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static boolean isTransient(SQLException e) {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String state = e.getSQLState();
+        // 08xxx = connection errors, 40xxx = deadlock / serialization failure; không có SQLState → lỗi thật
+        return state != null && (state.startsWith("08") || state.startsWith("40"));
+    }
+
+    private void onWritten(List<GameResultRecord> batch) {
+        gamesWritten.addAndGet(batch.size());
+        batchesWritten.incrementAndGet();
+        if (journalAck(batch)) {
+            pruneApplied();
+        }
+    }
+
+    /**
+     * Journal rỗng → không record nào còn có thể replay, id đã ghi không cần giữ nữa.
+     * Chỉ worker ghi game_result_applied nên không có record nào đang ghi dở lúc này.
+     */
+    private void pruneApplied() {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < PRUNE_INTERVAL_MS) {
+            return;
+        }
+        lastPrune = now;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement delete = conn.createStatement()) {
+            delete.executeUpdate(CLEAR_APPLIED);
+        } catch (SQLException e) {
+            System.err.println("⚠️ [ResultWriter] Could not prune applied ids: " + e.getMessage());
+        }
+    }
+
+    private void deadLetter(GameResultRecord record, SQLException cause) {
+        deadLettered.incrementAndGet();
+        System.err.println("❌ [ResultWriter] Dropping result of session " + record.sessionId +
+                " to " + failedFile.getName() + ": " + cause.getMessage());
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(failedFile, true), StandardCharsets.UTF_8))) {
+            out.write(gson.toJson(record));
+            out.newLine();
+        } catch (IOException e) {
+            System.err.println("❌ [ResultWriter] Could not write " + failedFile.getName() + ": " + e.getMessage());
+        }
+        journalAck(Collections.singletonList(record));
+    }
+
+    // ==================== JOURNAL ====================
+
+    /**
+     * Đọc journal: record chưa có ack → cần ghi lại. Journal được viết lại chỉ với các record đó.
+     */
+    private List<GameResultRecord> replayJournal() {
+        Map<String, GameResultRecord> records = readJournal();
+
+        synchronized (journalLock) {
+            try {
+                File parent = journalFile.getAbsoluteFile().getParentFile();
+                if (parent != null) {
+                    parent.mkdirs();
+                }
+                journal = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(journalFile, false), StandardCharsets.UTF_8));
+                for (GameResultRecord record : records.values()) {
+                    journal.write(gson.toJson(record));
+                    journal.newLine();
+                }
+                journal.flush();
+            } catch (IOException e) {
+                System.err.println("❌ [ResultWriter] Journal disabled: " + e.getMessage());
+                journal = null;
+                overflow.addAll(records.values());
+            }
+            unacked = records.size();
+            spilled = records.size();
+        }
+        return new ArrayList<>(records.values());
+    }
+
+    /**
+     * Record trong journal chưa có ack, theo thứ tự ghi
+     */
+    private Map<String, GameResultRecord> readJournal() {
+        Map<String, GameResultRecord> records = new LinkedHashMap<>();
+
+        if (journalFile.exists()) {
+            try (BufferedReader in = new BufferedReader(new FileReader(journalFile, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                        if (json.has("ack")) {
+                            records.remove(json.get("ack").getAsString());
+                        } else {
+                            GameResultRecord record = gson.fromJson(json, GameResultRecord.class);
+                            records.put(record.id, record);
+                        }
+                    } catch (Exception e) {
+                        // Dòng cuối bị cắt dở khi crash
+                        System.err.println("⚠️ [ResultWriter] Skipping bad journal line: " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("❌ [ResultWriter] Could not read journal: " + e.getMessage());
+            }
+        }
+        return records;
+    }
+
+    private void journalAppend(GameResultRecord record) {
+        synchronized (journalLock) {
+            unacked++;
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.write(gson.toJson(record));
+                journal.newLine();
+                journal.flush();
+            } catch (IOException e) {
+                System.err.println("⚠️ [ResultWriter] Journal write failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return true if nothing is left unacked (journal emptied)
+     */
+    private boolean journalAck(List<GameResultRecord> records) {
+        synchronized (journalLock) {
+            unacked -= records.size();
+            if (unacked <= 0) {
+                unacked = 0;
+            }
+            if (journal == null) {
+                return unacked == 0;
+            }
+            try {
+                if (unacked == 0) {
+                    // Không còn gì chờ ghi: làm rỗng journal để file không phình ra
+                    journal.close();
+                    journal = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(journalFile, false), StandardCharsets.UTF_8));
+                    return true;
+                }
+                for (GameResultRecord record : records) {
+                    journal.write("{\"ack\":\"" + record.id + "\"}");
+                    journal.newLine();
+                }
+                journal.flush();
+            } catch (IOException e) {
+                System.err.println("⚠️ [ResultWriter] Journal ack failed: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    // ==================== LIFECYCLE ====================
+
+    /**
+     * Chờ ghi xong những gì đang trong hàng đợi (tối đa timeoutMs)
+     */
+    public boolean flush(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (pending.get() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Flush-on-shutdown: ngừng nhận, ghi nốt hàng đợi, đóng journal
+     */
+    public void shutdown() {
+        if (stopping) {
+            return;
+        }
+        accepting = false;
+        boolean drained = flush(ConfigManager.getResultsShutdownTimeoutMs());
+        stopping = true;
+        worker.interrupt();
+        try {
+            worker.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (journalLock) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                }
+            } catch (IOException e) {
+                // Ignore - shutting down
+            }
+        }
+
+        if (drained) {
+            System.out.println("✅ [ResultWriter] All game results saved");
+        } else {
+            System.err.println("⚠️ [ResultWriter] " + pending.get() +
+                    " game results left in journal for next start");
+        }
+    }
+
+    /**
+     * Games written so far - changes whenever scores in the DB change
+     */
+    public long getWrittenCount() {
+        return gamesWritten.get();
+    }
+
+    public String getStatsSummary() {
+        return "queued=" + queue.size() +
+                ", written=" + gamesWritten.get() +
+                ", batches=" + batchesWritten.get() +
+                ", retries=" + retries.get() +
+                ", spilled=" + spills.get() +
+                ", failed=" + deadLettered.get();
+    }
+
+    // ==================== RECORDS ====================
+
+    /**
+     * Kết quả một trận (được ghi vào journal dạng JSON)
+     */
+    public static class GameResultRecord {
+        String id;
+        int sessionId;
+        String subject;
+        int timeTaken;
+        boolean finishSession;
+        List<PlayerResult> players = new ArrayList<>();
+
+        public GameResultRecord(int sessionId, String subject, int timeTaken, boolean finishSession) {
+            this.sessionId = sessionId;
+            this.subject = subject;
+            this.timeTaken = timeTaken;
+            this.finishSession = finishSession;
+        }
+
+        public GameResultRecord addPlayer(int userId, int score, int correctAnswers, int wrongAnswers, int rank) {
+            players.add(new PlayerResult(userId, score, correctAnswers, wrongAnswers, rank));
+            return this;
+        }
+    }
+
+    static class PlayerResult {
+        int userId;
+        int score;
+        int correctAnswers;
+        int wrongAnswers;
+        int rank;
+
+        PlayerResult(int userId, int score, int correctAnswers, int wrongAnswers, int rank) {
+            this.userId = userId;
+            this.score = score;
+            this.correctAnswers = correctAnswers;
+            this.wrongAnswers = wrongAnswers;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Tổng thay đổi của một user trong một batch → một câu UPDATE users
+     */
+    private static final class UserDelta {
+        int totalScore;
+        int mathScore;
+        int englishScore;
+        int literatureScore;
+        int games;
+        int wins;
+
+        void add(PlayerResult p, String subjectColumn) {
+            totalScore += p.score;
+            if ("math_score".equals(subjectColumn)) {
+                mathScore += p.score;
+            } else if ("english_score".equals(subjectColumn)) {
+                englishScore += p.score;
+            } else if ("literature_score".equals(subjectColumn)) {
+                literatureScore += p.score;
+            }
+            games++;
+            if (p.rank == 1) {
+                wins++;
+            }
+        }
+    }
+}
@@ -16,6 +16,11 @@ public class LeaderboardDAO {
      * Get top N users by total score
      */
     public List<User> getTopUsers(int limit) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getTop("total", limit);
+        }
+
         String sql =
                 "SELECT user_id, username, full_name, avatar_url, total_score, is_online " +
                         "FROM users " +
@@ -56,6 +61,11 @@ public class LeaderboardDAO {
      * Get user rank by userId
      */
     public int getUserRank(int userId) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getRank("total", userId);
+        }
+
         String sql =
                 "SELECT COUNT(*) + 1 AS rank " +
                         "FROM users " +
@@ -83,6 +93,11 @@ public class LeaderboardDAO {
      * Get leaderboard by subject
      */
     public List<User> getLeaderboardBySubject(String subject, int limit) {
+        LeaderboardIndex index = LeaderboardIndex.getInstance();
+        if (index.isLoaded()) {
+            return index.getTop(subject, limit);
+        }
+
         String scoreColumn;
 
         switch (subject.toLowerCase()) {
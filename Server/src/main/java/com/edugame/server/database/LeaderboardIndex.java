@@ -0,0 +1,319 @@
+package com.edugame.server.database;
+
+import com.edugame.server.model.User;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * LeaderboardIndex - Bảng xếp hạng trong bộ nhớ
+ *
+ * - Nạp một lần lúc khởi động (1 SELECT), sau đó cập nhật theo delta khi
+ *   kết quả game được ghi và khi UserDAO sửa user
+ * - Mỗi chiều (total, math, english, literature) có một RankedSkipList:
+ *   top-K và hạng của một user đều O(log n), không quét bảng users
+ * - LeaderboardDAO dùng index khi đã nạp, ngược lại quay về SQL
+ */
+public final class LeaderboardIndex {
+
+    static final int TOTAL = 0;
+    static final int MATH = 1;
+    static final int ENGLISH = 2;
+    static final int LITERATURE = 3;
+    private static final int DIMENSIONS = 4;
+
+    private static volatile LeaderboardIndex instance;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final RankedSkipList[] rankings = new RankedSkipList[DIMENSIONS];
+    private boolean loaded = false;
+
+    private LeaderboardIndex() {
+        for (int i = 0; i < DIMENSIONS; i++) {
+            rankings[i] = new RankedSkipList();
+        }
+    }
+
+    public static LeaderboardIndex getInstance() {
+        if (instance == null) {
+            synchronized (LeaderboardIndex.class) {
+                if (instance == null) {
+                    instance = new LeaderboardIndex();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nạp toàn bộ users (gọi lúc server khởi động).
+     * Giữ write lock trong lúc query để không lọt cập nhật nào.
+     */
+    public void warmUp() {
+        String sql = "SELECT user_id, username, full_name, avatar_url, is_online, " +
+                "total_score, math_score, english_score, literature_score FROM users";
+
+        lock.writeLock().lock();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+
+            clear();
+            while (rs.next()) {
+                Entry entry = new Entry(rs.getInt("user_id"));
+                entry.username = rs.getString("username");
+                entry.fullName = rs.getString("full_name");
+                entry.avatarUrl = rs.getString("avatar_url");
+                entry.online = rs.getBoolean("is_online");
+                entry.scores[TOTAL] = rs.getInt("total_score");
+                entry.scores[MATH] = rs.getInt("math_score");
+                entry.scores[ENGLISH] = rs.getInt("english_score");
+                entry.scores[LITERATURE] = rs.getInt("literature_score");
+                link(entry);
+            }
+            loaded = true;
+            System.out.println("✅ [Leaderboard] Indexed " + entries.size() + " users");
+
+        } catch (SQLException e) {
+            clear();
+            loaded = false;
+            System.err.println("❌ [Leaderboard] Warm-up failed, using SQL: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== QUERIES ====================
+
+    /**
+     * Top limit users of one subject ("math", "english", "literature", khác = total).
+     * Điểm được set vào đúng field của User như LeaderboardDAO.
+     */
+    public List<User> getTop(String subject, int limit) {
+        int dim = dimensionOf(subject);
+        lock.readLock().lock();
+        try {
+            List<User> result = new ArrayList<>(Math.max(0, Math.min(limit, entries.size())));
+            rankings[dim].forEachTop(limit, (userId, score) -> result.add(toUser(entries.get(userId), dim)));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hạng của user (1 + số người điểm cao hơn), -1 nếu không có
+     */
+    public int getRank(String subject, int userId) {
+        int dim = dimensionOf(subject);
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                return -1;
+            }
+            return rankings[dim].countBefore(entry.scores[dim], Integer.MIN_VALUE) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getStatsSummary() {
+        lock.readLock().lock();
+        try {
+            return loaded ? "users=" + entries.size() : "not loaded";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== UPDATES (from DAOs) ====================
+
+    /**
+     * Cộng điểm (delta) sau khi đã commit vào DB
+     */
+    void addScores(int userId, int total, int math, int english, int literature) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (!loaded || entry == null) {
+                return;
+            }
+            unlink(entry);
+            entry.scores[TOTAL] += total;
+            entry.scores[MATH] += math;
+            entry.scores[ENGLISH] += english;
+            entry.scores[LITERATURE] += literature;
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ghi đè điểm tuyệt đối (admin sửa trực tiếp)
+     */
+    void setScores(int userId, int total, int math, int english, int literature) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (!loaded || entry == null) {
+                return;
+            }
+            unlink(entry);
+            entry.scores[TOTAL] = total;
+            entry.scores[MATH] = math;
+            entry.scores[ENGLISH] = english;
+            entry.scores[LITERATURE] = literature;
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * User mới đăng ký (điểm 0)
+     */
+    void addUser(int userId, String username, String fullName, String avatarUrl) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded || entries.containsKey(userId)) {
+                return;
+            }
+            Entry entry = new Entry(userId);
+            entry.username = username;
+            entry.fullName = fullName;
+            entry.avatarUrl = avatarUrl;
+            link(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cập nhật thông tin hiển thị, null = giữ nguyên
+     */
+    void updateProfile(int userId, String username, String fullName, String avatarUrl) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                return;
+            }
+            if (username != null) entry.username = username;
+            if (fullName != null) entry.fullName = fullName;
+            if (avatarUrl != null) entry.avatarUrl = avatarUrl;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void setOnline(int userId, boolean online) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                entry.online = online;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removeUser(int userId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(userId);
+            if (entry != null) {
+                unlink(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== INTERNAL ====================
+
+    static int dimensionOf(String subject) {
+        if (subject == null) {
+            return TOTAL;
+        }
+        switch (subject.toLowerCase()) {
+            case "math":       return MATH;
+            case "english":    return ENGLISH;
+            case "literature": return LITERATURE;
+            default:           return TOTAL;
+        }
+    }
+
+    private void link(Entry entry) {
+        entries.put(entry.userId, entry);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            rankings[i].insert(entry.userId, entry.scores[i]);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        entries.remove(entry.userId);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            rankings[i].delete(entry.userId, entry.scores[i]);
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        for (int i = 0; i < DIMENSIONS; i++) {
+            rankings[i] = new RankedSkipList();
+        }
+    }
+
+    private static User toUser(Entry entry, int dim) {
+        User user = new User();
+        user.setUserId(entry.userId);
+        user.setUsername(entry.username);
+        user.setFullName(entry.fullName);
+        user.setAvatarUrl(entry.avatarUrl);
+        user.setOnline(entry.online);
+
+        int score = entry.scores[dim];
+        switch (dim) {
+            case MATH:       user.setMathScore(score); break;
+            case ENGLISH:    user.setEnglishScore(score); break;
+            case LITERATURE: user.setLiteratureScore(score); break;
+            default:         user.setTotalScore(score); break;
+        }
+        return user;
+    }
+
+    private static final class Entry {
+        final int userId;
+        final int[] scores = new int[DIMENSIONS];
+        String username;
+        String fullName;
+        String avatarUrl;
+        boolean online;
+
+        Entry(int userId) {
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.edugame.server.database;
+
+import com.edugame.server.model.Question;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * QuestionCache - Ngân hàng câu hỏi active trong bộ nhớ
+ *
+ * - Nạp toàn bộ câu hỏi active một lần, chia bucket theo (subject, difficulty)
+ * - sample(): chọn N câu khác nhau trong O(N) (Floyd + shuffle), không cần DB
+ * - QuestionDAO cập nhật từng câu khi add/update/delete; invalidateAll() để
+ *   nạp lại sau khi sửa DB trực tiếp
+ *
+ * Question trả về là bản dùng chung - chỉ đọc, không set.
+ */
+public final class QuestionCache {
+
+    private static volatile QuestionCache instance;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final Map<Integer, Question> byId = new HashMap<>();
+    private boolean loaded = false;
+    private Map<Integer, Question> changedWhileLoading; // id → new state (null = deleted), only during a load
+
+    private QuestionCache() {
+    }
+
+    public static QuestionCache getInstance() {
+        if (instance == null) {
+            synchronized (QuestionCache.class) {
+                if (instance == null) {
+                    instance = new QuestionCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gọi trước khi SELECT: các thay đổi trong lúc query sẽ được áp lại ở load()
+     */
+    void beginLoad() {
+        lock.writeLock().lock();
+        try {
+            changedWhileLoading = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Thay toàn bộ nội dung cache (từ SELECT các câu active)
+     */
+    void load(Collection<Question> questions) {
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            byId.clear();
+            for (Question q : questions) {
+                insert(copyOf(q));
+            }
+            if (changedWhileLoading != null) {
+                for (Map.Entry<Integer, Question> change : changedWhileLoading.entrySet()) {
+                    removeById(change.getKey());
+                    if (change.getValue() != null) {
+                        insert(change.getValue());
+                    }
+                }
+                changedWhileLoading = null;
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("✅ [QuestionCache] Loaded " + questions.size() + " questions in " +
+                buckets.size() + " buckets");
+    }
+
+    /**
+     * Bỏ toàn bộ cache, lần sample tiếp theo sẽ nạp lại từ DB
+     */
+    public void invalidateAll() {
+        lock.writeLock().lock();
+        try {
+            buckets.clear();
+            byId.clear();
+            loaded = false;
+            changedWhileLoading = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Thêm / cập nhật một câu (câu inactive bị gỡ khỏi cache)
+     */
+    void put(Question q) {
+        lock.writeLock().lock();
+        try {
+            Question copy = q.isActive() ? copyOf(q) : null;
+            if (!loaded) {
+                if (changedWhileLoading != null) {
+                    changedWhileLoading.put(q.getQuestionId(), copy);
+                }
+                return; // Chưa nạp - sẽ có khi nạp
+            }
+            removeById(q.getQuestionId());
+            if (copy != null) {
+                insert(copy);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int questionId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded && changedWhileLoading != null) {
+                changedWhileLoading.put(questionId, null);
+            }
+            removeById(questionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Question get(int questionId) {
+        lock.readLock().lock();
+        try {
+            return byId.get(questionId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Chọn ngẫu nhiên tối đa limit câu khác nhau.
+     * difficulty = null nghĩa là mọi độ khó của môn đó.
+     */
+    List<Question> sample(String subject, String difficulty, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Question> pool;
+            if (difficulty != null) {
+                Bucket bucket = buckets.get(key(subject, difficulty));
+                pool = bucket != null ? bucket.items : Collections.emptyList();
+            } else {
+                pool = new ArrayList<>();
+                String prefix = normalize(subject) + "|";
+                for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+                    if (entry.getKey().startsWith(prefix)) {
+                        pool.addAll(entry.getValue().items);
+                    }
+                }
+            }
+            return pickDistinct(pool, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String getStatsSummary() {
+        lock.readLock().lock();
+        try {
+            return loaded
+                    ? "questions=" + byId.size() + ", buckets=" + buckets.size()
+                    : "not loaded";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== INTERNAL ====================
+
+    /**
+     * Floyd's algorithm: k distinct indices in O(k), then shuffle their order
+     */
+    private static List<Question> pickDistinct(List<Question> pool, int limit) {
+        int n = pool.size();
+        int k = Math.min(Math.max(limit, 0), n);
+        List<Question> result = new ArrayList<>(k);
+        if (k == 0) {
+            return result;
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Set<Integer> chosen = new HashSet<>(k * 2);
+        for (int j = n - k; j < n; j++) {
+            int t = random.nextInt(j + 1);
+            int pick = chosen.contains(t) ? j : t;
+            chosen.add(pick);
+            result.add(pool.get(pick));
+        }
+        Collections.shuffle(result, random);
+        return result;
+    }
+
+    private void insert(Question q) {
+        byId.put(q.getQuestionId(), q);
+        buckets.computeIfAbsent(key(q.getSubject(), q.getDifficulty()), k -> new Bucket()).add(q);
+    }
+
+    private void removeById(int questionId) {
+        Question old = byId.remove(questionId);
+        if (old == null) {
+            return;
+        }
+        String key = key(old.getSubject(), old.getDifficulty());
+        Bucket bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(questionId);
+            if (bucket.items.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // MySQL so sánh subject/difficulty không phân biệt hoa thường
+    private static String key(String subject, String difficulty) {
+        return normalize(subject) + "|" + normalize(difficulty);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Question copyOf(Question q) {
+        Question c = new Question();
+        c.setQuestionId(q.getQuestionId());
+        c.setSubject(q.getSubject());
+        c.setDifficulty(q.getDifficulty());
+        c.setQuestionText(q.getQuestionText());
+        c.setOptionA(q.getOptionA());
+        c.setOptionB(q.getOptionB());
+        c.setOptionC(q.getOptionC());
+        c.setOptionD(q.getOptionD());
+        c.setCorrectAnswer(q.getCorrectAnswer());
+        c.setExplanation(q.getExplanation());
+        c.setPoints(q.getPoints());
+        c.setTimeLimit(q.getTimeLimit());
+        c.setCreatedBy(q.getCreatedBy());
+        c.setActive(q.isActive());
+        c.setCreatedAt(q.getCreatedAt());
+        return c;
+    }
+
+    /**
+     * Dense list + id → index, so removal is swap-with-last O(1)
+     */
+    private static final class Bucket {
+        final List<Question> items = new ArrayList<>();
+        final Map<Integer, Integer> indexById = new HashMap<>();
+
+        void add(Question q) {
+            indexById.put(q.getQuestionId(), items.size());
+            items.add(q);
+        }
+
+        void remove(int questionId) {
+            Integer index = indexById.remove(questionId);
+            if (index == null) {
+                return;
+            }
+            Question last = items.remove(items.size() - 1);
+            if (index < items.size()) {
+                items.set(index, last);
+                indexById.put(last.getQuestionId(), index);
+            }
+        }
+    }
+}
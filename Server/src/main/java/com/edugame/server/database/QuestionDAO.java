@@ -8,10 +8,40 @@ import java.util.List;
 
 public class QuestionDAO {
 
+    private static final QuestionCache cache = QuestionCache.getInstance();
+
+    /**
+     * Nạp cache một lần (các lần sau trả về ngay).
+     * @return false nếu DB lỗi - khi đó dùng query trực tiếp
+     */
+    private boolean ensureCacheLoaded() {
+        if (cache.isLoaded()) {
+            return true;
+        }
+        synchronized (QuestionCache.class) {
+            if (cache.isLoaded()) {
+                return true;
+            }
+            cache.beginLoad();
+            try {
+                cache.load(queryActiveQuestions());
+                return true;
+            } catch (SQLException e) {
+                System.err.println("❌ [QuestionDAO] Could not load question cache: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
     /**
      * Lấy danh sách câu hỏi ngẫu nhiên theo môn học và độ khó
      */
     public List<Question> getRandomQuestions(String subject, String difficulty, int limit) {
+        // ✅ Lấy từ cache trong bộ nhớ - không cần query khi bắt đầu game
+        if (ensureCacheLoaded()) {
+            return cache.sample(subject, difficulty, limit);
+        }
+
         List<Question> questions = new ArrayList<>();
 
         String query = """
@@ -45,6 +75,11 @@ public class QuestionDAO {
      * Lấy câu hỏi theo ID
      */
     public Question getQuestionById(int questionId) {
+        Question cached = cache.get(questionId);
+        if (cached != null) {
+            return cached;
+        }
+
         String query = "SELECT * FROM questions WHERE question_id = ?";
 
         try (Connection conn = DatabaseConnection.getConnection();
@@ -103,6 +138,7 @@ public class QuestionDAO {
                         q.setQuestionId(rs.getInt(1));
                     }
                 }
+                cache.put(q);
                 System.out.println("✅ [QuestionDAO] Added new question (ID=" + q.getQuestionId() + ")");
                 return true;
             }
@@ -145,6 +181,9 @@ public class QuestionDAO {
             stmt.setInt(13, q.getQuestionId());
 
             int rows = stmt.executeUpdate();
+            if (rows > 0) {
+                cache.put(q);
+            }
             System.out.println("✅ [QuestionDAO] Updated question ID=" + q.getQuestionId() + " (" + rows + " rows)");
             return rows > 0;
 
@@ -166,6 +205,7 @@ public class QuestionDAO {
 
             stmt.setInt(1, questionId);
             int rows = stmt.executeUpdate();
+            cache.remove(questionId);
 
             System.out.println("🗑️ [QuestionDAO] Deleted question ID=" + questionId + " (" + rows + " rows)");
             return rows > 0;
@@ -178,6 +218,15 @@ public class QuestionDAO {
     }
 
     public List<Question> getAllQuestions() {
+        try {
+            return queryActiveQuestions();
+        } catch (SQLException e) {
+            System.err.println("❌ Error getting all questions: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private List<Question> queryActiveQuestions() throws SQLException {
         List<Question> questions = new ArrayList<>();
         String query = "SELECT * FROM questions WHERE is_active = 1 ORDER BY created_at DESC";
 
@@ -188,8 +237,6 @@ public class QuestionDAO {
             while (rs.next()) {
                 questions.add(mapResultSetToQuestion(rs));
             }
-        } catch (SQLException e) {
-            System.err.println("❌ Error getting all questions: " + e.getMessage());
         }
 
         return questions;
@@ -0,0 +1,156 @@
+package com.edugame.server.database;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * RankedSkipList - Indexable skip list of (userId, score)
+ *
+ * Ordered by score DESC, then userId ASC. Every forward pointer keeps its
+ * span (how many nodes it skips), so insert, delete and "how many entries
+ * come before this key" are all O(log n) expected, and the top K are a
+ * walk from the head.
+ *
+ * Not thread-safe - LeaderboardIndex guards it.
+ */
+final class RankedSkipList {
+
+    private static final int MAX_LEVEL = 32;
+    private static final double P = 0.25;
+
+    private static final class Node {
+        final int userId;
+        final int score;
+        final Node[] next;
+        final int[] span;
+
+        Node(int level, int userId, int score) {
+            this.userId = userId;
+            this.score = score;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final Node head = new Node(MAX_LEVEL, 0, 0);
+    private int level = 1;
+    private int length = 0;
+
+    int size() {
+        return length;
+    }
+
+    /**
+     * True if node sorts strictly before (score, userId)
+     */
+    private static boolean before(Node node, int score, int userId) {
+        return node.score > score || (node.score == score && node.userId < userId);
+    }
+
+    void insert(int userId, int score) {
+        Node[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = (i == level - 1) ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], score, userId)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = length;
+            }
+            level = newLevel;
+        }
+
+        x = new Node(newLevel, userId, score);
+        for (int i = 0; i < newLevel; i++) {
+            x.next[i] = update[i].next[i];
+            update[i].next[i] = x;
+            x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        length++;
+    }
+
+    /**
+     * @return false if (userId, score) was not in the list
+     */
+    boolean delete(int userId, int score) {
+        Node[] update = new Node[MAX_LEVEL];
+
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], score, userId)) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        x = x.next[0];
+        if (x == null || x.userId != userId || x.score != score) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        length--;
+        return true;
+    }
+
+    /**
+     * Number of entries sorting before (score, userId).
+     * With userId = Integer.MIN_VALUE this is the count of strictly higher scores.
+     */
+    int countBefore(int score, int userId) {
+        int rank = 0;
+        Node x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], score, userId)) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Visit the first limit entries in rank order (userId, score)
+     */
+    void forEachTop(int limit, ObjIntConsumer<Integer> visitor) {
+        Node x = head.next[0];
+        for (int i = 0; i < limit && x != null; i++) {
+            visitor.accept(x.userId, x.score);
+            x = x.next[0];
+        }
+    }
+
+    private static int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int lvl = 1;
+        while (lvl < MAX_LEVEL && random.nextDouble() < P) {
+            lvl++;
+        }
+        return lvl;
+    }
+}
@@ -9,10 +9,12 @@
     import java.util.List;
 
     public class UserDAO {
-        private Connection connection;
 
+        /**
+         * Connections are borrowed from the pool per call.
+         * Constructor keeps its throws clause so existing callers compile unchanged.
+         */
         public UserDAO() throws SQLException {
-            this.connection = DatabaseConnection.getInstance().getConnection();
         }
 
         /**
@@ -22,7 +24,8 @@
                                     String fullName, String age, String avatarUrl) {
             String sql = "INSERT INTO users (username, password, email, full_name, age, avatar_url) VALUES (?, ?, ?, ?, ?, ?)";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 // Hash password
                 String hashedPassword = hashPassword(password);
 
@@ -36,6 +39,11 @@
                 int rowsAffected = pstmt.executeUpdate();
 
                 if (rowsAffected > 0) {
+                    try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            LeaderboardIndex.getInstance().addUser(keys.getInt(1), username, fullName, avatarUrl);
+                        }
+                    }
                     System.out.println("✓ User registered: " + username);
                     return true;
                 }
@@ -59,7 +67,8 @@
         public User loginUser(String username, String password) {
             String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 String hashedPassword = hashPassword(password);
 
                 pstmt.setString(1, username);
@@ -68,8 +77,8 @@
                 ResultSet rs = pstmt.executeQuery();
 
                 if (rs.next()) {
-                    // Update last login and online status
-                    updateLastLogin(rs.getInt("user_id"));
+                    // Update last login and online status (same connection - don't hold two pool leases)
+                    updateLastLogin(conn, rs.getInt("user_id"));
 
                     // Create User object
                     User user = new User();
@@ -107,7 +116,8 @@
         public boolean usernameExists(String username) {
             String sql = "SELECT COUNT(*) FROM users WHERE username = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, username);
                 ResultSet rs = pstmt.executeQuery();
 
@@ -128,7 +138,8 @@
         public boolean emailExists(String email) {
             String sql = "SELECT COUNT(*) FROM users WHERE email = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, email);
                 ResultSet rs = pstmt.executeQuery();
 
@@ -146,12 +157,13 @@
         /**
          * Update user's last login time
          */
-        private void updateLastLogin(int userId) {
+        private void updateLastLogin(Connection conn, int userId) {
             String sql = "UPDATE users SET last_login = NOW(), is_online = 1, status = 'online' WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setInt(1, userId);
                 pstmt.executeUpdate();
+                LeaderboardIndex.getInstance().setOnline(userId, true);
             } catch (SQLException e) {
                 System.err.println("✗ Error updating last login: " + e.getMessage());
             }
@@ -180,17 +192,15 @@
         public void updateOnlineStatus(int userId, boolean isOnline) {
             String sql = "UPDATE users SET is_online = ?, status = ? WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 // Ép kiểu rõ ràng để tránh MySQL hiểu sai
                 pstmt.setInt(1, isOnline ? 1 : 0);
                 pstmt.setString(2, isOnline ? "online" : "offline");
                 pstmt.setInt(3, userId);
 
                 int rows = pstmt.executeUpdate();
-
-                if (!connection.getAutoCommit()) {
-                    connection.commit();
-                }
+                LeaderboardIndex.getInstance().setOnline(userId, isOnline);
 
                 System.out.println("✅ Updated user_id=" + userId +
                         " → " + (isOnline ? "online" : "offline") +
@@ -247,12 +257,16 @@
                     "avatar_url = COALESCE(?, avatar_url) " +
                     "WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, newName);
                 pstmt.setString(2, newAvatar);
                 pstmt.setInt(3, userId);
 
                 int rows = pstmt.executeUpdate();
+                if (rows > 0) {
+                    LeaderboardIndex.getInstance().updateProfile(userId, null, newName, newAvatar);
+                }
                 System.out.println("✅ Updated profile for user_id=" + userId + " (" + rows + " rows)");
                 return rows > 0;
             } catch (SQLException e) {
@@ -290,7 +304,8 @@
         public User getUserByUsername(String username) {
             String sql = "SELECT * FROM users WHERE username = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, username);
                 ResultSet rs = pstmt.executeQuery();
 
@@ -326,7 +341,8 @@
         public String getPassword(String username) {
             String sql = "SELECT password FROM users WHERE username = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, username);
                 ResultSet rs = pstmt.executeQuery();
 
@@ -347,7 +363,8 @@
         public boolean updatePassword(int userId, String newPassword) {
             String sql = "UPDATE users SET password = ? WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 String hashedPassword = hashPassword(newPassword);
                 pstmt.setString(1, hashedPassword);
                 pstmt.setInt(2, userId);
@@ -381,7 +398,8 @@
             WHERE user_id = ?
         """;
 
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, user.getTotalGames());
                 stmt.setInt(2, user.getWins());
                 stmt.setInt(3, user.getTotalScore());
@@ -391,6 +409,10 @@
                 stmt.setInt(7, user.getUserId());
 
                 int rows = stmt.executeUpdate();
+                if (rows > 0) {
+                    LeaderboardIndex.getInstance().setScores(user.getUserId(), user.getTotalScore(),
+                            user.getMathScore(), user.getEnglishScore(), user.getLiteratureScore());
+                }
                 return rows > 0;
 
             } catch (Exception e) {
@@ -418,6 +440,7 @@
                 int rows = stmt.executeUpdate();
 
                 if (rows > 0) {
+                    LeaderboardIndex.getInstance().addScores(userId, scoreToAdd, 0, 0, 0);
                     System.out.println("✅ [UserDAO] Updated total score for user " + userId + " (+" + scoreToAdd + ")");
                     return true;
                 }
@@ -466,26 +489,35 @@
 
 
         /**
-         * Cập nhật điểm theo môn học
+         * Cột điểm của môn học trong bảng users, null nếu môn không hợp lệ
          */
-        public boolean updateSubjectScore(int userId, String subject, int scoreToAdd) {
-            String columnName;
+        static String subjectScoreColumn(String subject) {
+            if (subject == null) {
+                return null;
+            }
             switch (subject.toLowerCase()) {
                 case "math":
                 case "toán":
-                    columnName = "math_score";
-                    break;
+                    return "math_score";
                 case "english":
                 case "tiếng anh":
-                    columnName = "english_score";
-                    break;
+                    return "english_score";
                 case "literature":
                 case "văn":
-                    columnName = "literature_score";
-                    break;
+                    return "literature_score";
                 default:
-                    System.out.println("⚠️ [UserDAO] Unknown subject: " + subject);
-                    return false;
+                    return null;
+            }
+        }
+
+        /**
+         * Cập nhật điểm theo môn học
+         */
+        public boolean updateSubjectScore(int userId, String subject, int scoreToAdd) {
+            String columnName = subjectScoreColumn(subject);
+            if (columnName == null) {
+                System.out.println("⚠️ [UserDAO] Unknown subject: " + subject);
+                return false;
             }
 
             String query = "UPDATE users SET " + columnName + " = " + columnName + " + ? WHERE user_id = ?";
@@ -499,6 +531,11 @@
                 int rows = stmt.executeUpdate();
 
                 if (rows > 0) {
+                    int dim = LeaderboardIndex.dimensionOf(columnName.substring(0, columnName.indexOf('_')));
+                    LeaderboardIndex.getInstance().addScores(userId, 0,
+                            dim == LeaderboardIndex.MATH ? scoreToAdd : 0,
+                            dim == LeaderboardIndex.ENGLISH ? scoreToAdd : 0,
+                            dim == LeaderboardIndex.LITERATURE ? scoreToAdd : 0);
                     System.out.println("✅ [UserDAO] Updated " + subject + " score for user " + userId + " (+" + scoreToAdd + ")");
                     return true;
                 }
@@ -570,17 +607,8 @@
             ORDER BY total_score DESC, wins DESC, username ASC
         """;
 
-            try {
-                System.out.println("🔍 [DEBUG UserDAO] Connection status: " +
-                        (connection != null && !connection.isClosed() ? "OK" : "CLOSED"));
-
-                if (connection == null || connection.isClosed()) {
-                    System.err.println("❌ [DEBUG UserDAO] Connection is NULL or closed!");
-                    System.err.println("   Attempting to reconnect...");
-                    connection = DatabaseConnection.getInstance().getConnection();
-                }
-
-                try (PreparedStatement stmt = connection.prepareStatement(query);
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                try (PreparedStatement stmt = conn.prepareStatement(query);
                      ResultSet rs = stmt.executeQuery()) {
 
                     System.out.println("✅ [DEBUG UserDAO] Query executed successfully");
@@ -753,7 +781,8 @@
         public boolean updateUser(int userId, String username, String fullName, String email) {
             String sql = "UPDATE users SET username = ?, full_name = ?, email = ? WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, username);
                 pstmt.setString(2, fullName);
                 pstmt.setString(3, email);
@@ -762,6 +791,7 @@
                 int rows = pstmt.executeUpdate();
 
                 if (rows > 0) {
+                    LeaderboardIndex.getInstance().updateProfile(userId, username, fullName, null);
                     System.out.println("✅ User updated successfully: " + username);
                     return true;
                 }
@@ -785,7 +815,8 @@
             // Kiểm tra xem user có đang online không
             String checkSql = "SELECT is_online FROM users WHERE user_id = ?";
 
-            try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
                 checkStmt.setInt(1, userId);
                 ResultSet rs = checkStmt.executeQuery();
 
@@ -802,12 +833,14 @@
             // Xóa user
             String deleteSql = "DELETE FROM users WHERE user_id = ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(deleteSql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(deleteSql)) {
                 pstmt.setInt(1, userId);
 
                 int rows = pstmt.executeUpdate();
 
                 if (rows > 0) {
+                    LeaderboardIndex.getInstance().removeUser(userId);
                     System.out.println("✅ User deleted successfully (ID: " + userId + ")");
                     return true;
                 } else {
@@ -832,7 +865,8 @@
         public boolean usernameExistsExcept(String username, int exceptUserId) {
             String sql = "SELECT COUNT(*) FROM users WHERE username = ? AND user_id != ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, username);
                 pstmt.setInt(2, exceptUserId);
                 ResultSet rs = pstmt.executeQuery();
@@ -854,7 +888,8 @@
         public boolean emailExistsExcept(String email, int exceptUserId) {
             String sql = "SELECT COUNT(*) FROM users WHERE email = ? AND user_id != ?";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
                 pstmt.setString(1, email);
                 pstmt.setInt(2, exceptUserId);
                 ResultSet rs = pstmt.executeQuery();
@@ -883,7 +918,8 @@
         public int getOnlineUserCount() {
             String sql = "SELECT COUNT(*) FROM users WHERE is_online = 1";
 
-            try (PreparedStatement pstmt = connection.prepareStatement(sql);
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = conn.prepareStatement(sql);
                  ResultSet rs = pstmt.executeQuery()) {
 
                 if (rs.next()) {
@@ -912,7 +948,8 @@
             ORDER BY username ASC
         """;
 
-            try (PreparedStatement stmt = connection.prepareStatement(query);
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(query);
                  ResultSet rs = stmt.executeQuery()) {
 
                 while (rs.next()) {
@@ -1,19 +1,20 @@
 package com.edugame.server.game;
 
 import com.edugame.common.Protocol;
-import com.edugame.server.database.GameResultDAO;
+import com.edugame.server.database.GameResultWriter;
 import com.edugame.server.database.GameSessionDAO;
 import com.edugame.server.database.QuestionDAO;
-import com.edugame.server.database.UserDAO;
 import com.edugame.server.model.GameSession;
 import com.edugame.server.model.Question;
 import com.edugame.server.model.User;
 import com.edugame.server.network.ClientHandler;
+import com.edugame.server.network.EncodedMessage;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -28,15 +29,11 @@ public class GameManager {
 
     private final Map<String, GameSession> activeSessions;
     private final QuestionDAO questionDAO;
-    private final UserDAO userDAO;
-    private final GameResultDAO gameResultDAO;
     private final GameSessionDAO gameSessionDAO;
 
     private GameManager() throws SQLException {
         this.activeSessions = new ConcurrentHashMap<>();
         this.questionDAO = new QuestionDAO();
-        this.userDAO = new UserDAO();
-        this.gameResultDAO = new GameResultDAO();
         this.gameSessionDAO = new GameSessionDAO();
         logWithTime("✅ GameManager initialized");
     }
@@ -229,27 +226,6 @@ public class GameManager {
             }
         });
 
-        // Answer broadcaster
-        session.setAnswerBroadcaster((rid, userId, isCorrect, timeTaken, position, score, gotNitro) -> {
-            for (ClientHandler handler : players) {
-                if (handler.getCurrentUser() != null) {
-                    handler.broadcastAnswerResult(rid, userId, isCorrect, timeTaken,
-                            position, score, gotNitro, players);
-                    break;
-                }
-            }
-        });
-
-        // Progress broadcaster
-        session.setProgressBroadcaster((rid, userId, questionIndex) -> {
-            for (ClientHandler handler : players) {
-                if (handler.getCurrentUser() != null) {
-                    handler.broadcastQuestionProgress(rid, userId, questionIndex, players);
-                    break;
-                }
-            }
-        });
-
         // Player finish notifier
         session.setPlayerFinishNotifier((rid, userId, rank) -> {
             for (ClientHandler handler : players) {
@@ -288,12 +264,6 @@ public class GameManager {
             logWithTime("💾 [SaveAndBroadcast] Processing for room: " + roomId);
 
             int sessionId = session.getSessionId();
-
-            if (sessionId <= 0) {
-                logWithTime("❌ Invalid session ID: " + sessionId);
-                return;
-            }
-
             logWithTime("   Session ID: " + sessionId);
 
             long startTime = session.getStartTimeMillis();
@@ -310,6 +280,8 @@ public class GameManager {
             });
 
             List<Map<String, Object>> rankings = new ArrayList<>();
+            GameResultWriter.GameResultRecord record =
+                    new GameResultWriter.GameResultRecord(sessionId, session.getSubject(), timeTaken, true);
 
             for (int i = 0; i < sortedStates.size(); i++) {
                 GameSession.PlayerGameState state = sortedStates.get(i);
@@ -339,43 +311,11 @@ public class GameManager {
                 rankData.put("totalQuestions", state.totalQuestionsAttempted);
 
                 rankings.add(rankData);
-
-                try {
-                    boolean saved = gameResultDAO.saveGameResult(
-                            sessionId,
-                            state.userId,
-                            state.score,
-                            state.totalCorrectAnswers,
-                            state.totalWrongAnswers,
-                            timeTaken,
-                            rank
-                    );
-
-                    if (saved) {
-                        logWithTime("   💾 ✅ User " + state.userId + " saved (Rank " + rank + ")");
-                    }
-                } catch (Exception e) {
-                    logWithTime("   💾 ❌ Failed to save user " + state.userId + ": " + e.getMessage());
-                }
-
-                try {
-                    userDAO.updateTotalScore(state.userId, state.score);
-                    userDAO.updateSubjectScore(state.userId, session.getSubject(), state.score);
-                    userDAO.updateGameStats(state.userId, rank == 1);
-
-                    logWithTime("   📊 ✅ Stats updated for user " + state.userId);
-                } catch (Exception e) {
-                    logWithTime("   📊 ⚠️ Could not update stats: " + e.getMessage());
-                }
-            }
-
-            try {
-                gameSessionDAO.finishSession(sessionId);
-                logWithTime("   🏁 Session " + sessionId + " marked as finished");
-            } catch (Exception e) {
-                logWithTime("   ⚠️ Could not mark session finished: " + e.getMessage());
+                record.addPlayer(state.userId, state.score,
+                        state.totalCorrectAnswers, state.totalWrongAnswers, rank);
             }
 
+            // ✅ Gửi GAME_END trước, lưu DB sau (write-behind)
             Map<String, Object> endGameData = new HashMap<>();
             endGameData.put("type", Protocol.GAME_END);
             endGameData.put("roomId", roomId);
@@ -387,11 +327,12 @@ public class GameManager {
             endGameData.put("totalTime", timeTaken);
             endGameData.put("timestamp", System.currentTimeMillis());
 
+            EncodedMessage encoded = EncodedMessage.of(endGameData);
             int sentCount = 0;
             for (ClientHandler player : players) {
                 if (player.getCurrentUser() != null) {
                     try {
-                        player.sendMessage(endGameData);
+                        player.sendEncoded(encoded);
                         sentCount++;
                         logWithTime("   📤 Sent to: " + player.getCurrentUser().getUsername());
                     } catch (Exception e) {
@@ -400,8 +341,14 @@ public class GameManager {
                 }
             }
 
+            if (sessionId > 0) {
+                GameResultWriter.getInstance().submit(record);
+            } else {
+                logWithTime("❌ Invalid session ID: " + sessionId + " - results not saved");
+            }
+
             logWithTime("✅ [SaveAndBroadcast] Complete!");
-            logWithTime("   Results saved: " + sortedStates.size());
+            logWithTime("   Results queued: " + sortedStates.size());
             logWithTime("   Notifications sent: " + sentCount + "/" + players.size());
 
         } catch (Exception e) {
@@ -439,10 +386,14 @@ public class GameManager {
         }
     }
 
-    public GameSession.AnswerResult submitAnswer(String roomId, int userId, String answer) {
+    /**
+     * Answer is processed on the session's actor; the future completes there
+     */
+    public CompletableFuture<GameSession.AnswerResult> submitAnswer(String roomId, int userId, String answer) {
         GameSession session = activeSessions.get(roomId);
         if (session == null) {
-            return new GameSession.AnswerResult(false, "Game not found", 0, 0);
+            return CompletableFuture.completedFuture(
+                    new GameSession.AnswerResult(false, "Game not found", 0, 0));
         }
         return session.submitAnswer(userId, answer);
     }
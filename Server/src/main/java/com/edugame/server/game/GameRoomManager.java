@@ -8,6 +8,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Quản lý các phòng chơi game
@@ -21,9 +22,15 @@ public class GameRoomManager {
     private final Map<String, GameRoom> rooms;
     private final AtomicInteger roomIdCounter;
 
+    // userId -> roomId, kept up to date by GameRoom.addPlayer / removePlayer
+    private final Map<Integer, String> roomByUser;
+    private final AtomicLong roomsReclaimed;
+
     public GameRoomManager() {
         this.rooms = new ConcurrentHashMap<>();
         this.roomIdCounter = new AtomicInteger(1);
+        this.roomByUser = new ConcurrentHashMap<>();
+        this.roomsReclaimed = new AtomicLong();
         logWithTime("✅ GameRoomManager initialized");
     }
 
@@ -49,6 +56,7 @@ public class GameRoomManager {
         String roomId = "ROOM_" + roomIdCounter.getAndIncrement();
 
         GameRoom room = new GameRoom(roomId, hostUser, roomName, subject, difficulty, maxPlayers);
+        room.manager = this;
         room.addPlayer(host);
 
         rooms.put(roomId, room);
@@ -80,6 +88,7 @@ public class GameRoomManager {
         }
 
         GameRoom room = new GameRoom(roomId, hostUser, roomName, subject, difficulty, maxPlayers);
+        room.manager = this;
         room.addPlayer(host);
 
         rooms.put(roomId, room);
@@ -124,7 +133,7 @@ public class GameRoomManager {
     }
 
     /**
-     * Leave phòng
+     * Leave phòng (phòng trống sẽ tự bị xóa)
      */
     public boolean leaveRoom(ClientHandler player, String roomId) {
         GameRoom room = rooms.get(roomId);
@@ -133,15 +142,7 @@ public class GameRoomManager {
             return false;
         }
 
-        boolean success = room.removePlayer(player);
-
-        // Nếu phòng trống, xóa phòng
-        if (room.isEmpty()) {
-            rooms.remove(roomId);
-            logWithTime("🗑️ Room removed (empty): " + roomId);
-        }
-
-        return success;
+        return room.removePlayer(player);
     }
 
     /**
@@ -152,22 +153,47 @@ public class GameRoomManager {
     }
 
     /**
-     * Lấy danh sách phòng
+     * Lấy danh sách phòng (view chỉ đọc, không copy)
      */
-    public List<GameRoom> getAllRooms() {
-        return new ArrayList<>(rooms.values());
+    public Collection<GameRoom> getAllRooms() {
+        return Collections.unmodifiableCollection(rooms.values());
     }
 
     /**
      * Lấy phòng của user
      */
     public GameRoom getRoomByUser(int userId) {
-        for (GameRoom room : rooms.values()) {
-            if (room.hasPlayer(userId)) {
-                return room;
-            }
+        String roomId = roomByUser.get(userId);
+        return roomId != null ? rooms.get(roomId) : null;
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    public String getStatsSummary() {
+        return "rooms=" + rooms.size() +
+                ", players=" + roomByUser.size() +
+                ", reclaimed=" + roomsReclaimed.get();
+    }
+
+    // ==================== INDEXES ====================
+    // Called by GameRoom while it holds its own lock - only touch concurrent maps here,
+    // never lock a room (that would invert the lock order).
+
+    private void onPlayerAdded(GameRoom room, int userId) {
+        String previous = roomByUser.put(userId, room.getRoomId());
+        if (previous != null && !previous.equals(room.getRoomId())) {
+            logWithTime("⚠️ User " + userId + " was still indexed in room " + previous);
+        }
+    }
+
+    private void onPlayerRemoved(GameRoom room, int userId) {
+        roomByUser.remove(userId, room.getRoomId());
+        if (room.closed && rooms.remove(room.getRoomId(), room)) {
+            roomsReclaimed.incrementAndGet();
+            logWithTime("🗑️ Room removed (empty): " + room.getRoomId());
         }
-        return null;
     }
 
     private void logWithTime(String message) {
@@ -185,10 +211,14 @@ public class GameRoomManager {
         private final String subject;
         private final String difficulty;
         private final int maxPlayers;
-        private final List<ClientHandler> players;
+        private final Map<Integer, ClientHandler> players; // userId -> handler, join order (guarded by itself)
         private final Map<Integer, Boolean> playerReadyStatus; // userId -> isReady
         private final LocalDateTime createdAt;
 
+        private GameRoomManager manager;      // null for rooms not created by the manager
+        private boolean closed;               // emptied and reclaimed - no more joins (guarded by players)
+        private volatile int playerCount;
+
         public GameRoom(String roomId, User host, String roomName,
                         String subject, String difficulty, int maxPlayers) {
             this.roomId = roomId;
@@ -197,50 +227,81 @@ public class GameRoomManager {
             this.subject = subject;
             this.difficulty = difficulty;
             this.maxPlayers = maxPlayers;
-            this.players = Collections.synchronizedList(new ArrayList<>());
+            this.players = new LinkedHashMap<>();
             this.playerReadyStatus = new ConcurrentHashMap<>();
             this.createdAt = LocalDateTime.now();
         }
 
         public boolean addPlayer(ClientHandler player) {
+            User user = player.getCurrentUser();
+            if (user == null) {
+                return false;
+            }
+            int userId = user.getUserId();
+
             synchronized (players) {
-                if (players.size() >= maxPlayers) {
+                if (closed || players.size() >= maxPlayers || players.containsKey(userId)) {
                     return false;
                 }
 
-                boolean added = players.add(player);
-                if (added && player.getCurrentUser() != null) {
-                    // Initialize ready status as false
-                    playerReadyStatus.put(player.getCurrentUser().getUserId(), false);
+                players.put(userId, player);
+                playerCount = players.size();
+                // Initialize ready status as false
+                playerReadyStatus.put(userId, false);
+
+                if (manager != null) {
+                    manager.onPlayerAdded(this, userId);
                 }
-                return added;
+                return true;
             }
         }
 
         public boolean removePlayer(ClientHandler player) {
             synchronized (players) {
-                boolean removed = players.remove(player);
+                // Look the handler up rather than trusting getCurrentUser() - it is cleared on logout
+                Integer userId = null;
+                for (Map.Entry<Integer, ClientHandler> entry : players.entrySet()) {
+                    if (entry.getValue() == player) {
+                        userId = entry.getKey();
+                        break;
+                    }
+                }
+                if (userId == null) {
+                    return false;
+                }
 
-                if (removed && player.getCurrentUser() != null) {
-                    int userId = player.getCurrentUser().getUserId();
-                    playerReadyStatus.remove(userId);
+                players.remove(userId);
+                playerCount = players.size();
+                playerReadyStatus.remove(userId);
 
-                    // If host left, assign new host
-                    if (host.getUserId() == userId && !players.isEmpty()) {
-                        host = players.get(0).getCurrentUser();
+                // If host left, assign new host
+                if (host.getUserId() == userId && !players.isEmpty()) {
+                    User newHost = players.values().iterator().next().getCurrentUser();
+                    if (newHost != null) {
+                        host = newHost;
                         System.out.println("👑 New host assigned: " + host.getUsername());
                     }
                 }
 
-                return removed;
+                if (players.isEmpty()) {
+                    closed = true;
+                }
+                if (manager != null) {
+                    manager.onPlayerRemoved(this, userId);
+                }
+                return true;
             }
         }
 
         public boolean hasPlayer(int userId) {
             synchronized (players) {
-                return players.stream()
-                        .anyMatch(p -> p.getCurrentUser() != null &&
-                                p.getCurrentUser().getUserId() == userId);
+                return players.containsKey(userId);
+            }
+        }
+
+        public ClientHandler getPlayer(int userId) {
+            synchronized (players) {
+                return players.get(userId);
             }
         }
 
@@ -254,17 +315,14 @@ public class GameRoomManager {
 
         public boolean areAllPlayersReady() {
             synchronized (players) {
-                for (ClientHandler player : players) {
-                    User user = player.getCurrentUser();
-                    if (user == null) continue;
-
+                for (int userId : players.keySet()) {
                     // Skip host - host doesn't need to ready
-                    if (user.getUserId() == host.getUserId()) {
+                    if (userId == host.getUserId()) {
                         continue;
                     }
 
                     // Check if player is ready
-                    if (!isPlayerReady(user.getUserId())) {
+                    if (!isPlayerReady(userId)) {
                         return false;
                     }
                 }
@@ -273,20 +331,20 @@ public class GameRoomManager {
         }
 
         public boolean isFull() {
-            return players.size() >= maxPlayers;
+            return playerCount >= maxPlayers;
         }
 
         public boolean isEmpty() {
-            return players.isEmpty();
+            return playerCount == 0;
         }
 
         public int getPlayerCount() {
-            return players.size();
+            return playerCount;
         }
 
         public List<ClientHandler> getPlayers() {
             synchronized (players) {
-                return new ArrayList<>(players);
+                return new ArrayList<>(players.values());
             }
         }
 
@@ -1,18 +1,22 @@
 package com.edugame.server.game;
 
 import com.edugame.common.Protocol;
+import com.edugame.server.config.ConfigManager;
 import com.edugame.server.database.QuestionDAO;
 import com.edugame.server.database.RoomDAO;
 import com.edugame.server.model.Question;
 import com.edugame.server.model.Room;
 import com.edugame.server.model.User;
 import com.edugame.server.network.ClientHandler;
+import com.edugame.server.util.TimerService;
 
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -25,28 +29,65 @@ public class MatchmakingManager {
 
     private static final DateTimeFormatter LOG_TIME_FORMAT =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-
     private static final long MATCHMAKING_TIMEOUT_MS = 30_000;
+    private static final int WAIT_SAMPLES = 1024; // Recent matched waits kept for percentiles
 
-    private final Map<String, Queue<MatchRequest>> waitingQueues;
-    private final Map<Integer, MatchRequest> userRequests;
-    private final ScheduledExecutorService scheduler;
+    private final Map<String, MatchQueue> waitingQueues;     // subject_difficulty_countPlayer → queue
+    private final Map<Integer, MatchRequest> userRequests;   // userId → request (queued or being matched)
+    private final TimerService scheduler; // Shared server-wide timer
+    private final ThreadPoolExecutor matchWorkers; // createMatch (questions, DB room, notifications)
     private final GameRoomManager roomManager;
+    private final AtomicLong requestSeq = new AtomicLong();
+
+    // Skill window: base ± growth per second waited, capped
+    private final int windowBase;
+    private final int windowGrowthPerSec;
+    private final int windowMax;
+    private final ScheduledFuture<?> tickFuture;
+
+    private final long[] waitSamples = new long[WAIT_SAMPLES]; // Guarded by itself
+    private int waitSampleCount = 0;                           // Guarded by waitSamples
+    private final AtomicLong matchesFormed = new AtomicLong();
+    private final AtomicLong playersMatched = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
 
     public MatchmakingManager(GameRoomManager roomManager) {
         this.waitingQueues = new ConcurrentHashMap<>();
         this.userRequests = new ConcurrentHashMap<>();
-        this.scheduler = Executors.newScheduledThreadPool(2);
+        this.scheduler = TimerService.getInstance();
         this.roomManager = roomManager;
 
+        int threads = ConfigManager.getMatchmakingWorkerThreads();
+        AtomicInteger ids = new AtomicInteger();
+        this.matchWorkers = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "MatchMaker-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.matchWorkers.allowCoreThreadTimeOut(true);
+
+        this.windowBase = ConfigManager.getMatchmakingWindowBase();
+        this.windowGrowthPerSec = ConfigManager.getMatchmakingWindowGrowthPerSec();
+        this.windowMax = ConfigManager.getMatchmakingWindowMax();
+        long tickMs = ConfigManager.getMatchmakingTickMs();
+        this.tickFuture = scheduler.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+
         logWithTime("✅ MatchmakingManager initialized");
     }
 
     /**
      * ✅ Tìm kiếm đối thủ
+     *
+     * Chỉ đưa vào hàng chờ của (subject, difficulty, countPlayer); tick() định
+     * kỳ ghép nhóm. Việc tạo trận (câu hỏi, room trong DB, thông báo) chạy trên
+     * matchWorkers, ngoài lock.
      */
-    public synchronized boolean findMatch(ClientHandler handler, String subject,
-                                          String difficulty, int countPlayer) {
+    public boolean findMatch(ClientHandler handler, String subject,
+                             String difficulty, int countPlayer) {
         User user = handler.getCurrentUser();
 
         if (user == null) {
@@ -55,9 +96,11 @@ public class MatchmakingManager {
         }
 
         int userId = user.getUserId();
+        MatchRequest newRequest = new MatchRequest(handler, user, subject, difficulty, countPlayer,
+                getSubjectScore(user, subject), requestSeq.incrementAndGet());
 
-        if (userRequests.containsKey(userId)) {
-            MatchRequest existingRequest = userRequests.get(userId);
+        MatchRequest existingRequest = userRequests.putIfAbsent(userId, newRequest);
+        if (existingRequest != null) {
             logWithTime("⚠️ User " + user.getUsername() + " already in queue");
             logWithTime("   Existing queue: " + existingRequest.subject +
                     "_" + existingRequest.difficulty);
@@ -67,105 +110,93 @@ public class MatchmakingManager {
         logWithTime("🔍 FIND_MATCH: " + user.getUsername() +
                 " | Subject: " + subject +
                 " | Difficulty: " + difficulty +
-                " | CountPlayer: " + countPlayer);
-
-        MatchRequest newRequest = new MatchRequest(handler, user, subject, difficulty, countPlayer);
-
-        String queueKey = getQueueKey(subject, difficulty);
-        Queue<MatchRequest> queue = waitingQueues.computeIfAbsent(
-                queueKey, k -> new ConcurrentLinkedQueue<>()
-        );
-
-        logWithTime("📊 Current queue size for " + queueKey + ": " + queue.size());
-
-        MatchRequest opponent = findOpponent(queue, newRequest);
+                " | CountPlayer: " + countPlayer +
+                " | Score: " + newRequest.score);
 
-        if (opponent != null) {
-            logWithTime("✅ MATCH FOUND IMMEDIATELY!");
-            logWithTime("   Player 1: " + newRequest.user.getUsername());
-            logWithTime("   Player 2: " + opponent.user.getUsername());
+        String queueKey = getQueueKey(subject, difficulty, countPlayer);
+        MatchQueue queue = waitingQueues.computeIfAbsent(queueKey, k -> new MatchQueue());
 
-            userRequests.put(userId, newRequest);
-
-            createMatch(newRequest, opponent, subject, difficulty, countPlayer);
-            return true;
-
-        } else {
-            queue.offer(newRequest);
-            userRequests.put(userId, newRequest);
-
-            logWithTime("⏳ Added to queue: " + user.getUsername());
-            logWithTime("   New queue size: " + queue.size());
-
-            scheduleTimeout(newRequest);
-            return true;
+        scheduleTimeout(newRequest);
+        synchronized (queue) {
+            queue.add(newRequest);
         }
+
+        logWithTime("⏳ Added to queue " + queueKey + ": " + user.getUsername());
+        return true;
     }
 
     /**
-     * ✅ Tìm đối thủ trong queue
+     * Một vòng ghép trận: mỗi queue tạo các nhóm đủ countPlayer người có độ
+     * chênh điểm nhỏ nhất, miễn là nằm trong cửa sổ (nới dần theo thời gian chờ)
+     * của mọi thành viên
      */
-    private MatchRequest findOpponent(Queue<MatchRequest> queue, MatchRequest newRequest) {
-        Iterator<MatchRequest> iterator = queue.iterator();
-
-        logWithTime("🔍 Searching for opponent in queue...");
-        logWithTime("   Queue size: " + queue.size());
-
-        // ✅ Lấy điểm môn học của người chơi mới
-        int newPlayerScore = getSubjectScore(newRequest.user, newRequest.subject);
-        logWithTime("   New player: " + newRequest.user.getUsername() +
-                " (Total: " + newRequest.user.getTotalScore() +
-                ", " + newRequest.subject + ": " + newPlayerScore + ")");
-
-        while (iterator.hasNext()) {
-            MatchRequest candidate = iterator.next();
-
-            if (candidate.isExpired()) {
-                logWithTime("   ⏰ Removing expired: " + candidate.user.getUsername());
-                iterator.remove();
-                userRequests.remove(candidate.user.getUserId());
-                continue;
+    private void tick() {
+        long now = System.currentTimeMillis();
+        for (MatchQueue queue : waitingQueues.values()) {
+            List<List<MatchRequest>> groups;
+            synchronized (queue) {
+                if (queue.size() == 0) {
+                    continue;
+                }
+                groups = queue.formGroups(now, this::windowFor);
             }
 
-            if (candidate.user.getUserId() == newRequest.user.getUserId()) {
-                logWithTime("   ⚠️ Same user, skip");
-                continue;
-            }
+            for (List<MatchRequest> group : groups) {
+                MatchRequest first = group.get(0);
+                int spread = group.get(group.size() - 1).score - first.score;
+                StringBuilder names = new StringBuilder();
+                for (MatchRequest request : group) {
+                    if (request.timeoutFuture != null) {
+                        request.timeoutFuture.cancel(false);
+                    }
+                    recordWait(now - request.timestamp);
+                    if (names.length() > 0) {
+                        names.append(" vs ");
+                    }
+                    names.append(request.user.getUsername());
+                }
+                matchesFormed.incrementAndGet();
+                playersMatched.addAndGet(group.size());
+                logWithTime("✅ MATCH FOUND: " + names + " (spread " + spread + ")");
 
-            if (candidate.countPlayer != newRequest.countPlayer) {
-                logWithTime("   ⚠️ Different countPlayer: " +
-                        candidate.countPlayer + " vs " + newRequest.countPlayer);
-                continue;
+                submitMatch(group, first.subject, first.difficulty, first.countPlayer);
             }
+        }
+    }
 
-            // ✅ So sánh điểm môn học cụ thể thay vì tổng điểm
-            int candidateScore = getSubjectScore(candidate.user, candidate.subject);
-            int scoreDiff = Math.abs(candidateScore - newPlayerScore);
-
-            logWithTime("   🎯 Checking: " + candidate.user.getUsername() +
-                    " (Total: " + candidate.user.getTotalScore() +
-                    ", " + candidate.subject + ": " + candidateScore + ")");
-            logWithTime("      Score difference (" + newRequest.subject + "): " + scoreDiff);
-
-            if (scoreDiff <= 200) {
-                logWithTime("   ✅ OPPONENT FOUND!");
-
-                iterator.remove();
-                userRequests.remove(candidate.user.getUserId());
+    /**
+     * Chênh lệch điểm tối đa mà request này chấp nhận lúc now
+     */
+    private int windowFor(MatchRequest request, long now) {
+        long waitedSec = Math.max(0, now - request.timestamp) / 1000;
+        return (int) Math.min(windowMax, windowBase + waitedSec * windowGrowthPerSec);
+    }
 
-                if (candidate.timeoutFuture != null) {
-                    candidate.timeoutFuture.cancel(false);
-                    logWithTime("   ⏱️ Cancelled timeout for: " + candidate.user.getUsername());
+    /**
+     * Tạo trận trên worker; user được giữ trong userRequests tới khi xong
+     * để không thể tìm trận lần nữa trong lúc đang tạo phòng
+     */
+    private void submitMatch(List<MatchRequest> group,
+                             String subject, String difficulty, int countPlayer) {
+        Runnable task = () -> {
+            try {
+                createMatch(group, subject, difficulty, countPlayer);
+            } catch (Exception e) {
+                logWithTime("❌ Error creating match: " + e.getMessage());
+                e.printStackTrace();
+                sendMatchFailure(group, "Lỗi tạo trận đấu");
+            } finally {
+                for (MatchRequest request : group) {
+                    userRequests.remove(request.user.getUserId(), request);
                 }
-
-                return candidate;
-            } else {
-                logWithTime("      ❌ Score difference too large (max: 200)");
             }
-        }
+        };
 
-        logWithTime("   ❌ No suitable opponent found");
-        return null;
+        try {
+            matchWorkers.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run(); // Shutting down - finish here rather than strand both players
+        }
     }
 
     /**
@@ -194,34 +225,24 @@ public class MatchmakingManager {
         }, MATCHMAKING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
 
         request.timeoutFuture = future;
-        logWithTime("⏱️ Scheduled timeout (30s) for: " + request.user.getUsername());
     }
 
     /**
      * ✅ Xử lý timeout
      */
-    private synchronized void handleTimeout(MatchRequest request) {
-        if (!userRequests.containsKey(request.user.getUserId())) {
+    private void handleTimeout(MatchRequest request) {
+        if (!removeFromQueue(request)) {
             logWithTime("⏰ Timeout ignored (already matched): " +
                     request.user.getUsername());
             return;
         }
+        userRequests.remove(request.user.getUserId(), request);
+        timeouts.incrementAndGet();
 
         logWithTime("⏰ TIMEOUT: " + request.user.getUsername() +
                 " | Subject: " + request.subject +
                 " | Difficulty: " + request.difficulty);
 
-        userRequests.remove(request.user.getUserId());
-
-        String queueKey = getQueueKey(request.subject, request.difficulty);
-        Queue<MatchRequest> queue = waitingQueues.get(queueKey);
-
-        if (queue != null) {
-            boolean removed = queue.remove(request);
-            logWithTime("   Queue removal: " + (removed ? "SUCCESS" : "FAILED"));
-            logWithTime("   Queue size after removal: " + queue.size());
-        }
-
         Map<String, Object> response = new HashMap<>();
         response.put("type", Protocol.MATCH_FOUND);
         response.put("success", false);
@@ -229,13 +250,12 @@ public class MatchmakingManager {
         response.put("message", "Không tìm thấy đối thủ phù hợp trong 30 giây. Vui lòng thử lại!");
 
         request.handler.sendMessage(response);
-        logWithTime("   ✅ Timeout notification sent to: " + request.user.getUsername());
     }
 
     /**
      * ✅ Hủy tìm kiếm
      */
-    public synchronized boolean cancelFindMatch(ClientHandler handler) {
+    public boolean cancelFindMatch(ClientHandler handler) {
         User user = handler.getCurrentUser();
 
         if (user == null) {
@@ -244,26 +264,22 @@ public class MatchmakingManager {
         }
 
         int userId = user.getUserId();
-        MatchRequest request = userRequests.remove(userId);
+        MatchRequest request = userRequests.get(userId);
 
         if (request == null) {
             logWithTime("⚠️ No active search for user: " + user.getUsername());
             return false;
         }
 
-        if (request.timeoutFuture != null) {
-            request.timeoutFuture.cancel(false);
-            logWithTime("⏱️ Cancelled timeout for: " + user.getUsername());
+        if (!removeFromQueue(request)) {
+            // Already paired - the match is being created
+            logWithTime("⚠️ Cancel too late, already matched: " + user.getUsername());
+            return false;
         }
+        userRequests.remove(userId, request);
 
-        String queueKey = getQueueKey(request.subject, request.difficulty);
-        Queue<MatchRequest> queue = waitingQueues.get(queueKey);
-
-        if (queue != null) {
-            boolean removed = queue.remove(request);
-            logWithTime("✅ Removed from queue: " + user.getUsername() +
-                    " (success: " + removed + ")");
-            logWithTime("   Queue size after removal: " + queue.size());
+        if (request.timeoutFuture != null) {
+            request.timeoutFuture.cancel(false);
         }
 
         Map<String, Object> response = new HashMap<>();
@@ -276,24 +292,35 @@ public class MatchmakingManager {
         return true;
     }
 
+    /**
+     * @return true if the request was still waiting (and is now removed)
+     */
+    private boolean removeFromQueue(MatchRequest request) {
+        MatchQueue queue = waitingQueues.get(getQueueKey(request.subject, request.difficulty, request.countPlayer));
+        if (queue == null) {
+            return false;
+        }
+        synchronized (queue) {
+            return queue.remove(request);
+        }
+    }
+
     /**
      * ✅ FIXED: Tạo trận đấu + Gửi câu hỏi
      */
-    private void createMatch(MatchRequest req1, MatchRequest req2,
+    private void createMatch(List<MatchRequest> group,
                              String subject, String difficulty, int countPlayer) {
 
+        MatchRequest host = group.get(0);
         logWithTime("🎮 Creating match:");
-        logWithTime("   Player 1: " + req1.user.getUsername() +
-                " (Score: " + req1.user.getTotalScore() + ")");
-        logWithTime("   Player 2: " + req2.user.getUsername() +
-                " (Score: " + req2.user.getTotalScore() + ")");
+        for (int i = 0; i < group.size(); i++) {
+            logWithTime("   Player " + (i + 1) + ": " + group.get(i).user.getUsername() +
+                    " (Score: " + group.get(i).user.getTotalScore() + ")");
+        }
         logWithTime("   Subject: " + subject);
         logWithTime("   Difficulty: " + difficulty);
         logWithTime("   CountPlayer: " + countPlayer);
 
-        userRequests.remove(req1.user.getUserId());
-        userRequests.remove(req2.user.getUserId());
-
         try {
             // ✅ 1. TẠO BỘ CÂU HỎI NGAY TỪ ĐẦU
             logWithTime("📝 Generating questions...");
@@ -307,8 +334,7 @@ public class MatchmakingManager {
             if (questions == null || questions.size() < Protocol.QUESTIONS_PER_GAME) {
                 logWithTime("❌ Not enough questions! Found: " +
                         (questions != null ? questions.size() : 0));
-                sendMatchFailure(req1.handler, "Không đủ câu hỏi cho trận đấu");
-                sendMatchFailure(req2.handler, "Không đủ câu hỏi cho trận đấu");
+                sendMatchFailure(group, "Không đủ câu hỏi cho trận đấu");
                 return;
             }
 
@@ -317,15 +343,14 @@ public class MatchmakingManager {
             // 2. Tạo room trong DATABASE
             RoomDAO roomDAO = new RoomDAO();
             Room dbRoom = roomDAO.createRoom(
-                    req1.user.getUserId(),
+                    host.user.getUserId(),
                     subject,
                     difficulty
             );
 
             if (dbRoom == null) {
                 logWithTime("❌ Failed to create room in database");
-                sendMatchFailure(req1.handler, "Không thể tạo phòng");
-                sendMatchFailure(req2.handler, "Không thể tạo phòng");
+                sendMatchFailure(group, "Không thể tạo phòng");
                 return;
             }
 
@@ -335,8 +360,8 @@ public class MatchmakingManager {
             // 3. Tạo GameRoom
             GameRoomManager.GameRoom room = roomManager.createRoomWithId(
                     roomId,
-                    req1.handler,
-                    "Match: " + req1.user.getUsername() + " vs " + req2.user.getUsername(),
+                    host.handler,
+                    "Match: " + group.stream().map(r -> r.user.getUsername()).collect(Collectors.joining(" vs ")),
                     subject,
                     difficulty,
                     countPlayer
@@ -344,41 +369,41 @@ public class MatchmakingManager {
 
             if (room == null) {
                 logWithTime("❌ Failed to create GameRoom");
-                sendMatchFailure(req1.handler, "Không thể tạo phòng");
-                sendMatchFailure(req2.handler, "Không thể tạo phòng");
+                sendMatchFailure(group, "Không thể tạo phòng");
                 return;
             }
 
             logWithTime("✅ GameRoom created: " + roomId);
 
-            // 4. Player 2 JOIN
-            boolean joined = roomManager.joinRoom(req2.handler, roomId);
-
-            if (!joined) {
-                logWithTime("❌ Player 2 failed to join");
-                sendMatchFailure(req1.handler, "Đối thủ không thể vào phòng");
-                sendMatchFailure(req2.handler, "Không thể vào phòng");
-                return;
+            // 4. Các người chơi còn lại JOIN
+            for (MatchRequest request : group.subList(1, group.size())) {
+                if (!roomManager.joinRoom(request.handler, roomId)) {
+                    logWithTime("❌ " + request.user.getUsername() + " failed to join");
+                    sendMatchFailure(group, "Đối thủ không thể vào phòng");
+                    return;
+                }
             }
 
-            logWithTime("✅ Player 2 joined room");
+            logWithTime("✅ All players joined room");
 
             // 5. Set ready
-            room.setPlayerReady(req1.user.getUserId(), true);
-            room.setPlayerReady(req2.user.getUserId(), true);
+            for (MatchRequest request : group) {
+                room.setPlayerReady(request.user.getUserId(), true);
+            }
             logWithTime("✅ All players set to ready");
 
-            // 6. Gửi MATCH_FOUND cho cả 2
-            sendMatchFoundNotification(req1.handler, roomId, subject, difficulty, req2.user);
-            sendMatchFoundNotification(req2.handler, roomId, subject, difficulty, req1.user);
-            logWithTime("✅ MATCH_FOUND sent to both players");
+            // 6. Gửi MATCH_FOUND cho mọi người (đối thủ = người kế tiếp trong nhóm)
+            for (int i = 0; i < group.size(); i++) {
+                sendMatchFoundNotification(group.get(i).handler, roomId, subject, difficulty,
+                        group.get((i + 1) % group.size()).user);
+            }
+            logWithTime("✅ MATCH_FOUND sent to all players");
 
             // ✅ 7. LƯU CÂU HỎI VÀO GAME
             GameManager gameManager = GameManager.getInstance();
 
             // ✅ 8. LƯU THÔNG TIN USER TRƯỚC KHI SCHEDULED TASK
-            final User user1 = req1.user; // ✅ LƯU LẠI ĐỂ TRÁNH NULL
-            final User user2 = req2.user; // ✅ LƯU LẠI ĐỂ TRÁNH NULL
+            final List<User> groupUsers = group.stream().map(r -> r.user).collect(Collectors.toList()); // ✅ LƯU LẠI ĐỂ TRÁNH NULL
             final String finalRoomId = roomId;
             final List<Question> finalQuestions = questions;
 
@@ -422,10 +447,11 @@ public class MatchmakingManager {
                             User opponent = null;
                             int currentUserId = handler.getCurrentUser().getUserId();
 
-                            if (currentUserId == user1.getUserId()) {
-                                opponent = user2;
-                            } else if (currentUserId == user2.getUserId()) {
-                                opponent = user1;
+                            for (int i = 0; i < groupUsers.size(); i++) {
+                                if (groupUsers.get(i).getUserId() == currentUserId) {
+                                    opponent = groupUsers.get((i + 1) % groupUsers.size());
+                                    break;
+                                }
                             }
 
                             if (opponent != null) {
@@ -673,6 +699,12 @@ public class MatchmakingManager {
         }
     }
 
+    private void sendMatchFailure(List<MatchRequest> group, String message) {
+        for (MatchRequest request : group) {
+            sendMatchFailure(request.handler, message);
+        }
+    }
+
     /**
      * Gửi thông báo thất bại
      */
@@ -684,24 +716,21 @@ public class MatchmakingManager {
         handler.sendMessage(response);
     }
 
-    private String getQueueKey(String subject, String difficulty) {
-        return subject + "_" + difficulty;
+    private String getQueueKey(String subject, String difficulty, int countPlayer) {
+        return subject + "_" + difficulty + "_" + countPlayer;
     }
 
-    public synchronized void cleanupExpiredRequests() {
+    public void cleanupExpiredRequests() {
         int removed = 0;
 
-        for (Queue<MatchRequest> queue : waitingQueues.values()) {
-            Iterator<MatchRequest> iterator = queue.iterator();
-
-            while (iterator.hasNext()) {
-                MatchRequest request = iterator.next();
-
-                if (request.isExpired()) {
-                    iterator.remove();
-                    userRequests.remove(request.user.getUserId());
-                    removed++;
-                }
+        for (MatchQueue queue : waitingQueues.values()) {
+            List<MatchRequest> expired;
+            synchronized (queue) {
+                expired = queue.removeExpired();
+            }
+            for (MatchRequest request : expired) {
+                userRequests.remove(request.user.getUserId(), request);
+                removed++;
             }
         }
 
@@ -712,29 +741,57 @@ public class MatchmakingManager {
 
     public Map<String, Integer> getQueueStats() {
         Map<String, Integer> stats = new HashMap<>();
-        for (Map.Entry<String, Queue<MatchRequest>> entry : waitingQueues.entrySet()) {
-            stats.put(entry.getKey(), entry.getValue().size());
+        for (Map.Entry<String, MatchQueue> entry : waitingQueues.entrySet()) {
+            synchronized (entry.getValue()) {
+                stats.put(entry.getKey(), entry.getValue().size());
+            }
         }
         return stats;
     }
 
+    /**
+     * Thời gian chờ (ms) của các lần ghép gần đây - để cân bằng tốc độ / công bằng
+     */
+    public String getWaitStats() {
+        long[] sorted;
+        synchronized (waitSamples) {
+            sorted = Arrays.copyOf(waitSamples, Math.min(waitSampleCount, WAIT_SAMPLES));
+        }
+        Arrays.sort(sorted);
+        return "matches=" + matchesFormed.get() +
+                ", players=" + playersMatched.get() +
+                ", timeouts=" + timeouts.get() +
+                ", wait p50=" + percentile(sorted, 50) +
+                "ms p90=" + percentile(sorted, 90) +
+                "ms p99=" + percentile(sorted, 99) + "ms";
+    }
+
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private void recordWait(long waitMs) {
+        synchronized (waitSamples) {
+            waitSamples[waitSampleCount % WAIT_SAMPLES] = waitMs;
+            waitSampleCount++;
+        }
+    }
+
     public void shutdown() {
         logWithTime("🛑 Shutting down MatchmakingManager...");
 
+        tickFuture.cancel(false);
+
         for (MatchRequest request : userRequests.values()) {
             if (request.timeoutFuture != null) {
                 request.timeoutFuture.cancel(false);
             }
         }
-
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-        }
+        matchWorkers.shutdown();
 
         logWithTime("✅ MatchmakingManager shut down");
     }
@@ -750,16 +807,20 @@ public class MatchmakingManager {
         final String subject;
         final String difficulty;
         final int countPlayer;
+        final int score;      // Subject score at enqueue time - the queue's sort key
+        final long seq;       // Tie-break so equal scores keep arrival order
         final long timestamp;
-        ScheduledFuture<?> timeoutFuture;
+        volatile ScheduledFuture<?> timeoutFuture;
 
         MatchRequest(ClientHandler handler, User user, String subject,
-                     String difficulty, int countPlayer) {
+                     String difficulty, int countPlayer, int score, long seq) {
             this.handler = handler;
             this.user = user;
             this.subject = subject;
             this.difficulty = difficulty;
             this.countPlayer = countPlayer;
+            this.score = score;
+            this.seq = seq;
             this.timestamp = System.currentTimeMillis();
         }
 
@@ -767,4 +828,99 @@ public class MatchmakingManager {
             return System.currentTimeMillis() - timestamp > MATCHMAKING_TIMEOUT_MS;
         }
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface Window {
+        int maxDiff(MatchRequest request, long now);
+    }
+
+    /**
+     * Hàng chờ của một (subject, difficulty, countPlayer), sắp theo điểm môn học.
+     * Caller giữ lock (synchronized trên queue).
+     */
+    private static class MatchQueue {
+        private static final Comparator<MatchRequest> BY_SCORE =
+                Comparator.<MatchRequest>comparingInt(r -> r.score).thenComparingLong(r -> r.seq);
+
+        private final TreeSet<MatchRequest> byScore = new TreeSet<>(BY_SCORE);
+
+        void add(MatchRequest request) {
+            byScore.add(request);
+        }
+
+        boolean remove(MatchRequest request) {
+            return byScore.remove(request);
+        }
+
+        int size() {
+            return byScore.size();
+        }
+
+        /**
+         * Ghép các nhóm countPlayer người liên tiếp theo điểm (nhóm liên tiếp có
+         * độ chênh nhỏ nhất). Nhóm có chênh lệch nhỏ được chọn trước; một nhóm chỉ
+         * hợp lệ khi chênh lệch nằm trong cửa sổ của mọi thành viên.
+         * Các request được chọn bị gỡ khỏi queue.
+         */
+        List<List<MatchRequest>> formGroups(long now, Window window) {
+            List<List<MatchRequest>> groups = new ArrayList<>();
+            int size = byScore.isEmpty() ? 0 : byScore.first().countPlayer;
+            if (size < 2 || byScore.size() < size) {
+                return groups;
+            }
+
+            MatchRequest[] sorted = byScore.toArray(new MatchRequest[0]);
+            int[] allowed = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                allowed[i] = window.maxDiff(sorted[i], now);
+            }
+
+            // Candidate groups = every run of `size` neighbours that fits all members' windows
+            List<int[]> candidates = new ArrayList<>(); // {start, spread}
+            for (int start = 0; start + size <= sorted.length; start++) {
+                int spread = sorted[start + size - 1].score - sorted[start].score;
+                boolean fits = true;
+                for (int k = start; k < start + size && fits; k++) {
+                    fits = spread <= allowed[k];
+                }
+                if (fits) {
+                    candidates.add(new int[]{start, spread});
+                }
+            }
+            candidates.sort(Comparator.comparingInt((int[] c) -> c[1]).thenComparingInt(c -> c[0]));
+
+            boolean[] taken = new boolean[sorted.length];
+            for (int[] candidate : candidates) {
+                int start = candidate[0];
+                boolean free = true;
+                for (int k = start; k < start + size && free; k++) {
+                    free = !taken[k];
+                }
+                if (!free) {
+                    continue;
+                }
+                List<MatchRequest> group = new ArrayList<>(size);
+                for (int k = start; k < start + size; k++) {
+                    taken[k] = true;
+                    group.add(sorted[k]);
+                    byScore.remove(sorted[k]);
+                }
+                groups.add(group);
+            }
+            return groups;
+        }
+
+        List<MatchRequest> removeExpired() {
+            List<MatchRequest> expired = new ArrayList<>();
+            Iterator<MatchRequest> iterator = byScore.iterator();
+            while (iterator.hasNext()) {
+                MatchRequest request = iterator.next();
+                if (request.isExpired()) {
+                    iterator.remove();
+                    expired.add(request);
+                }
+            }
+            return expired;
+        }
+    }
+}
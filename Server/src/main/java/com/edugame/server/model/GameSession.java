@@ -1,7 +1,10 @@
 package com.edugame.server.model;
 
 import com.edugame.common.Protocol;
+import com.edugame.server.config.ConfigManager;
 import com.edugame.server.database.GameSessionDAO;
+import com.edugame.server.util.ActorMailbox;
+import com.edugame.server.util.TimerService;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -12,6 +15,11 @@ import java.util.concurrent.*;
  *
  * ✅ ASYNC MODE: Mỗi người chơi có câu hỏi riêng, không cần chờ nhau
  * ✅ Position broadcasting: Tất cả thấy vị trí của nhau real-time
+ *
+ * Mỗi session là một actor: answer, timeout, disconnect, tick... đều được xếp
+ * vào ActorMailbox và chạy lần lượt trên pool chung, nên state của trận
+ * (PlayerGameState, các map bên dưới) chỉ bị một thread chạm tới mỗi lúc và
+ * không cần synchronized. Các hàm public chỉ xếp việc rồi trả về.
  */
 public class GameSession {
 
@@ -47,9 +55,19 @@ public class GameSession {
     private final Set<Integer> disconnectedPlayers;
     private final Set<Integer> finishedPlayers; // Người chơi đã hoàn thành
 
+    // Compact copy of what the last GAME_UPDATE carried
+    private final PositionSnapshot positionSnapshot;
+
+    // Update coalescing: changes mark the session dirty, one GAME_UPDATE per flush
+    private final long updateFlushMs = ConfigManager.getGameUpdateFlushMs();
+    private boolean flushScheduled = false;
+    private long lastFlushAt = 0;
+
     // ==================== GAME STATE ====================
-    private GameState gameState;
-    private ScheduledExecutorService scheduler;
+    private final ActorMailbox mailbox;
+    private volatile GameState gameState; // Written on the actor, read by handlers
+    private final TimerService scheduler = TimerService.getInstance(); // Shared, never shut down here
+    private final Set<ScheduledFuture<?>> sessionTimers = ConcurrentHashMap.newKeySet(); // Cancelled in cleanup()
     private long gameStartTime;
     private final long gameDuration = Protocol.GAME_DURATION * 1000L; // 5 minutes
 
@@ -96,9 +114,10 @@ public class GameSession {
             playerStates.put(userId, new PlayerGameState(userId));
             playerQuestionIndex.put(userId, 0); // ✅ TẤT CẢ bắt đầu từ câu 0
         }
+        this.mailbox = new ActorMailbox("room " + roomId);
+        this.positionSnapshot = new PositionSnapshot(playerIds, ConfigManager.getGameUpdateKeyframeMs());
 
         this.gameState = GameState.COUNTDOWN;
-        this.scheduler = Executors.newScheduledThreadPool(playerIds.size() + 1);
 
         System.out.println("✅ [GameSession] Created ASYNC mode for room " + roomId);
         System.out.println("   Subject: " + subject + " | Difficulty: " + difficulty);
@@ -115,14 +134,20 @@ public class GameSession {
      * Bắt đầu countdown 10s
      */
     public void startCountdown() {
-        gameState = GameState.COUNTDOWN;
-        System.out.println("⏳ [GameSession] Starting countdown...");
+        mailbox.execute(() -> {
+            gameState = GameState.COUNTDOWN;
+            System.out.println("⏳ [GameSession] Starting countdown...");
+        });
     }
 
     /**
      * Bắt đầu game (sau countdown)
      */
     public void startGame() {
+        mailbox.execute(this::onGameStart);
+    }
+
+    private void onGameStart() {
         gameState = GameState.PLAYING;
         gameStartTime = System.currentTimeMillis();
         System.out.println("🎮 [GameSession] Game started in ASYNC mode!");
@@ -134,18 +159,17 @@ public class GameSession {
             }
         }
 
-        // ✅ Start position broadcasting (mỗi 1s)
-        scheduler.scheduleAtFixedRate(() -> {
-            if (gameState == GameState.PLAYING && positionBroadcaster != null) {
-                positionBroadcaster.broadcastPositions(roomId);
-            }
-        }, 1, 1, TimeUnit.SECONDS);
+        // ✅ Position updates are pushed on change (markDirty); this slow tick only
+        // lets a pending keyframe go out when the race is quiet
+        long keyframeMs = ConfigManager.getGameUpdateKeyframeMs();
+        track(scheduler.scheduleAtFixedRate(() -> mailbox.execute(this::markDirty),
+                keyframeMs, keyframeMs, TimeUnit.MILLISECONDS));
 
         // ✅ Check time limit
-        scheduler.schedule(() -> {
+        schedule(() -> {
             if (gameState == GameState.PLAYING) {
                 System.out.println("⏰ [GameSession] Time limit reached!");
-                endGame("TIME_UP");
+                finishGame("TIME_UP");
             }
         }, gameDuration, TimeUnit.MILLISECONDS);
     }
@@ -169,11 +193,15 @@ public class GameSession {
                 " started question " + (currentIndex + 1) + "/" + questions.size());
 
         // ✅ Set timeout cho người chơi này (10s)
-        ScheduledFuture<?> timer = scheduler.schedule(() -> {
-            handlePlayerTimeout(userId);
-        }, questionTimeLimit, TimeUnit.SECONDS);
+        ScheduledFuture<?>[] timer = new ScheduledFuture<?>[1];
+        timer[0] = scheduler.schedule(() -> mailbox.execute(() -> {
+            // Still the current timer? An answer queued just before this removes it
+            if (playerQuestionTimers.remove(userId, timer[0])) {
+                handlePlayerTimeout(userId);
+            }
+        }), questionTimeLimit, TimeUnit.SECONDS);
 
-        playerQuestionTimers.put(userId, timer);
+        playerQuestionTimers.put(userId, timer[0]);
 
         // ✅ Notify broadcaster to send question
         if (questionSender != null) {
@@ -213,6 +241,7 @@ public class GameSession {
             }
 
             state.position = Math.max(START_POSITION, state.position);
+            markDirty();
         }
 
         // Move to next question
@@ -220,23 +249,15 @@ public class GameSession {
     }
 
 
-    @FunctionalInterface
-    public interface AnswerBroadcaster {
-        void broadcastAnswer(String roomId, int userId, boolean isCorrect, long timeTaken,
-                             double position, int score, boolean gotNitro);
-    }
-
-    private AnswerBroadcaster answerBroadcaster;
-
-    public void setAnswerBroadcaster(AnswerBroadcaster broadcaster) {
-        this.answerBroadcaster = broadcaster;
-    }
-
-
     /**
      * ✅ Xử lý câu trả lời của một người chơi
+     * Xếp vào hộp thư của session; future hoàn thành trên thread của session.
      */
-    public synchronized AnswerResult submitAnswer(int userId, String answer) {
+    public CompletableFuture<AnswerResult> submitAnswer(int userId, String answer) {
+        return mailbox.call(() -> processAnswer(userId, answer));
+    }
+
+    private AnswerResult processAnswer(int userId, String answer) {
         // Validate
         System.out.println("📨 [submitAnswer] User " + userId + " submitted answer: " + answer);
         System.out.println("   Current gameState: " + gameState);
@@ -365,16 +386,14 @@ public class GameSession {
         System.out.println("   📍 Player " + userId + " position: " + state.position +
                 " (score: " + state.score + ")");
 
-        // ✅ Broadcast answer result to ALL players immediately
-        if (answerBroadcaster != null) {
-            answerBroadcaster.broadcastAnswer(roomId, userId, isCorrect, timeTaken,
-                    state.position, state.score, state.gotNitro);
-        }
-
         // ✅ Move to next question TRONG playerQuestionIndex
         int nextIndex = currentIndex + 1;
         playerQuestionIndex.put(userId, nextIndex);
 
+        // ✅ Answer + progress go out with the next GAME_UPDATE flush
+        state.answered = true;
+        markDirty();
+
         // ✅ Check if player finished all questions
         if (nextIndex >= questions.size()) {
             handlePlayerFinished(userId);
@@ -393,13 +412,8 @@ public class GameSession {
                     state.correctStreak);
         }
 
-        // ✅ Broadcast progress to OTHER players
-        if (progressBroadcaster != null) {
-            progressBroadcaster.broadcastProgress(roomId, userId, nextIndex);
-        }
-
         // ✅ Schedule next question after 2s delay
-        scheduler.schedule(() -> {
+        schedule(() -> {
             if (gameState == GameState.PLAYING &&
                     !finishedPlayers.contains(userId) &&
                     !disconnectedPlayers.contains(userId)) {
@@ -417,7 +431,7 @@ public class GameSession {
      * ✅ Xử lý khi player hoàn thành tất cả câu hỏi hoặc đạt finish line
      * Called from submitAnswer() when player completes all questions or reaches finish line
      */
-    private synchronized void handlePlayerFinished(int userId) {
+    private void handlePlayerFinished(int userId) {
         // ✅ Check if already finished to avoid duplicate processing
         if (finishedPlayers.contains(userId)) {
             System.out.println("⚠️ [handlePlayerFinished] Player " + userId + " already finished");
@@ -467,10 +481,10 @@ public class GameSession {
             System.out.println("🏆 [GameSession] ALL PLAYERS FINISHED!");
 
             // ✅ Delay 3 seconds before ending game to let players see final results
-            scheduler.schedule(() -> {
+            schedule(() -> {
                 if (gameState == GameState.PLAYING) {
                     System.out.println("   🏁 Ending game after delay...");
-                    endGame("ALL_FINISHED");
+                    finishGame("ALL_FINISHED");
                 }
             }, 3, TimeUnit.SECONDS);
         }
@@ -504,17 +518,6 @@ public class GameSession {
         return true;
     }
 
-    @FunctionalInterface
-    public interface ProgressBroadcaster {
-        void broadcastProgress(String roomId, int userId, int questionIndex);
-    }
-
-    private ProgressBroadcaster progressBroadcaster;
-
-    public void setProgressBroadcaster(ProgressBroadcaster broadcaster) {
-        this.progressBroadcaster = broadcaster;
-    }
-
     /**
      * ✅ Move player to next question
      */
@@ -526,7 +529,7 @@ public class GameSession {
     /**
      * ✅ Mark player as finished
      */
-    private synchronized void finishPlayer(int userId) {
+    private void finishPlayer(int userId) {
         if (finishedPlayers.contains(userId)) return;
 
         finishedPlayers.add(userId);
@@ -553,7 +556,7 @@ public class GameSession {
         int activePlayers = getActivePlayers().size();
         if (finishedPlayers.size() >= activePlayers) {
             System.out.println("🏆 [GameSession] All players finished!");
-            endGame("ALL_FINISHED");
+            finishGame("ALL_FINISHED");
         }
     }
 
@@ -561,8 +564,17 @@ public class GameSession {
      * Kết thúc game
      */
     public void endGame(String reason) {
+        mailbox.execute(() -> finishGame(reason));
+    }
+
+    private void finishGame(String reason) {
         if (gameState == GameState.FINISHED) return;
 
+        // Last coalesced update so clients see the final moves before GAME_END
+        if (gameState == GameState.PLAYING && positionBroadcaster != null) {
+            positionBroadcaster.broadcastPositions(roomId);
+        }
+
         gameState = GameState.FINISHED;
 
         // Cancel all timers
@@ -604,6 +616,10 @@ public class GameSession {
      * Player disconnect
      */
     public void playerDisconnected(int userId) {
+        mailbox.execute(() -> onPlayerDisconnected(userId));
+    }
+
+    private void onPlayerDisconnected(int userId) {
         disconnectedPlayers.add(userId);
 
         // Cancel timer
@@ -616,7 +632,7 @@ public class GameSession {
 
         // Check if all players disconnected
         if (disconnectedPlayers.size() == playerStates.size()) {
-            endGame("ALL_DISCONNECTED");
+            finishGame("ALL_DISCONNECTED");
         }
     }
 
@@ -624,13 +640,50 @@ public class GameSession {
      * Cleanup
      */
     public void cleanup() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdownNow();
+        for (ScheduledFuture<?> timer : sessionTimers) {
+            timer.cancel(false);
+        }
+        sessionTimers.clear();
+        for (ScheduledFuture<?> timer : playerQuestionTimers.values()) {
+            timer.cancel(false);
         }
         playerQuestionTimers.clear();
         System.out.println("🧹 [GameSession] Cleaned up");
     }
 
+    /**
+     * Có thay đổi cần gửi: hẹn một lần flush, sớm nhất game.update.flush.ms sau
+     * lần flush trước. Nhiều thay đổi trong khoảng đó gộp vào cùng một frame.
+     */
+    private void markDirty() {
+        if (gameState != GameState.PLAYING || flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long delay = Math.max(0, lastFlushAt + updateFlushMs - System.currentTimeMillis());
+        schedule(this::flushUpdates, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushUpdates() {
+        flushScheduled = false;
+        lastFlushAt = System.currentTimeMillis();
+        if (gameState == GameState.PLAYING && positionBroadcaster != null) {
+            positionBroadcaster.broadcastPositions(roomId);
+        }
+    }
+
+    /**
+     * One-shot session timer on the shared TimerService, delivered to the mailbox
+     */
+    private void schedule(Runnable task, long delay, TimeUnit unit) {
+        track(scheduler.schedule(() -> mailbox.execute(task), delay, unit));
+    }
+
+    private void track(ScheduledFuture<?> timer) {
+        sessionTimers.removeIf(ScheduledFuture::isDone);
+        sessionTimers.add(timer);
+    }
+
     // ==================== CALLBACK INTERFACES ====================
 
     @FunctionalInterface
@@ -729,6 +782,24 @@ public class GameSession {
     }
 
 
+    /**
+     * GAME_UPDATE cho tick này: keyframe hoặc delta so với lần gửi trước,
+     * null nếu không có gì thay đổi. Clears the one-shot gotNitro / answered flags.
+     * Only called from the session's own flush (on the actor).
+     */
+    public Map<String, Object> nextPositionUpdate() {
+        for (PlayerGameState state : playerStates.values()) {
+            positionSnapshot.capture(state, playerQuestionIndex.getOrDefault(state.userId, 0));
+        }
+        Map<String, Object> update = positionSnapshot.nextUpdate(roomId);
+
+        for (PlayerGameState state : playerStates.values()) {
+            state.gotNitro = false;
+            state.answered = false;
+        }
+        return update;
+    }
+
     public int getQuestionIndexForPlayer(int userId) {
         return playerQuestionIndex.getOrDefault(userId, 0);
     }
@@ -766,6 +837,7 @@ public class GameSession {
         public boolean lastAnswerCorrect;
         public long lastAnswerTime;
         public boolean gotNitro;
+        public boolean answered; // Answered since the last GAME_UPDATE
         public int finalRank;
 
         public int totalCorrectAnswers = 0;
@@ -0,0 +1,211 @@
+package com.edugame.server.model;
+
+import com.edugame.common.Protocol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PositionSnapshot - Trạng thái vị trí của một trận, lưu dạng mảng nguyên thủy
+ *
+ * Mỗi lần broadcast, trạng thái người chơi được chép vào các mảng "current"
+ * và so với lần gửi trước ("sent"):
+ *  - không có gì đổi → không gửi gì
+ *  - có thay đổi → delta: chỉ người chơi / field đã đổi, kèm baseVersion
+ *  - tối đa mỗi game.update.keyframe.ms → keyframe đầy đủ để client bị
+ *    rớt frame tự đồng bộ lại
+ *
+ * gotNitro và answered là sự kiện, không phải trạng thái: chỉ gửi khi true.
+ * answered thay cho PLAYER_ANSWERED, currentQuestion thay cho PLAYER_PROGRESS.
+ * Not thread-safe - confined to the GameSession mailbox thread.
+ */
+final class PositionSnapshot {
+
+    private final long keyframeMs;
+
+    private final int[] userIds;
+    private final Map<Integer, Integer> slotByUser;
+
+    // Captured this tick
+    private final double[] position;
+    private final int[] score;
+    private final int[] correctStreak;
+    private final int[] wrongStreak;
+    private final int[] currentQuestion;
+    private final boolean[] lastAnswerCorrect;
+    private final long[] lastAnswerTime;
+    private final boolean[] gotNitro;
+    private final boolean[] answered;
+
+    // Last values sent
+    private final double[] sentPosition;
+    private final int[] sentScore;
+    private final int[] sentCorrectStreak;
+    private final int[] sentWrongStreak;
+    private final int[] sentCurrentQuestion;
+    private final boolean[] sentLastAnswerCorrect;
+    private final long[] sentLastAnswerTime;
+
+    private long version = 0;           // 0 = nothing sent yet
+    private long keyframeVersion = -1;
+    private long keyframeAt = 0;
+
+    PositionSnapshot(List<Integer> playerIds, long keyframeMs) {
+        int n = playerIds.size();
+        this.keyframeMs = keyframeMs;
+        this.userIds = new int[n];
+        this.slotByUser = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            userIds[i] = playerIds.get(i);
+            slotByUser.put(userIds[i], i);
+        }
+
+        position = new double[n];
+        score = new int[n];
+        correctStreak = new int[n];
+        wrongStreak = new int[n];
+        currentQuestion = new int[n];
+        lastAnswerCorrect = new boolean[n];
+        lastAnswerTime = new long[n];
+        gotNitro = new boolean[n];
+        answered = new boolean[n];
+
+        sentPosition = new double[n];
+        sentScore = new int[n];
+        sentCorrectStreak = new int[n];
+        sentWrongStreak = new int[n];
+        sentCurrentQuestion = new int[n];
+        sentLastAnswerCorrect = new boolean[n];
+        sentLastAnswerTime = new long[n];
+    }
+
+    /**
+     * Copy one player's live state into the current arrays
+     */
+    void capture(GameSession.PlayerGameState state, int questionIndex) {
+        Integer slot = slotByUser.get(state.userId);
+        if (slot == null) {
+            return;
+        }
+        int i = slot;
+        position[i] = state.position;
+        score[i] = state.score;
+        correctStreak[i] = state.correctStreak;
+        wrongStreak[i] = state.wrongStreak;
+        currentQuestion[i] = questionIndex + 1;
+        lastAnswerCorrect[i] = state.lastAnswerCorrect;
+        lastAnswerTime[i] = state.lastAnswerTime;
+        gotNitro[i] = state.gotNitro;
+        answered[i] = state.answered;
+    }
+
+    /**
+     * Build the GAME_UPDATE for what was captured
+     * @return null if nothing changed since the last update
+     */
+    Map<String, Object> nextUpdate(String roomId) {
+        boolean changed = version == 0;
+        for (int i = 0; i < userIds.length && !changed; i++) {
+            changed = isChanged(i);
+        }
+
+        long baseVersion = version;
+        if (changed) {
+            version++;
+        }
+        long now = System.currentTimeMillis();
+
+        boolean keyframe = keyframeVersion < 0 ||
+                (now - keyframeAt >= keyframeMs && version != keyframeVersion);
+        if (!keyframe && !changed) {
+            return null;
+        }
+
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("type", Protocol.GAME_UPDATE);
+        update.put("roomId", roomId);
+        update.put("timestamp", now);
+        update.put("version", version);
+
+        List<Map<String, Object>> positions = new ArrayList<>(userIds.length);
+        if (keyframe) {
+            update.put("keyframe", true);
+            for (int i = 0; i < userIds.length; i++) {
+                positions.add(fullRecord(i));
+            }
+            keyframeVersion = version;
+            keyframeAt = now;
+        } else {
+            update.put("baseVersion", baseVersion);
+            for (int i = 0; i < userIds.length; i++) {
+                if (isChanged(i)) {
+                    positions.add(deltaRecord(i));
+                }
+            }
+        }
+        update.put("positions", positions);
+
+        markSent();
+        return update;
+    }
+
+    private boolean isChanged(int i) {
+        return gotNitro[i] || answered[i]
+                || Double.compare(position[i], sentPosition[i]) != 0
+                || score[i] != sentScore[i]
+                || correctStreak[i] != sentCorrectStreak[i]
+                || wrongStreak[i] != sentWrongStreak[i]
+                || currentQuestion[i] != sentCurrentQuestion[i]
+                || lastAnswerCorrect[i] != sentLastAnswerCorrect[i]
+                || lastAnswerTime[i] != sentLastAnswerTime[i];
+    }
+
+    private Map<String, Object> fullRecord(int i) {
+        Map<String, Object> pos = new LinkedHashMap<>();
+        pos.put("userId", userIds[i]);
+        pos.put("position", position[i]);
+        pos.put("score", score[i]);
+        pos.put("correctStreak", correctStreak[i]);
+        pos.put("wrongStreak", wrongStreak[i]);
+        pos.put("gotNitro", gotNitro[i]);
+        pos.put("currentQuestion", currentQuestion[i]);
+        pos.put("totalQuestions", Protocol.QUESTIONS_PER_GAME);
+        pos.put("lastAnswerCorrect", lastAnswerCorrect[i]);
+        pos.put("lastAnswerTime", lastAnswerTime[i]);
+        if (answered[i]) pos.put("answered", true);
+        return pos;
+    }
+
+    private Map<String, Object> deltaRecord(int i) {
+        Map<String, Object> pos = new LinkedHashMap<>();
+        pos.put("userId", userIds[i]);
+        if (Double.compare(position[i], sentPosition[i]) != 0) pos.put("position", position[i]);
+        if (score[i] != sentScore[i]) pos.put("score", score[i]);
+        if (correctStreak[i] != sentCorrectStreak[i]) pos.put("correctStreak", correctStreak[i]);
+        if (wrongStreak[i] != sentWrongStreak[i]) pos.put("wrongStreak", wrongStreak[i]);
+        if (gotNitro[i]) pos.put("gotNitro", true);
+        if (answered[i]) {
+            // The client shows the answer effect from these, send them even if unchanged
+            pos.put("answered", true);
+            pos.put("lastAnswerCorrect", lastAnswerCorrect[i]);
+            pos.put("lastAnswerTime", lastAnswerTime[i]);
+        }
+        if (currentQuestion[i] != sentCurrentQuestion[i]) pos.put("currentQuestion", currentQuestion[i]);
+        if (lastAnswerCorrect[i] != sentLastAnswerCorrect[i]) pos.put("lastAnswerCorrect", lastAnswerCorrect[i]);
+        if (lastAnswerTime[i] != sentLastAnswerTime[i]) pos.put("lastAnswerTime", lastAnswerTime[i]);
+        return pos;
+    }
+
+    private void markSent() {
+        int n = userIds.length;
+        System.arraycopy(position, 0, sentPosition, 0, n);
+        System.arraycopy(score, 0, sentScore, 0, n);
+        System.arraycopy(correctStreak, 0, sentCorrectStreak, 0, n);
+        System.arraycopy(wrongStreak, 0, sentWrongStreak, 0, n);
+        System.arraycopy(currentQuestion, 0, sentCurrentQuestion, 0, n);
+        System.arraycopy(lastAnswerCorrect, 0, sentLastAnswerCorrect, 0, n);
+        System.arraycopy(lastAnswerTime, 0, sentLastAnswerTime, 0, n);
+    }
+}
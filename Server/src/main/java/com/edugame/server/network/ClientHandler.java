@@ -1,12 +1,16 @@
 package com.edugame.server.network;
 
 import com.edugame.common.Protocol;
+import com.edugame.common.wire.BinaryCodec;
+import com.edugame.common.wire.FrameReader;
+import com.edugame.server.config.ConfigManager;
 import com.edugame.server.database.*;
 
 import com.edugame.server.game.GameManager;
 import com.edugame.server.game.GameRoomManager;
 import com.edugame.server.game.MatchmakingManager;
 import com.edugame.server.model.*;
+import com.edugame.server.util.TimerService;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -16,35 +20,45 @@ import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.poi.poifs.crypt.CryptoFunctions.hashPassword;
 
 public class ClientHandler implements Runnable {
     private Socket clientSocket;
-    private BufferedReader reader;
-    private PrintWriter writer;
+    private NioConnection nioConnection; // Only set in NIO transport mode
+    private FrameReader reader;
+    private OutboundQueue outbound; // All sends go through here - callers never block on the socket
+    private volatile boolean binaryWire = false; // Negotiated at LOGIN - hot messages go as binary frames
     private Gson gson;
     private UserDAO userDAO;
     private LeaderboardDAO leaderboardDAO;
     private ServerMessageDAO serverMessageDAO;
     private GameSessionDAO gameSessionDAO;
     private MessageDAO messageDAO;
-    private User currentUser;
-    private String sessionToken;
-    private long lastActivityTime;
+    private FriendDAO friendDAO;
+    private volatile User currentUser; // Also read by DB-lane handlers
+    private volatile String sessionToken;
+    private volatile long lastActivityTime;
     private static final long SESSION_TIMEOUT = 5 * 60 * 1000; // 5 minutes
     private static final long HEARTBEAT_INTERVAL = 30000;
-    private boolean running;
+    private volatile boolean running;
     private GameServer server;
     private MatchmakingManager matchmakingManager;
     private QuestionDAO questionDAO;
     private static final GameRoomManager gameRoomManager = GameRoomManager.getInstance();
+    private static final MessageDispatcher DISPATCHER = createDispatcher();
+    private final Executor dbLane = DISPATCHER.newDbLane(); // DB-lane requests of this connection, in order
     private GameManager gameManager = GameManager.getInstance();
     private VoiceChatServer voiceChatServer;
 
     // Heartbeat fields
-    private long lastHeartbeatTime;
+    private volatile long lastHeartbeatTime;
     private static final long HEARTBEAT_TIMEOUT = 60000;
+    private volatile ScheduledFuture<?> heartbeatTimer; // Armed while logged in
 
 
     // 🔹 DateTimeFormatter cho log
@@ -52,23 +66,9 @@ public class ClientHandler implements Runnable {
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
 
     public ClientHandler(Socket socket, GameServer server, MatchmakingManager matchmakingManager) throws SQLException {
+        this(server, matchmakingManager);
         this.clientSocket = socket;
-        this.server = server;
-        this.gson = new Gson();
-        this.userDAO = new UserDAO();
-        this.leaderboardDAO = new LeaderboardDAO();
-        this.messageDAO = new MessageDAO();
-        this.running = true;
-        this.questionDAO = new QuestionDAO();
-        this.voiceChatServer = GameServer.getVoiceChatServer();
-        this.matchmakingManager = matchmakingManager;
-        this.serverMessageDAO = new ServerMessageDAO();
-
-
-        this.sessionToken = null;
-        this.lastActivityTime = System.currentTimeMillis();
 
-        this.lastHeartbeatTime = System.currentTimeMillis();
         try {
             socket.setKeepAlive(true);
             socket.setSoTimeout(0); // 30 seconds read timeout
@@ -84,8 +84,22 @@ public class ClientHandler implements Runnable {
         }
 
         try {
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
+            reader = new FrameReader(socket.getInputStream(), ConfigManager.getNioMaxFrameBytes());
+            BufferedOutputStream socketOut = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+            outbound = new OutboundQueue(String.valueOf(socket.getRemoteSocketAddress()), new OutboundQueue.Sink() {
+                @Override
+                public void write(List<byte[]> frames) throws IOException {
+                    for (byte[] frame : frames) {
+                        socketOut.write(frame);
+                    }
+                    socketOut.flush();
+                }
+
+                @Override
+                public boolean isWritable() {
+                    return true; // Blocking stream - drain thread waits for the peer instead
+                }
+            }, this::forceStop);
 
             logWithTime("✓ New client connected: " + socket.getInetAddress());
 
@@ -94,6 +108,50 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * NIO mode: no reader thread, frames arrive through handleFrame()
+     * and responses are queued on the connection.
+     */
+    ClientHandler(NioConnection connection, GameServer server, MatchmakingManager matchmakingManager) throws SQLException {
+        this(server, matchmakingManager);
+        this.nioConnection = connection;
+        this.outbound = new OutboundQueue(String.valueOf(connection.getRemoteAddress()), new OutboundQueue.Sink() {
+            @Override
+            public void write(List<byte[]> frames) throws IOException {
+                connection.send(frames.size() == 1 ? frames.get(0) : concat(frames));
+            }
+
+            @Override
+            public boolean isWritable() {
+                return connection.isWritable();
+            }
+        }, this::forceStop);
+        connection.setWritableListener(outbound::resume);
+
+        logWithTime("✓ New client connected (NIO): " + connection.getRemoteAddress());
+    }
+
+    private ClientHandler(GameServer server, MatchmakingManager matchmakingManager) throws SQLException {
+        this.server = server;
+        this.gson = new Gson();
+        this.userDAO = new UserDAO();
+        this.leaderboardDAO = new LeaderboardDAO();
+        this.messageDAO = new MessageDAO();
+        this.running = true;
+        this.questionDAO = new QuestionDAO();
+        this.voiceChatServer = GameServer.getVoiceChatServer();
+        this.matchmakingManager = matchmakingManager;
+        this.serverMessageDAO = new ServerMessageDAO();
+        this.friendDAO = new FriendDAO();
+        this.gameSessionDAO = new GameSessionDAO();
+
+
+        this.sessionToken = null;
+        this.lastActivityTime = System.currentTimeMillis();
+
+        this.lastHeartbeatTime = System.currentTimeMillis();
+    }
+
     /**
      * Helper method to get GameServer instance
      */
@@ -113,10 +171,10 @@ public class ClientHandler implements Runnable {
         logWithTime("🟢 ClientHandler thread STARTED, ID: " + Thread.currentThread().getId());
 
         try {
-            String message;
+            Object message;
             int messageCount = 0;
 
-            while (running && (message = reader.readLine()) != null) {
+            while (running && (message = reader.read()) != null) {
                 lastActivityTime = System.currentTimeMillis();
                 messageCount++;
 
@@ -125,8 +183,7 @@ public class ClientHandler implements Runnable {
                     break;
                 }
 
-                logWithTime("📨 [Handler-" + Thread.currentThread().getId() + "] Message #" + messageCount);
-                handleMessage(message);
+                handleFrameObject(message);
             }
 
             logWithTime("🔴 ClientHandler loop ENDED after " + messageCount + " messages");
@@ -144,230 +201,165 @@ public class ClientHandler implements Runnable {
         }
     }
 
-    private void handleMessage(String message) {
-        try {
-            logWithTime("🔵 handleMessage() parsing: " + message.substring(0, Math.min(100, message.length())) + "...");
-
-            JsonObject jsonMessage = gson.fromJson(message, JsonObject.class);
-            String type = jsonMessage.get("type").getAsString();
-
-            logWithTime("   📦 Type: " + type + " | User: " + (currentUser != null ? currentUser.getUsername() : "anonymous"));
-
-            if (!type.equals(Protocol.LOGIN) && !type.equals(Protocol.REGISTER)) {
-                if (!isSessionValid()) {
-                    logWithTime("❌ [Handler] Invalid session for type: " + type);
-                    sendError("Phiên làm việc hết hạn. Vui lòng đăng nhập lại!");
-                    return;
-                }
-            }
-
-            switch (type) {
-                case Protocol.LOGIN:
-                    logWithTime("   → Calling handleLogin()");
-                    handleLogin(jsonMessage);
-                    break;
-
-                case Protocol.REGISTER:
-                    logWithTime("   → Calling handleRegister()");
-                    handleRegister(jsonMessage);
-                    break;
-
-                case Protocol.PING:
-                    handlePing(jsonMessage);
-                    break;
-                case Protocol.HEARTBEAT:
-                    handleHeartbeat(jsonMessage);
-                    break;
-
-                case Protocol.GET_LEADERBOARD:
-                    logWithTime("   → Calling handleGetLeaderboard()");
-                    handleGetLeaderboard(jsonMessage);
-                    break;
-
-                case Protocol.FIND_MATCH:
-                    logWithTime("   → Calling handleFindMatch()");
-                    handleFindMatch(jsonMessage);
-                    break;
-
-                case Protocol.MATCH_FOUND:
-                    handleMatchFoundResponse(jsonMessage);
-                    break;
-
-
-                case Protocol.CANCEL_FIND_MATCH:
-                    logWithTime("   → Calling handleCancelFindMatch()");
-                    handleCancelFindMatch(jsonMessage);
-                    break;
-
-                case Protocol.GLOBAL_CHAT:
-                    logWithTime("   → Calling handleGlobalChat()");
-                    handleGlobalChat(jsonMessage);
-                    break;
-                case Protocol.ROOM_CHAT:
-                    logWithTime("   → Calling handleRoomChat()");
-                    handleRoomChat(jsonMessage);
-                    break;
-                case Protocol.VOICE_STATUS_CHANGE:
-                    handleVoiceStatusChange(jsonMessage);
-                    break;
-
-                case Protocol.GET_VOICE_STATUS:
-                    handleGetVoiceStatus(jsonMessage);
-                    break;
-                case Protocol.GAME_CHAT:
-                    logWithTime("   → Calling handleGameChat()");
-                    handleGameChat(jsonMessage);
-                    break;
-
-                case Protocol.GET_MESSAGES:
-                    logWithTime("   → Calling handleGetMessages()");
-                    handleGetMessages(jsonMessage);
-                    break;
-
-                case Protocol.SEND_MESSAGE:
-                    logWithTime("   → Calling handleSendMessage()");
-                    handleSendMessage(jsonMessage);
-                    break;
-
-                case Protocol.MESSAGE_READ:
-                    logWithTime("   → Calling handleMarkAsRead()");
-                    handleMarkAsRead(jsonMessage);
-                    break;
-                case Protocol.GET_SERVER_MESSAGES:
-                    handleGetServerMessages(jsonMessage);
-                    break;
-
-                case Protocol.MARK_SERVER_MESSAGE_READ:
-                    handleMarkServerMessageRead(jsonMessage);
-                    break;
-
-                case Protocol.GET_ONLINE_USERS:
-                    handleGetOnlineUsers(jsonMessage);
-                    break;
-                case Protocol.GET_PROFILE:
-                    logWithTime("   → Calling handleGetProfile()");
-                    handleGetProfile(jsonMessage);
-                    break;
-
-                case "GET_PROFILE_BY_ID":
-                    logWithTime("   → Calling handleGetProfileById()");
-                    handleGetProfileById(jsonMessage);
-                    break;
-
-                case Protocol.UPDATE_PROFILE:
-                    logWithTime("   → Calling handleUpdateProfile()");
-                    handleUpdateProfile(jsonMessage);
-                    break;
-                case Protocol.SEARCH_USERS:
-                    logWithTime("   → Calling handleSearchUsers()");
-                    handleSearchUsers(jsonMessage);
-                    break;
-                case Protocol.CHECK_FRIENDSHIP_STATUS:
-                    logWithTime("   → Calling handleCheckFriendshipStatus()");
-                    handleCheckFriendshipStatus(jsonMessage);
-                    break;
-                case Protocol.ADD_FRIEND:
-                    logWithTime("   → Calling handleAddFriend()");
-                    handleAddFriend(jsonMessage);
-                    break;
-
-                case Protocol.ACCEPT_FRIEND:
-                    logWithTime("   → Calling handleAcceptFriend()");
-                    handleAcceptFriend(jsonMessage);
-                    break;
-
-                case Protocol.REJECT_FRIEND:
-                    logWithTime("   → Calling handleRejectFriend()");
-                    handleRejectFriend(jsonMessage);
-                    break;
-
-                case Protocol.REMOVE_FRIEND:
-                    logWithTime("   → Calling handleRemoveFriend()");
-                    handleRemoveFriend(jsonMessage);
-                    break;
-
-                case Protocol.GET_FRIENDS_LIST:
-                    logWithTime("   → Calling handleGetFriendsList()");
-                    handleGetFriendsList(jsonMessage);
-                    break;
-
-                case Protocol.GET_PENDING_REQUESTS:
-                    logWithTime("   → Calling handleGetPendingRequests()");
-                    handleGetPendingRequests(jsonMessage);
-                    break;
-
-                case Protocol.UPDATE_PASSWORD:
-                    logWithTime("   → Calling handleUpdatePassword()");
-                    handleUpdatePassword(jsonMessage);
-                    break;
-
-                case Protocol.GET_STATISTICS:
-                    logWithTime("   → Calling handleGetStatistics()");
-                    handleGetStatistics(jsonMessage);
-                    break;
-
-                case Protocol.GET_TRAINING_QUESTIONS:
-                    logWithTime("   → Calling handleGetTrainingQuestions()");
-                    handleGetTrainingQuestions(jsonMessage);
-                    break;
-
-                case Protocol.CREATE_ROOM:
-                    logWithTime("   → Calling handleGetTrainingQuestions()");
-                    handleCreateRoom(jsonMessage);
-                    break;
+    /**
+     * NIO mode: one complete frame received (runs on a worker thread)
+     */
+    void handleFrame(Object message) {
+        if (!running) {
+            return;
+        }
+        lastActivityTime = System.currentTimeMillis();
+        handleFrameObject(message);
+    }
 
-                case Protocol.JOIN_ROOM:
-                    logWithTime("   → Calling handleJoinRoom()");
-                    handleJoinRoom(jsonMessage);
-                    break;
+    /**
+     * A frame from FrameReader / NioConnection: JSON line or decoded binary message
+     */
+    private void handleFrameObject(Object frame) {
+        if (frame instanceof String) {
+            handleMessage((String) frame);
+        } else {
+            handleMessage((JsonObject) frame); // BinaryCodec already built the tree
+        }
+    }
 
-                case Protocol.JOIN_ROOM_RESPONSE:
-                    logWithTime("   → Calling handleJoinRoom()");
-                    handleJoinRoom(jsonMessage);
-                    break;
+    /**
+     * NIO mode: peer closed or connection dropped - same cleanup as run()'s finally
+     */
+    void onTransportClosed() {
+        handleLogout();
+        disconnect();
+    }
 
-                case Protocol.LEAVE_ROOM:
-                    logWithTime("   → Calling handleLeaveRoom()");
-                    handleLeaveRoom(jsonMessage);
-                    break;
-                case Protocol.KICK_PLAYER:
-                    logWithTime("   → Calling handleKickPlayer()");
-                    handleKickPlayer(jsonMessage);
-                    break;
+    private void handleMessage(String message) {
+        JsonObject jsonMessage;
+        try {
+            jsonMessage = gson.fromJson(message, JsonObject.class);
+        } catch (Exception e) {
+            logWithTime("❌ Error handling message: " + e.getMessage());
+            sendError("Invalid message format");
+            return;
+        }
+        handleMessage(jsonMessage);
+    }
 
-                case Protocol.READY:
-                    logWithTime("   → Calling handlePlayerReady()");
-                    handlePlayerReady(jsonMessage);
-                    break;
-                case Protocol.START_GAME:
-                    logWithTime("   → Calling handlePlayerReady()");
-                    handleStartGame(jsonMessage);
-                    break;
+    private void handleMessage(JsonObject jsonMessage) {
+        String type;
+        try {
+            type = jsonMessage.get("type").getAsString();
+        } catch (Exception e) {
+            logWithTime("❌ Message without type: " + e.getMessage());
+            sendError("Invalid message format");
+            return;
+        }
 
-                case Protocol.SUBMIT_ANSWER:
-                    logWithTime("   → Calling handleSubmitAnswer()");
-                    handleSubmitAnswer(jsonMessage);
-                    break;
+        MessageDispatcher.Route route = DISPATCHER.route(type);
+        if (route == null) {
+            logWithTime("   ❓ Unknown type: " + type);
+            sendError("Unknown message type: " + type);
+            return;
+        }
 
-                case Protocol.LOGOUT:
-                    logWithTime("   → Calling handleLogout()");
-                    handleLogout();
-                    break;
+        if (route.requiresAuth() && !isSessionValid()) {
+            logWithTime("❌ [Handler] Invalid session for type: " + type);
+            sendError("Phiên làm việc hết hạn. Vui lòng đăng nhập lại!");
+            return;
+        }
 
-                default:
-                    logWithTime("   ❓ Unknown type: " + type);
-                    sendError("Unknown message type: " + type);
+        if (route.getLane() == MessageDispatcher.Lane.DB) {
+            try {
+                dbLane.execute(() -> invoke(route, jsonMessage));
+            } catch (RejectedExecutionException e) {
+                logWithTime("⚠️ [Handler] " + type + " refused: " + e.getMessage());
+                sendError("Máy chủ đang bận, vui lòng thử lại sau!");
             }
+        } else {
+            invoke(route, jsonMessage);
+        }
+    }
 
-            logWithTime("   ✅ handleMessage() completed for type: " + type);
-
+    private void invoke(MessageDispatcher.Route route, JsonObject jsonMessage) {
+        try {
+            route.invoke(this, jsonMessage);
         } catch (Exception e) {
-            logWithTime("❌ Error handling message: " + e.getMessage());
+            logWithTime("❌ Error handling " + route.getType() + ": " + e.getMessage());
             e.printStackTrace();
             sendError("Invalid message format");
         }
     }
 
+    /**
+     * Dispatch table: message type → handler.
+     * DB lane = read/write through DAOs without touching game or session state,
+     * everything else stays on the connection thread in arrival order.
+     */
+    private static MessageDispatcher createDispatcher() {
+        MessageDispatcher.Lane inline = MessageDispatcher.Lane.INLINE;
+        MessageDispatcher.Lane db = MessageDispatcher.Lane.DB;
+
+        return new MessageDispatcher()
+                // Session
+                .register(Protocol.LOGIN, false, inline, ClientHandler::handleLogin)
+                .register(Protocol.REGISTER, false, inline, ClientHandler::handleRegister)
+                .register(Protocol.LOGOUT, true, inline, (client, message) -> client.handleLogout())
+                .register(Protocol.PING, true, inline, ClientHandler::handlePing)
+                .register(Protocol.HEARTBEAT, true, inline, ClientHandler::handleHeartbeat)
+
+                // Matchmaking / rooms / game
+                .register(Protocol.FIND_MATCH, true, inline, ClientHandler::handleFindMatch)
+                .register(Protocol.MATCH_FOUND, true, inline, ClientHandler::handleMatchFoundResponse)
+                .register(Protocol.CANCEL_FIND_MATCH, true, inline, ClientHandler::handleCancelFindMatch)
+                .register(Protocol.CREATE_ROOM, true, inline, ClientHandler::handleCreateRoom)
+                .register(Protocol.JOIN_ROOM, true, inline, ClientHandler::handleJoinRoom)
+                .register(Protocol.JOIN_ROOM_RESPONSE, true, inline, ClientHandler::handleJoinRoom)
+                .register(Protocol.LEAVE_ROOM, true, inline, ClientHandler::handleLeaveRoom)
+                .register(Protocol.KICK_PLAYER, true, inline, ClientHandler::handleKickPlayer)
+                .register(Protocol.READY, true, inline, ClientHandler::handlePlayerReady)
+                .register(Protocol.START_GAME, true, inline, ClientHandler::handleStartGame)
+                .register(Protocol.SUBMIT_ANSWER, true, inline, ClientHandler::handleSubmitAnswer)
+
+                // Chat / voice / presence
+                .register(Protocol.GLOBAL_CHAT, true, inline, ClientHandler::handleGlobalChat)
+                .register(Protocol.ROOM_CHAT, true, inline, ClientHandler::handleRoomChat)
+                .register(Protocol.GAME_CHAT, true, inline, ClientHandler::handleGameChat)
+                .register(Protocol.VOICE_STATUS_CHANGE, true, inline, ClientHandler::handleVoiceStatusChange)
+                .register(Protocol.GET_VOICE_STATUS, true, inline, ClientHandler::handleGetVoiceStatus)
+                .register(Protocol.GET_ONLINE_USERS, true, inline, ClientHandler::handleGetOnlineUsers)
+
+                // DB-backed requests
+                .register(Protocol.GET_LEADERBOARD, true, db, ClientHandler::handleGetLeaderboard)
+                .register(Protocol.GET_MESSAGES, true, db, ClientHandler::handleGetMessages)
+                .register(Protocol.SEND_MESSAGE, true, db, ClientHandler::handleSendMessage)
+                .register(Protocol.MESSAGE_READ, true, db, ClientHandler::handleMarkAsRead)
+                .register(Protocol.GET_SERVER_MESSAGES, true, db, ClientHandler::handleGetServerMessages)
+                .register(Protocol.MARK_SERVER_MESSAGE_READ, true, db, ClientHandler::handleMarkServerMessageRead)
+                .register(Protocol.GET_PROFILE, true, db, ClientHandler::handleGetProfile)
+                .register("GET_PROFILE_BY_ID", true, db, ClientHandler::handleGetProfileById)
+                .register(Protocol.UPDATE_PROFILE, true, db, ClientHandler::handleUpdateProfile)
+                .register(Protocol.UPDATE_PASSWORD, true, db, ClientHandler::handleUpdatePassword)
+                .register(Protocol.SEARCH_USERS, true, db, ClientHandler::handleSearchUsers)
+                .register(Protocol.CHECK_FRIENDSHIP_STATUS, true, db, ClientHandler::handleCheckFriendshipStatus)
+                .register(Protocol.ADD_FRIEND, true, db, ClientHandler::handleAddFriend)
+                .register(Protocol.ACCEPT_FRIEND, true, db, ClientHandler::handleAcceptFriend)
+                .register(Protocol.REJECT_FRIEND, true, db, ClientHandler::handleRejectFriend)
+                .register(Protocol.REMOVE_FRIEND, true, db, ClientHandler::handleRemoveFriend)
+                .register(Protocol.GET_FRIENDS_LIST, true, db, ClientHandler::handleGetFriendsList)
+                .register(Protocol.GET_PENDING_REQUESTS, true, db, ClientHandler::handleGetPendingRequests)
+                .register(Protocol.GET_STATISTICS, true, db, ClientHandler::handleGetStatistics)
+                .register(Protocol.GET_TRAINING_QUESTIONS, true, db, ClientHandler::handleGetTrainingQuestions);
+    }
+
+    /**
+     * Per-type call counts and latency histograms (for the server console)
+     */
+    static List<String> getDispatchStats() {
+        return DISPATCHER.getStats();
+    }
+
+    static String getDispatchLaneSummary() {
+        return DISPATCHER.getLaneSummary();
+    }
+
     /**
      * Handler: GET_SERVER_MESSAGES - Lấy tin nhắn từ server
      */
@@ -472,7 +464,7 @@ public class ClientHandler implements Runnable {
             }
 
             // Get all connected users from server
-            List<ClientHandler> clients = server.getConnectedClients();
+            ClientHandler[] clients = server.getLoggedInClients();
 
             List<Map<String, Object>> onlineUsers = new ArrayList<>();
 
@@ -530,6 +522,37 @@ public class ClientHandler implements Runnable {
             logWithTime("❌ [HEARTBEAT] Error: " + e.getMessage());
         }
     }
+    /**
+     * Heartbeat timeout on the shared TimerService. Heartbeats only bump
+     * lastHeartbeatTime; when the timer fires it re-arms itself for the
+     * remaining time, or drops the client if none arrived in time.
+     */
+    private void armHeartbeatCheck(long delayMs) {
+        heartbeatTimer = TimerService.getInstance().schedule(this::checkHeartbeat, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHeartbeat() {
+        if (!running || currentUser == null) {
+            return;
+        }
+        long silentFor = System.currentTimeMillis() - lastHeartbeatTime;
+        if (silentFor < HEARTBEAT_TIMEOUT) {
+            armHeartbeatCheck(HEARTBEAT_TIMEOUT - silentFor);
+            return;
+        }
+        logWithTime("⚠️ Dead client detected (no heartbeat for " + silentFor + "ms): " +
+                (currentUser != null ? currentUser.getUsername() : "unknown"));
+        forceStop();
+    }
+
+    private void cancelHeartbeatCheck() {
+        ScheduledFuture<?> timer = heartbeatTimer;
+        if (timer != null) {
+            timer.cancel(false);
+            heartbeatTimer = null;
+        }
+    }
+
     /**
      * Check if client is still alive (optional - for server-side monitoring)
      */
@@ -656,7 +679,6 @@ public class ClientHandler implements Runnable {
         logWithTime("   👤 Current user: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
         logWithTime("   🎯 Target user ID: " + targetUserId);
 
-        FriendDAO friendDAO = new FriendDAO();
         String status = friendDAO.getFriendshipStatus(currentUserId, targetUserId);
 
         logWithTime("   ✅ Friendship status: " + status);
@@ -697,7 +719,6 @@ public class ClientHandler implements Runnable {
             return;
         }
 
-        FriendDAO friendDAO = new FriendDAO();
         java.util.List<User> users = friendDAO.searchUsers(searchQuery, currentUser.getUserId(), limit);
 
         logWithTime("   ✅ Found " + users.size() + " users");
@@ -767,7 +788,6 @@ public class ClientHandler implements Runnable {
             return;
         }
 
-        FriendDAO friendDAO = new FriendDAO();
 
         // Kiểm tra đã là bạn chưa
         if (friendDAO.isFriend(currentUserId, targetUserId)) {
@@ -827,7 +847,6 @@ public class ClientHandler implements Runnable {
         logWithTime("   👤 User: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
         logWithTime("   👤 Accepting request from: User ID " + friendId);
 
-        FriendDAO friendDAO = new FriendDAO();
         boolean success = friendDAO.acceptFriendRequest(currentUserId, friendId);
 
         Map<String, Object> response = new HashMap<>();
@@ -863,7 +882,6 @@ public class ClientHandler implements Runnable {
         logWithTime("   👤 User: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
         logWithTime("   👤 Rejecting request from: User ID " + friendId);
 
-        FriendDAO friendDAO = new FriendDAO();
         boolean success = friendDAO.rejectFriendRequest(currentUserId, friendId);
 
         Map<String, Object> response = new HashMap<>();
@@ -899,7 +917,6 @@ public class ClientHandler implements Runnable {
         logWithTime("   👤 User: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
         logWithTime("   👤 Removing friend: User ID " + friendId);
 
-        FriendDAO friendDAO = new FriendDAO();
         boolean success = friendDAO.removeFriend(currentUserId, friendId);
 
         Map<String, Object> response = new HashMap<>();
@@ -932,7 +949,6 @@ public class ClientHandler implements Runnable {
         int currentUserId = currentUser.getUserId();
         logWithTime("   👤 User: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
 
-        FriendDAO friendDAO = new FriendDAO();
         List<Friend> friends = friendDAO.getFriendsList(currentUserId);
 
         logWithTime("   ✅ Found " + friends.size() + " friends");
@@ -979,7 +995,6 @@ public class ClientHandler implements Runnable {
         int currentUserId = currentUser.getUserId();
         logWithTime("   👤 User: " + currentUser.getUsername() + " (ID: " + currentUserId + ")");
 
-        FriendDAO friendDAO = new FriendDAO();
         List<Friend> requests = friendDAO.getPendingRequests(currentUserId);
 
         logWithTime("   ✅ Found " + requests.size() + " pending requests");
@@ -1113,8 +1128,11 @@ public class ClientHandler implements Runnable {
 
         if (user != null) {
             currentUser = user;
+            server.onUserLoggedIn(this, user);
             sessionToken = generateSessionToken();
             lastActivityTime = System.currentTimeMillis();
+            lastHeartbeatTime = lastActivityTime;
+            armHeartbeatCheck(HEARTBEAT_TIMEOUT);
 
             logWithTime("   ✅ Login successful");
             logWithTime("      User: " + user.getUsername() + " | Name: " + user.getFullName());
@@ -1138,8 +1156,21 @@ public class ClientHandler implements Runnable {
             response.put("wins", user.getWins());
             response.put("message", "Đăng nhập thành công!");
 
+            boolean wantsBinary = jsonMessage.has(Protocol.KEY_WIRE) &&
+                    Protocol.WIRE_BINARY.equals(jsonMessage.get(Protocol.KEY_WIRE).getAsString());
+            boolean useBinary = wantsBinary && ConfigManager.isBinaryWireEnabled();
+            if (useBinary) {
+                response.put(Protocol.KEY_WIRE, Protocol.WIRE_BINARY);
+            }
+
             sendMessage(response);
 
+            // Everything queued after the (JSON) LOGIN response may be binary
+            binaryWire = useBinary;
+            if (useBinary) {
+                logWithTime("      Wire: binary");
+            }
+
         } else {
             logWithTime("   ❌ Login failed: Invalid credentials");
 
@@ -1221,15 +1252,23 @@ public class ClientHandler implements Runnable {
                 }
 
                 userDAO.updateOnlineStatus(currentUser.getUserId(), false);
+                server.onUserLoggedOut(this, currentUser);
                 currentUser = null;
             }
 
             running = false;
+            cancelHeartbeatCheck();
 
+            if (outbound != null) {
+                outbound.close(true); // Let the LOGOUT response go out first
+            }
             if (clientSocket != null && !clientSocket.isClosed()) {
                 clientSocket.close();
                 logWithTime("   🔒 Socket closed");
             }
+            if (nioConnection != null) {
+                nioConnection.close();
+            }
 
         } catch (Exception e) {
             logWithTime("   ❌ Error during logout: " + e.getMessage());
@@ -1472,10 +1511,9 @@ public class ClientHandler implements Runnable {
      */
     private void sendResponse(JsonObject response) {
         try {
-            if (writer != null && !writer.checkError()) {
+            if (outbound != null && !outbound.isClosed()) {
                 String json = gson.toJson(response);
-                writer.println(json);
-                writer.flush();
+                outbound.offer(EncodedMessage.toFrame(json), false);
             }
         } catch (Exception e) {
             logWithTime("❌ sendResponse error: " + e.getMessage());
@@ -1513,15 +1551,13 @@ public class ClientHandler implements Runnable {
 
     public void sendMessage(Map<String, Object> data) {
         try {
-            if (writer != null && !writer.checkError()) {
-                String json = gson.toJson(data);
-                writer.println(json);
-                writer.flush();
-
-                if (!writer.checkError()) {
-                    logWithTime("   📤 Response sent: type=" + data.get("type") + ", size=" + json.length() + " bytes");
-                } else {
-                    logWithTime("   ❌ Writer error after flush");
+            if (outbound != null && !outbound.isClosed()) {
+                byte[] frame = binaryWire ? BinaryCodec.encode(data) : null;
+                if (frame == null) {
+                    frame = EncodedMessage.toFrame(gson.toJson(data));
+                }
+                if (!outbound.offer(frame, EncodedMessage.isSupersedable(data))) {
+                    logWithTime("   ⚠️ Response dropped: type=" + data.get("type"));
                 }
 
             } else {
@@ -1533,6 +1569,39 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Send a message that was already serialized for broadcast.
+     * Same bytes as sendMessage() would produce, without a gson.toJson per recipient.
+     */
+    public void sendEncoded(EncodedMessage message) {
+        try {
+            if (outbound != null && !outbound.isClosed()) {
+                byte[] frame = message.getFrame(binaryWire);
+                if (!outbound.offer(frame, message.isSupersedable())) {
+                    logWithTime("   ⚠️ Response dropped: type=" + message.getType());
+                }
+            } else {
+                logWithTime("   ❌ Writer unavailable");
+            }
+        } catch (Exception e) {
+            logWithTime("   ❌ sendEncoded error: " + e.getMessage());
+        }
+    }
+
+    private static byte[] concat(List<byte[]> frames) {
+        int total = 0;
+        for (byte[] frame : frames) {
+            total += frame.length;
+        }
+        byte[] joined = new byte[total];
+        int offset = 0;
+        for (byte[] frame : frames) {
+            System.arraycopy(frame, 0, joined, offset, frame.length);
+            offset += frame.length;
+        }
+        return joined;
+    }
+
     private void sendError(String errorMessage) {
         Map<String, Object> response = new HashMap<>();
         response.put("type", Protocol.ERROR);
@@ -1720,6 +1789,7 @@ public class ClientHandler implements Runnable {
 
             // 1. Set running flag to false to stop the main loop
             running = false;
+            cancelHeartbeatCheck();
 
             // 2. Clean up user session
             if (currentUser != null) {
@@ -1745,6 +1815,9 @@ public class ClientHandler implements Runnable {
                     }
                 }
 
+                if (server != null) {
+                    server.onUserLoggedOut(this, currentUser);
+                }
                 currentUser = null;
             }
 
@@ -1758,13 +1831,9 @@ public class ClientHandler implements Runnable {
                 logWithTime("   ⚠️ Error closing reader: " + e.getMessage());
             }
 
-            try {
-                if (writer != null) {
-                    writer.close();
-                    logWithTime("   ✓ Writer closed");
-                }
-            } catch (Exception e) {
-                logWithTime("   ⚠️ Error closing writer: " + e.getMessage());
+            if (outbound != null) {
+                outbound.close(true);
+                logWithTime("   ✓ Outbound queue closed");
             }
 
             // 4. Close socket
@@ -1776,6 +1845,9 @@ public class ClientHandler implements Runnable {
             } catch (IOException e) {
                 logWithTime("   ⚠️ Error closing socket: " + e.getMessage());
             }
+            if (nioConnection != null) {
+                nioConnection.close();
+            }
 
             // 5. Remove from server's client list
             if (server != null) {
@@ -1798,9 +1870,15 @@ public class ClientHandler implements Runnable {
         running = false;
 
         try {
+            if (outbound != null) {
+                outbound.close(false);
+            }
             if (clientSocket != null && !clientSocket.isClosed()) {
                 clientSocket.close();
             }
+            if (nioConnection != null) {
+                nioConnection.close();
+            }
         } catch (Exception e) {
             // Ignore
         }
@@ -2420,16 +2498,8 @@ public class ClientHandler implements Runnable {
             }
 
             // ✅ Find target ClientHandler
-            ClientHandler targetHandler = null;
-            User targetUser = null;
-
-            for (ClientHandler client : room.getPlayers()) {
-                if (client.getCurrentUser().getUserId() == targetUserId) {
-                    targetHandler = client;
-                    targetUser = client.getCurrentUser();
-                    break;
-                }
-            }
+            ClientHandler targetHandler = room.getPlayer(targetUserId);
+            User targetUser = targetHandler != null ? targetHandler.getCurrentUser() : null;
 
             if (targetHandler == null || targetUser == null) {
                 logWithTime("❌ [KICK_PLAYER] Target handler not found");
@@ -2502,44 +2572,7 @@ public class ClientHandler implements Runnable {
                 return;
             }
 
-            boolean wasHost = (room.getHost().getUserId() == currentUser.getUserId());
-            int leavingUserId = currentUser.getUserId();
-            String leavingUsername = currentUser.getUsername();
-
-            if (voiceChatServer != null) {
-                voiceChatServer.removeClient(leavingUserId, roomId);
-                logWithTime("   🔇 Voice chat cleaned up");
-
-                // Broadcast voice status change to remaining players
-                JsonObject voiceUpdate = new JsonObject();
-                voiceUpdate.addProperty("type", Protocol.VOICE_STATUS_UPDATE);
-                voiceUpdate.addProperty("roomId", roomId);
-                voiceUpdate.addProperty("userId", leavingUserId);
-                voiceUpdate.addProperty("isActive", false);
-                voiceUpdate.addProperty("timestamp", System.currentTimeMillis());
-
-                for (ClientHandler player : room.getPlayers()) {
-                    if (player != this) {
-                        try {
-                            player.sendResponse(voiceUpdate);
-                        } catch (Exception e) {
-                            // Ignore
-                        }
-                    }
-                }
-            }
-            logWithTime("   User leaving: " + leavingUsername + " (wasHost=" + wasHost + ")");
-
-            // ✅ Get remaining players BEFORE removing
-            List<ClientHandler> remainingPlayers = new ArrayList<>(room.getPlayers());
-            remainingPlayers.remove(this);
-
-            logWithTime("   Remaining players: " + remainingPlayers.size());
-
-            // ✅ Remove player from room (this will auto-assign new host if needed)
-            boolean success = gameRoomManager.leaveRoom(this, roomId);
-
-            if (!success) {
+            if (!leaveRoomAndNotify(room)) {
                 logWithTime("❌ [LEAVE_ROOM] Failed to leave room");
                 sendError("Không thể rời phòng!");
                 return;
@@ -2552,50 +2585,114 @@ public class ClientHandler implements Runnable {
             response.put("message", "Đã rời phòng");
             sendMessage(response);
 
-            logWithTime("   ✅ Player removed from room");
-
-            // ✅ Broadcast PLAYER_LEFT to remaining players
-            if (!remainingPlayers.isEmpty()) {
-                Map<String, Object> leftNotification = new HashMap<>();
-                leftNotification.put("type", Protocol.PLAYER_LEFT);
-                leftNotification.put("userId", leavingUserId);
-                leftNotification.put("username", leavingUsername);
-
-                // ✅ If host left, get NEW host from room (already assigned by GameRoom)
-                if (wasHost) {
-                    // ✅ Get the NEW host that was auto-assigned
-                    User newHostUser = room.getHost();
-
-                    leftNotification.put("isNewHost", true);
-                    leftNotification.put("newHostId", newHostUser.getUserId());
-
-                    logWithTime("   👑 New host assigned: " + newHostUser.getUsername() +
-                            " (userId=" + newHostUser.getUserId() + ")");
+            logWithTime("✅ [LEAVE_ROOM] ========== END ==========");
 
-                    // ✅ IMPORTANT: Clear ready status của new host
-                    room.setPlayerReady(newHostUser.getUserId(), false);
+        } catch (Exception e) {
+            logWithTime("❌ [LEAVE_ROOM] Exception: " + e.getMessage());
+            e.printStackTrace();
+            sendError("Lỗi khi rời phòng!");
+        }
+    }
 
-                } else {
-                    leftNotification.put("isNewHost", false);
-                }
+    /**
+     * Rời phòng và báo PLAYER_LEFT (kèm host mới nếu có) cho những người còn lại.
+     * Dùng cho LEAVE_ROOM và khi logout / mất kết nối.
+     * @return false nếu người này không còn trong phòng
+     */
+    private boolean leaveRoomAndNotify(GameRoomManager.GameRoom room) {
+        String roomId = room.getRoomId();
+        boolean wasHost = (room.getHost().getUserId() == currentUser.getUserId());
+        int leavingUserId = currentUser.getUserId();
+        String leavingUsername = currentUser.getUsername();
+
+        if (voiceChatServer != null) {
+            voiceChatServer.removeClient(leavingUserId, roomId);
+            logWithTime("   🔇 Voice chat cleaned up");
+
+            // Broadcast voice status change to remaining players
+            JsonObject voiceUpdate = new JsonObject();
+            voiceUpdate.addProperty("type", Protocol.VOICE_STATUS_UPDATE);
+            voiceUpdate.addProperty("roomId", roomId);
+            voiceUpdate.addProperty("userId", leavingUserId);
+            voiceUpdate.addProperty("isActive", false);
+            voiceUpdate.addProperty("timestamp", System.currentTimeMillis());
 
-                // Broadcast to all remaining players
-                for (ClientHandler player : remainingPlayers) {
+            for (ClientHandler player : room.getPlayers()) {
+                if (player != this) {
                     try {
-                        player.sendMessage(leftNotification);
-                        logWithTime("   📤 Notified: " + player.getCurrentUser().getUsername());
+                        player.sendResponse(voiceUpdate);
                     } catch (Exception e) {
-                        logWithTime("   ⚠️ Failed to notify: " + e.getMessage());
+                        // Ignore
                     }
                 }
             }
+        }
+        logWithTime("   User leaving: " + leavingUsername + " (wasHost=" + wasHost + ")");
 
-            logWithTime("✅ [LEAVE_ROOM] ========== END ==========");
+        // ✅ Get remaining players BEFORE removing
+        List<ClientHandler> remainingPlayers = new ArrayList<>(room.getPlayers());
+        remainingPlayers.remove(this);
+
+        logWithTime("   Remaining players: " + remainingPlayers.size());
+
+        // ✅ Remove player from room (this will auto-assign new host if needed)
+        if (!gameRoomManager.leaveRoom(this, roomId)) {
+            return false;
+        }
+        logWithTime("   ✅ Player removed from room");
+
+        // ✅ Broadcast PLAYER_LEFT to remaining players
+        if (!remainingPlayers.isEmpty()) {
+            Map<String, Object> leftNotification = new HashMap<>();
+            leftNotification.put("type", Protocol.PLAYER_LEFT);
+            leftNotification.put("userId", leavingUserId);
+            leftNotification.put("username", leavingUsername);
 
+            // ✅ If host left, get NEW host from room (already assigned by GameRoom)
+            if (wasHost) {
+                // ✅ Get the NEW host that was auto-assigned
+                User newHostUser = room.getHost();
+
+                leftNotification.put("isNewHost", true);
+                leftNotification.put("newHostId", newHostUser.getUserId());
+
+                logWithTime("   👑 New host assigned: " + newHostUser.getUsername() +
+                        " (userId=" + newHostUser.getUserId() + ")");
+
+                // ✅ IMPORTANT: Clear ready status của new host
+                room.setPlayerReady(newHostUser.getUserId(), false);
+
+            } else {
+                leftNotification.put("isNewHost", false);
+            }
+
+            // Broadcast to all remaining players
+            for (ClientHandler player : remainingPlayers) {
+                try {
+                    player.sendMessage(leftNotification);
+                    logWithTime("   📤 Notified: " + player.getCurrentUser().getUsername());
+                } catch (Exception e) {
+                    logWithTime("   ⚠️ Failed to notify: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Logout / mất kết nối: rời phòng hiện tại như LEAVE_ROOM (gọi trước khi xoá currentUser)
+     */
+    void leaveCurrentRoom() {
+        if (currentUser == null) {
+            return;
+        }
+        try {
+            GameRoomManager.GameRoom room = gameRoomManager.getRoomByUser(currentUser.getUserId());
+            if (room != null && leaveRoomAndNotify(room)) {
+                logWithTime("🚪 " + currentUser.getUsername() + " removed from room " + room.getRoomId() + " (disconnected)");
+            }
         } catch (Exception e) {
-            logWithTime("❌ [LEAVE_ROOM] Exception: " + e.getMessage());
-            e.printStackTrace();
-            sendError("Lỗi khi rời phòng!");
+            logWithTime("   ⚠️ Room cleanup error: " + e.getMessage());
         }
     }
 
@@ -2713,7 +2810,6 @@ public class ClientHandler implements Runnable {
 
             // ✅ Create database session record
             try {
-                GameSessionDAO gameSessionDAO = new GameSessionDAO();
                 int sessionId = gameSessionDAO.createSession(
                         roomId,
                         subject,
@@ -2848,7 +2944,7 @@ public class ClientHandler implements Runnable {
             logWithTime("🎯 [SEND_QUESTION] ========== START ==========");
 
             // Validate connection
-            if (writer == null || writer.checkError()) {
+            if (outbound == null || outbound.isClosed()) {
                 logWithTime("❌ [SEND_QUESTION] Writer is closed for userId=" + userId);
                 return;
             }
@@ -2920,39 +3016,9 @@ public class ClientHandler implements Runnable {
     }
 
 
-    public void broadcastQuestionProgress(String roomId, int userId, int questionIndex,
-                                          List<ClientHandler> players) {
-        try {
-            Map<String, Object> progressData = new HashMap<>();
-            progressData.put("type", "PLAYER_PROGRESS");
-            progressData.put("roomId", roomId);
-            progressData.put("userId", userId);
-            progressData.put("currentQuestion", questionIndex + 1);
-            progressData.put("totalQuestions", Protocol.QUESTIONS_PER_GAME);
-            progressData.put("timestamp", System.currentTimeMillis());
-
-            // ✅ Broadcast to ALL players EXCEPT the player themselves
-            for (ClientHandler player : players) {
-                if (player.getCurrentUser() != null &&
-                        player.getCurrentUser().getUserId() != userId) {
-                    try {
-                        player.sendMessage(progressData);
-                    } catch (Exception e) {
-                        // Ignore disconnected players
-                    }
-                }
-            }
-
-            logWithTime("📢 [PROGRESS] User " + userId + " -> Question " + (questionIndex + 1));
-
-        } catch (Exception e) {
-            logWithTime("❌ [BROADCAST_PROGRESS] Error: " + e.getMessage());
-        }
-    }
-
     /**
      * ✅ Broadcast vị trí của tất cả người chơi
-     * Called every 1 second by GameSession
+     * Called by GameSession's update flush (answers, progress and positions in one frame)
      */
     public void broadcastPositions(String roomId, List<ClientHandler> players) {
         try {
@@ -2961,53 +3027,24 @@ public class ClientHandler implements Runnable {
                 return;
             }
 
-            Map<String, Object> positionData = new HashMap<>();
-            positionData.put("type", "GAME_UPDATE");
-            positionData.put("roomId", roomId);
-            positionData.put("timestamp", System.currentTimeMillis());
-
-            List<Map<String, Object>> positions = new ArrayList<>();
-
-            for (Map.Entry<Integer, GameSession.PlayerGameState> entry :
-                    session.getPlayerStates().entrySet()) {
-
-                GameSession.PlayerGameState state = entry.getValue();
-                Map<String, Object> pos = new HashMap<>();
-                pos.put("userId", state.userId);
-                pos.put("position", state.position);
-                pos.put("score", state.score);
-                pos.put("correctStreak", state.correctStreak);
-                pos.put("wrongStreak", state.wrongStreak);
-                pos.put("gotNitro", state.gotNitro);
-                pos.put("currentQuestion", session.getQuestionIndexForPlayer(state.userId) + 1);
-                pos.put("totalQuestions", Protocol.QUESTIONS_PER_GAME);
-
-                // Add last answer info for UI feedback
-                pos.put("lastAnswerCorrect", state.lastAnswerCorrect);
-                pos.put("lastAnswerTime", state.lastAnswerTime);
-
-                positions.add(pos);
+            // Keyframe or delta since the previous update - nothing to send if no one moved
+            Map<String, Object> positionData = session.nextPositionUpdate();
+            if (positionData == null) {
+                return;
             }
-            positionData.put("positions", positions);
 
             // ✅ Broadcast to ALL players
+            EncodedMessage encoded = EncodedMessage.of(positionData);
             for (ClientHandler player : players) {
                 if (player.getCurrentUser() == null) continue;
 
                 try {
-                    player.sendMessage(positionData);
+                    player.sendEncoded(encoded);
                 } catch (Exception e) {
                     // Ignore disconnected players
                 }
             }
 
-            // RESET gotNitro flags after broadcast
-            for (GameSession.PlayerGameState state : session.getPlayerStates().values()) {
-                state.gotNitro = false;
-            }
-
-            logWithTime("📢 [BROADCAST_POSITIONS] Sent to " + players.size() + " players");
-
         } catch (Exception e) {
             logWithTime("❌ [BROADCAST_POSITIONS] Error: " + e.getMessage());
         }
@@ -3015,67 +3052,25 @@ public class ClientHandler implements Runnable {
 
 
 
-    /**
-     * ✅ Broadcast answer result to all players
-     */
-    public void broadcastAnswerResult(String roomId, int userId, boolean isCorrect,
-                                      long timeTaken, double position, int score,
-                                      boolean gotNitro, List<ClientHandler> players) {
-        try {
-            Map<String, Object> answerData = new HashMap<>();
-            answerData.put("type", "PLAYER_ANSWERED");
-            answerData.put("roomId", roomId);
-            answerData.put("userId", userId);
-            answerData.put("isCorrect", isCorrect);
-            answerData.put("timeTaken", timeTaken);
-            answerData.put("position", position);
-            answerData.put("score", score);
-            answerData.put("gotNitro", gotNitro);
-            answerData.put("timestamp", System.currentTimeMillis());
-
-            // ✅ Broadcast to ALL players (including the answerer)
-            for (ClientHandler player : players) {
-                if (player.getCurrentUser() != null) {
-                    try {
-                        player.sendMessage(answerData);
-                    } catch (Exception e) {
-                        // Ignore disconnected players
-                    }
-                }
-            }
-
-            logWithTime("📢 [ANSWER] Broadcasted: User " + userId + " - " +
-                    (isCorrect ? "✅ Correct" : "❌ Wrong") +
-                    (gotNitro ? " 🚀 NITRO!" : ""));
-
-        } catch (Exception e) {
-            logWithTime("❌ [BROADCAST_ANSWER] Error: " + e.getMessage());
-        }
-    }
-
     /**
      * ✅ Thông báo player đã hoàn thành
      */
     public void notifyPlayerFinish(String roomId, int userId, int rank) {
         try {
             // Find the specific player's handler
-            for (ClientHandler handler : GameServer.getInstance().getConnectedClients()) {
-                if (handler.getCurrentUser() != null &&
-                        handler.getCurrentUser().getUserId() == userId) {
+            ClientHandler handler = GameServer.getInstance().findClientByUserId(userId);
+            if (handler != null) {
+                Map<String, Object> finishData = new HashMap<>();
+                finishData.put("type", "PLAYER_FINISHED");
+                finishData.put("roomId", roomId);
+                finishData.put("userId", userId);
+                finishData.put("rank", rank);
+                finishData.put("message", "You finished! Rank: " + rank);
+                finishData.put("timestamp", System.currentTimeMillis());
 
-                    Map<String, Object> finishData = new HashMap<>();
-                    finishData.put("type", "PLAYER_FINISHED");
-                    finishData.put("roomId", roomId);
-                    finishData.put("userId", userId);
-                    finishData.put("rank", rank);
-                    finishData.put("message", "You finished! Rank: " + rank);
-                    finishData.put("timestamp", System.currentTimeMillis());
+                handler.sendMessage(finishData);
 
-                    handler.sendMessage(finishData);
-
-                    logWithTime("🏁 [NOTIFY_FINISH] Player " + userId + " finished, rank " + rank);
-                    break;
-                }
+                logWithTime("🏁 [NOTIFY_FINISH] Player " + userId + " finished, rank " + rank);
             }
         } catch (Exception e) {
             logWithTime("❌ [NOTIFY_FINISH] Error: " + e.getMessage());
@@ -3172,10 +3167,9 @@ public class ClientHandler implements Runnable {
 
             List<Map<String, Object>> rankings = new ArrayList<>();
 
-            // DAO để lưu điểm
-            GameResultDAO dao = new GameResultDAO();
-
-            logWithTime("📊 [END_GAME] Saving results for " + playerStates.size() + " players...");
+            // Lưu điểm sau khi gửi GAME_END (write-behind)
+            GameResultWriter.GameResultRecord record =
+                    new GameResultWriter.GameResultRecord(sessionId, session.getSubject(), timeTaken, true);
 
             for (int i = 0; i < playerStates.size(); i++) {
                 GameSession.PlayerGameState state = playerStates.get(i);
@@ -3209,70 +3203,8 @@ public class ClientHandler implements Runnable {
                 rankData.put("fullName", fullName);
 
                 rankings.add(rankData);
-
-                // -------------------------
-                // ✅ LƯU DATABASE - ĐỂ METHOD SIGNATURE
-                // -------------------------
-                try {
-                    boolean saved = dao.saveGameResult(
-                            sessionId,                      // 1. session_id (int)
-                            state.userId,                   // 2. user_id (int)
-                            state.score,                    // 3. score (int)
-                            state.totalCorrectAnswers,      // 4. correct_answers (int)
-                            state.totalWrongAnswers,        // 5. wrong_answers (int)
-                            timeTaken,                      // 6. time_taken (int) - seconds
-                            rank                            // 7. rank_position (int)
-                    );
-
-                    if (saved) {
-                        logWithTime("   💾 ✅ User " + state.userId + " (Rank " + rank +
-                                "): Score=" + state.score +
-                                ", Correct=" + state.totalCorrectAnswers +
-                                "/" + state.totalQuestionsAttempted);
-                    } else {
-                        logWithTime("   💾 ❌ Failed to save user " + state.userId);
-                    }
-                } catch (Exception e) {
-                    logWithTime("   💾 ❌ Error saving user " + state.userId + ": " + e.getMessage());
-                }
-            }
-
-            // ✅ Mark session as finished in database
-            try {
-                GameSessionDAO sessionDAO = new GameSessionDAO();
-                sessionDAO.finishSession(sessionId);
-                logWithTime("   🏁 Session " + sessionId + " marked as finished");
-            } catch (Exception e) {
-                logWithTime("   ⚠️ Could not mark session finished: " + e.getMessage());
-            }
-
-            // -------------------------
-            // ✅ CẬP NHẬT THỐNG KÊ NGƯỜI CHƠI (users table)
-            // -------------------------
-            try {
-                UserDAO userDAO = new UserDAO();
-
-                for (GameSession.PlayerGameState state : playerStates) {
-                    try {
-                        // Update total score
-                        userDAO.updateTotalScore(state.userId, state.score);
-
-                        // Update subject score
-                        userDAO.updateSubjectScore(state.userId, session.getSubject(), state.score);
-
-                        // Update win/loss
-                        boolean isWinner = (state.finalRank == 1);
-                        userDAO.updateGameStats(state.userId, isWinner);
-
-                        logWithTime("   📊 Updated stats for user " + state.userId +
-                                " (" + (isWinner ? "WIN" : "LOSS") + ")");
-
-                    } catch (Exception e) {
-                        logWithTime("   ⚠️ Could not update stats for user " + state.userId);
-                    }
-                }
-            } catch (Exception e) {
-                logWithTime("   ⚠️ Error updating player stats: " + e.getMessage());
+                record.addPlayer(state.userId, state.score,
+                        state.totalCorrectAnswers, state.totalWrongAnswers, rank);
             }
 
             // -------------------------
@@ -3290,11 +3222,12 @@ public class ClientHandler implements Runnable {
             endGameData.put("totalTime", timeTaken);
             endGameData.put("timestamp", System.currentTimeMillis());
 
+            EncodedMessage encoded = EncodedMessage.of(endGameData);
             int sentCount = 0;
             for (ClientHandler player : players) {
                 if (player.getCurrentUser() != null) {
                     try {
-                        player.sendMessage(endGameData);
+                        player.sendEncoded(encoded);
                         sentCount++;
                         logWithTime("   📤 Sent to: " + player.getCurrentUser().getUsername());
                     } catch (Exception e) {
@@ -3304,8 +3237,10 @@ public class ClientHandler implements Runnable {
                 }
             }
 
+            GameResultWriter.getInstance().submit(record);
+
             logWithTime("✅ [END_GAME] Completed!");
-            logWithTime("   Results saved: " + playerStates.size() + " players");
+            logWithTime("   Results queued: " + playerStates.size() + " players");
             logWithTime("   Notifications sent: " + sentCount + "/" + players.size());
 
         } catch (Exception e) {
@@ -3400,33 +3335,15 @@ public class ClientHandler implements Runnable {
                     " | Room: " + roomId +
                     " | Answer: " + answer);
 
-            // ✅ Submit to GameManager
-            GameSession.AnswerResult result = gameManager.submitAnswer(roomId, userId, answer);
-
-            if (!result.success) {
-                logWithTime("❌ [SUBMIT_ANSWER] Failed: " + result.message);
-                sendError(result.message);
-                return;
-            }
-
-            // ✅ Send immediate feedback to THIS player only
-            Map<String, Object> feedback = new HashMap<>();
-            feedback.put("type", Protocol.ANSWER_RESULT);
-            feedback.put("success", true);
-            feedback.put("isCorrect", result.message.contains("Correct") ||
-                    result.message.contains("finished") ||
-                    result.message.contains("reached"));
-            feedback.put("timeTaken", result.timeTaken);
-            feedback.put("correctStreak", result.correctStreak);
-            feedback.put("message", result.message);
-
-            sendMessage(feedback);
-
-            logWithTime("✅ [SUBMIT_ANSWER] Feedback sent: " + result.message);
-            logWithTime("   Time: " + result.timeTaken + "ms | Streak: " + result.correctStreak);
-
-            // ✅ NOTE: Next question will be sent automatically by GameSession
-            // after 2 seconds delay via questionSender callback
+            // ✅ Submit to GameManager - processed on the session's own thread, reply when done
+            gameManager.submitAnswer(roomId, userId, answer).whenComplete((result, error) -> {
+                if (error != null) {
+                    logWithTime("❌ [SUBMIT_ANSWER] Exception: " + error.getMessage());
+                    sendError("Lỗi khi nộp câu trả lời!");
+                    return;
+                }
+                sendAnswerResult(result);
+            });
 
             logWithTime("📝 [SUBMIT_ANSWER] ========== END ==========");
 
@@ -3437,6 +3354,33 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    private void sendAnswerResult(GameSession.AnswerResult result) {
+        if (!result.success) {
+            logWithTime("❌ [SUBMIT_ANSWER] Failed: " + result.message);
+            sendError(result.message);
+            return;
+        }
+
+        // ✅ Send immediate feedback to THIS player only
+        Map<String, Object> feedback = new HashMap<>();
+        feedback.put("type", Protocol.ANSWER_RESULT);
+        feedback.put("success", true);
+        feedback.put("isCorrect", result.message.contains("Correct") ||
+                result.message.contains("finished") ||
+                result.message.contains("reached"));
+        feedback.put("timeTaken", result.timeTaken);
+        feedback.put("correctStreak", result.correctStreak);
+        feedback.put("message", result.message);
+
+        sendMessage(feedback);
+
+        logWithTime("✅ [SUBMIT_ANSWER] Feedback sent: " + result.message);
+        logWithTime("   Time: " + result.timeTaken + "ms | Streak: " + result.correctStreak);
+
+        // ✅ NOTE: Next question will be sent automatically by GameSession
+        // after 2 seconds delay via questionSender callback
+    }
+
     /**
      * Handler: ROOM_CHAT - Chat trong phòng
      */
@@ -3464,9 +3408,10 @@ public class ClientHandler implements Runnable {
             chatMessage.put("message", message);
             chatMessage.put("timestamp", System.currentTimeMillis());
 
+            EncodedMessage encoded = EncodedMessage.of(chatMessage);
             for (ClientHandler player : room.getPlayers()) {
                 try {
-                    player.sendMessage(chatMessage);
+                    player.sendEncoded(encoded);
                 } catch (Exception e) {
                     logWithTime("⚠️ Failed to send chat to: " +
                             player.getCurrentUser().getUsername());
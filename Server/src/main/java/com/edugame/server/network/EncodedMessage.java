@@ -0,0 +1,89 @@
+package com.edugame.server.network;
+
+import com.edugame.common.Protocol;
+import com.edugame.common.wire.BinaryCodec;
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * EncodedMessage - A message serialized once for fan-out
+ *
+ * Holds the UTF-8 JSON line (with trailing newline) exactly as
+ * ClientHandler.sendMessage would write it, so broadcasts can hand the
+ * same bytes to every recipient instead of calling gson.toJson per client.
+ * Hot message types are also encoded once in binary form for clients
+ * that negotiated the binary wire format.
+ */
+public final class EncodedMessage {
+
+    private static final Gson GSON = new Gson();
+
+    private final Object type;
+    private final byte[] frame;
+    private final byte[] binaryFrame; // null if the type has no binary codec
+    private final boolean supersedable;
+
+    private EncodedMessage(Object type, byte[] frame, byte[] binaryFrame, boolean supersedable) {
+        this.type = type;
+        this.frame = frame;
+        this.binaryFrame = binaryFrame;
+        this.supersedable = supersedable;
+    }
+
+    /**
+     * Serialize a message once (JSON, plus binary when a codec exists)
+     */
+    public static EncodedMessage of(Map<String, Object> data) {
+        Object type = data.get("type");
+        byte[] binary = BinaryCodec.supports(type) ? BinaryCodec.encode(data) : null;
+        return new EncodedMessage(type, toFrame(GSON.toJson(data)), binary, isSupersedable(data));
+    }
+
+    /**
+     * JSON text to one newline-terminated UTF-8 frame
+     */
+    static byte[] toFrame(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, frame, 0, bytes.length);
+        frame[bytes.length] = '\n';
+        return frame;
+    }
+
+    public Object getType() {
+        return type;
+    }
+
+    /**
+     * Full GAME_UPDATE snapshots can be replaced by a newer one if the client is behind.
+     * Deltas (baseVersion set) cannot - the client needs every one until the next keyframe.
+     */
+    static boolean isSupersedable(Map<String, Object> data) {
+        return Protocol.GAME_UPDATE.equals(data.get("type")) && !data.containsKey("baseVersion");
+    }
+
+    boolean isSupersedable() {
+        return supersedable;
+    }
+
+    /**
+     * Encoded bytes, shared by all recipients - do not modify
+     */
+    byte[] getFrame() {
+        return frame;
+    }
+
+    /**
+     * Binary frame for recipients that negotiated it, JSON line otherwise
+     * (or when this type has no binary codec)
+     */
+    byte[] getFrame(boolean binary) {
+        return binary && binaryFrame != null ? binaryFrame : frame;
+    }
+
+    public int size() {
+        return frame.length;
+    }
+}
@@ -1,7 +1,10 @@
 package com.edugame.server.network;
 
 import com.edugame.common.Protocol;
+import com.edugame.server.config.ConfigManager;
 import com.edugame.server.database.DatabaseConnection;
+import com.edugame.server.database.GameResultWriter;
+import com.edugame.server.database.LeaderboardIndex;
 import com.edugame.server.game.GameRoomManager;
 import com.edugame.server.game.MatchmakingManager;
 import com.edugame.server.model.User;
@@ -14,13 +17,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import com.edugame.server.network.VoiceChatServer;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 public class GameServer {
     private ServerSocket serverSocket;
+    private NioTransport nioTransport; // Only used when server.transport=nio
     private static VoiceChatServer voiceChatServer;
-    private List<ClientHandler> connectedClients;
+    private final SessionRegistry sessions;
     private boolean running;
     private int port;
     private MatchmakingManager matchmakingManager;
@@ -32,7 +36,7 @@ public class GameServer {
 
     public GameServer(int port) {
         this.port = port;
-        this.connectedClients = new CopyOnWriteArrayList<>(); // Thread-safe
+        this.sessions = new SessionRegistry();
         this.running = false;
         this.roomManager = GameRoomManager.getInstance();
         this.matchmakingManager = new MatchmakingManager(roomManager);
@@ -77,8 +81,14 @@ public class GameServer {
                 return;
             }
 
-            serverSocket = new ServerSocket(port);
-            serverSocket.setReuseAddress(true);
+            boolean useNio = "nio".equals(ConfigManager.getServerTransport());
+            if (useNio) {
+                nioTransport = new NioTransport(port, this);
+                nioTransport.bind();
+            } else {
+                serverSocket = new ServerSocket(port);
+                serverSocket.setReuseAddress(true);
+            }
             running = true;
 
             System.out.println("========================================");
@@ -87,8 +97,15 @@ public class GameServer {
             System.out.println("✓ Server started on port: " + port + " (TCP)");
             System.out.println("✓ Database connected");
 
+            // Index leaderboard before the writer replays its journal (replayed games add on top)
+            LeaderboardIndex.getInstance().warmUp();
+
+            // Start result writer now so results left in its journal are written first
+            GameResultWriter.getInstance();
+
             GameRoomManager gameRoomManager = new GameRoomManager();
 
+            matchmakingManager.shutdown(); // Replaced below - stop its tick
             matchmakingManager = new MatchmakingManager(GameRoomManager.getInstance());
 
 
@@ -111,24 +128,30 @@ public class GameServer {
             if (voiceStarted) {
                 System.out.println("✓ Voice Chat enabled");
             }
+            System.out.println("✓ Transport: " + (useNio ? "NIO (selector)" : "blocking (thread-per-client)"));
             System.out.println("✓ Waiting for clients...");
             System.out.println("========================================\n");
 
+            if (useNio) {
+                // Blocks until stop()
+                nioTransport.serve();
+            }
+
             // Accept client connections
-            while (running) {
+            while (running && !useNio) {
                 try {
                     Socket clientSocket = serverSocket.accept();
 
                     // Create new client handler với reference đến server và voiceChatServer
                     ClientHandler clientHandler = new ClientHandler(clientSocket, this, matchmakingManager);
-                    connectedClients.add(clientHandler);
+                    sessions.addConnection(clientHandler);
 
                     // Start client handler in new thread
                     Thread clientThread = new Thread(clientHandler);
-                    clientThread.setName("Client-" + connectedClients.size());
+                    clientThread.setName("Client-" + sessions.getConnectionCount());
                     clientThread.start();
 
-                    System.out.println("📊 Active connections: " + connectedClients.size());
+                    System.out.println("📊 Active connections: " + sessions.getConnectionCount());
 
                 } catch (IOException e) {
                     if (running) {
@@ -164,9 +187,9 @@ public class GameServer {
             }
 
             // 3. Disconnect all clients with timeout
-            System.out.println("🛑 Disconnecting " + connectedClients.size() + " clients...");
+            System.out.println("🛑 Disconnecting " + sessions.getConnectionCount() + " clients...");
 
-            List<ClientHandler> clientsCopy = new ArrayList<>(connectedClients);
+            ClientHandler[] clientsCopy = sessions.connectionSnapshot();
             int disconnected = 0;
 
             for (ClientHandler client : clientsCopy) {
@@ -187,7 +210,7 @@ public class GameServer {
             System.out.println("✓ Disconnected " + disconnected + " clients");
 
             // 4. Clear client list
-            connectedClients.clear();
+            sessions.clear();
 
             // 5. Stop Voice Chat Server
             if (voiceChatServer != null) {
@@ -200,7 +223,13 @@ public class GameServer {
                 }
             }
 
-            // 6. Close server socket
+            // 6. Stop NIO transport (selector + worker threads)
+            if (nioTransport != null) {
+                System.out.println("🛑 Stopping NIO transport...");
+                nioTransport.stop();
+            }
+
+            // 7. Close server socket
             if (serverSocket != null && !serverSocket.isClosed()) {
                 System.out.println("🛑 Closing server socket...");
                 try {
@@ -211,7 +240,13 @@ public class GameServer {
                 }
             }
 
-            // 7. Give threads time to clean up
+            // 8. Write out queued game results
+            System.out.println("🛑 Flushing game results...");
+            if (!GameResultWriter.getInstance().flush(ConfigManager.getResultsShutdownTimeoutMs())) {
+                System.err.println("⚠️ Some game results are still queued (kept in journal)");
+            }
+
+            // 9. Give threads time to clean up
             Thread.sleep(500);
 
             System.out.println("========================================");
@@ -230,7 +265,8 @@ public class GameServer {
     public boolean isStopped() {
         return !running &&
                 (serverSocket == null || serverSocket.isClosed()) &&
-                connectedClients.isEmpty();
+                (nioTransport == null || !nioTransport.isRunning()) &&
+                sessions.isEmpty();
     }
     // ========== BROADCAST FUNCTIONS ==========
 
@@ -239,13 +275,11 @@ public class GameServer {
      * Used for chat messages
      */
     public void broadcastMessage(Map<String, Object> message, ClientHandler sender) {
-        // Remove disconnected clients first
-        connectedClients.removeIf(client -> !client.isRunning());
-
+        EncodedMessage encoded = EncodedMessage.of(message);
         int sentCount = 0;
-        for (ClientHandler client : connectedClients) {
+        for (ClientHandler client : sessions.sessionSnapshot()) {
             if (client != sender && client.isRunning() && client.getCurrentUser() != null) {
-                client.sendMessage(message);
+                client.sendEncoded(encoded);
                 sentCount++;
                 System.out.println("  → Sent to: " + client.getCurrentUser().getUsername());
             }
@@ -263,11 +297,10 @@ public class GameServer {
         systemMessage.put("type", "SYSTEM_MESSAGE");
         systemMessage.put("message", message);
 
-        connectedClients.removeIf(client -> !client.isRunning());
-
-        for (ClientHandler client : connectedClients) {
+        EncodedMessage encoded = EncodedMessage.of(systemMessage);
+        for (ClientHandler client : sessions.sessionSnapshot()) {
             if (client != sender && client.isRunning() && client.getCurrentUser() != null) {
-                client.sendMessage(systemMessage);
+                client.sendEncoded(encoded);
             }
         }
 
@@ -279,11 +312,10 @@ public class GameServer {
      * Used for announcements
      */
     public void broadcastToAll(Map<String, Object> message) {
-        connectedClients.removeIf(client -> !client.isRunning());
-
-        for (ClientHandler client : connectedClients) {
+        EncodedMessage encoded = EncodedMessage.of(message);
+        for (ClientHandler client : sessions.sessionSnapshot()) {
             if (client.isRunning() && client.getCurrentUser() != null) {
-                client.sendMessage(message);
+                client.sendEncoded(encoded);
             }
         }
     }
@@ -292,8 +324,27 @@ public class GameServer {
      * Get list of connected client handlers (for internal use)
      */
     public List<ClientHandler> getConnectedClients() {
-        connectedClients.removeIf(client -> !client.isRunning());
-        return new ArrayList<>(connectedClients);
+        List<ClientHandler> clients = new ArrayList<>();
+        for (ClientHandler client : sessions.connectionSnapshot()) {
+            if (client.isRunning()) {
+                clients.add(client);
+            }
+        }
+        return clients;
+    }
+
+    /**
+     * Get logged-in client handlers (shared snapshot - do not modify)
+     */
+    public ClientHandler[] getLoggedInClients() {
+        return sessions.sessionSnapshot();
+    }
+
+    /**
+     * Find the handler of a logged-in user, or null if offline
+     */
+    public ClientHandler findClientByUserId(int userId) {
+        return sessions.findByUserId(userId);
     }
 
     /**
@@ -311,23 +362,45 @@ public class GameServer {
      * Send message to specific user by username
      */
     public void sendToUser(String username, Map<String, Object> message) {
-        connectedClients.removeIf(client -> !client.isRunning());
-
-        for (ClientHandler client : connectedClients) {
-            if (client.getCurrentUser() != null &&
-                    client.getCurrentUser().getUsername().equals(username)) {
-                client.sendMessage(message);
-                break;
-            }
+        ClientHandler client = sessions.findByUsername(username);
+        if (client != null && client.isRunning()) {
+            client.sendMessage(message);
         }
     }
 
+    /**
+     * Track a newly accepted client (used by the NIO transport)
+     */
+    void registerClient(ClientHandler client) {
+        sessions.addConnection(client);
+    }
+
     /**
      * Remove disconnected client from list
      */
     public void removeClient(ClientHandler client) {
-        connectedClients.remove(client);
-        System.out.println("🔌 Client removed. Active connections: " + connectedClients.size());
+        sessions.removeConnection(client);
+        System.out.println("🔌 Client removed. Active connections: " + sessions.getConnectionCount());
+    }
+
+    /**
+     * Called by ClientHandler after a successful login
+     */
+    void onUserLoggedIn(ClientHandler client, User user) {
+        ClientHandler previous = sessions.bindUser(client, user);
+        if (previous != null) {
+            System.out.println("🔁 User " + user.getUsername() + " logged in again - newest connection wins");
+        }
+    }
+
+    /**
+     * Called by ClientHandler on logout/disconnect, before it clears currentUser
+     */
+    void onUserLoggedOut(ClientHandler client, User user) {
+        sessions.unbindUser(client, user);
+        // Free the seat so abandoned rooms are reclaimed instead of lingering half-full,
+        // telling the others exactly like LEAVE_ROOM does
+        client.leaveCurrentRoom();
     }
 
     // ========== GETTERS ==========
@@ -336,54 +409,79 @@ public class GameServer {
      * Get number of connected clients
      */
     public int getConnectedClientsCount() {
-        // Remove disconnected clients
-        connectedClients.removeIf(client -> !client.isRunning());
-        return connectedClients.size();
+        return sessions.getConnectionCount();
     }
 
     /**
      * Get number of logged-in users (authenticated)
      */
     public int getLoggedInUsersCount() {
-        connectedClients.removeIf(client -> !client.isRunning());
-
-        int count = 0;
-        for (ClientHandler client : connectedClients) {
-            if (client.getCurrentUser() != null) {
-                count++;
-            }
-        }
-        return count;
+        return sessions.getSessionCount();
     }
 
     /**
      * Get list of online usernames
      */
     public List<String> getOnlineUsernames() {
-        List<String> usernames = new ArrayList<>();
-        connectedClients.removeIf(client -> !client.isRunning());
+        return sessions.getOnlineUsernames();
+    }
 
-        for (ClientHandler client : connectedClients) {
-            if (client.getCurrentUser() != null) {
-                usernames.add(client.getCurrentUser().getUsername());
-            }
-        }
-        return usernames;
+    /**
+     * Get ids of all logged-in users
+     */
+    public Set<Integer> getOnlineUserIds() {
+        return sessions.getOnlineUserIds();
     }
 
     /**
      * Check if user is online
      */
     public boolean isUserOnline(String username) {
-        connectedClients.removeIf(client -> !client.isRunning());
+        return sessions.isOnline(username);
+    }
 
-        for (ClientHandler client : connectedClients) {
-            if (client.getCurrentUser() != null &&
-                    client.getCurrentUser().getUsername().equals(username)) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Check if user is online by id
+     */
+    public boolean isUserOnline(int userId) {
+        return sessions.isOnline(userId);
+    }
+
+    /**
+     * Slow-consumer counters of the per-connection send queues
+     */
+    public String getOutboundSummary() {
+        return "droppedUpdates=" + OutboundQueue.getTotalDroppedUpdates() +
+                ", slowDisconnects=" + OutboundQueue.getTotalOverflowDisconnects();
+    }
+
+    /**
+     * Per message type call counts / latency histograms
+     */
+    public List<String> getDispatchStats() {
+        return ClientHandler.getDispatchStats();
+    }
+
+    public String getDispatchLaneSummary() {
+        return ClientHandler.getDispatchLaneSummary();
+    }
+
+    /**
+     * Matchmaking throughput + wait-time percentiles
+     */
+    public String getMatchmakingSummary() {
+        return matchmakingManager != null ? matchmakingManager.getWaitStats() : "not started";
+    }
+
+    /**
+     * Rooms, seated players and rooms reclaimed once empty
+     */
+    public String getRoomSummary() {
+        return roomManager.getStatsSummary();
+    }
+
+    public String getDispatchHistogramLegend() {
+        return MessageDispatcher.getHistogramLegend();
     }
 
     public boolean isRunning() {
@@ -428,38 +526,16 @@ public class GameServer {
     }
 
     public boolean sendToUserId(int userId, Map<String, Object> message) {
-        System.out.println("[SERVER] 🔍 Searching for userId=" + userId);
-
-        synchronized (connectedClients) {
-            // Debug: Show total connected clients
-            System.out.println("[SERVER] 📊 Total connected clients: " + connectedClients.size());
-
-            // Loop through all connected clients
-            for (ClientHandler handler : connectedClients) {
-                // Check if handler is valid and has logged-in user
-                if (handler.isRunning() && handler.getCurrentUser() != null) {
-                    User user = handler.getCurrentUser();
-                    int currentHandlerUserId = user.getUserId();
-                    String currentHandlerUsername = user.getUsername();
-
-                    // Debug: Show each handler we're checking
-                    System.out.println("[SERVER] 🔎 Checking handler: userId=" + currentHandlerUserId +
-                            ", username=" + currentHandlerUsername);
-
-                    // Found the matching user!
-                    if (currentHandlerUserId == userId) {
-                        System.out.println("[SERVER] ✅✅✅ FOUND MATCHING USER! Sending message...");
-                        handler.sendMessage(message);
-                        System.out.println("[SERVER] ✅ Message sent to userId=" + userId +
-                                " (username=" + currentHandlerUsername + ")");
-                        return true;
-                    }
-                }
-            }
+        ClientHandler handler = sessions.findByUserId(userId);
+
+        if (handler != null && handler.isRunning()) {
+            handler.sendMessage(message);
+            System.out.println("[SERVER] ✅ Message sent to userId=" + userId);
+            return true;
         }
 
         // User not found or offline
-        System.out.println("[SERVER] ⚠️⚠️⚠️ User NOT FOUND or OFFLINE (userId=" + userId + ")");
+        System.out.println("[SERVER] ⚠️ User NOT FOUND or OFFLINE (userId=" + userId + ")");
         return false;
     }
     /**
@@ -478,7 +554,7 @@ public class GameServer {
                     List<ClientHandler> deadClients = new ArrayList<>();
 
                     // Check all connected clients
-                    for (ClientHandler client : connectedClients) {
+                    for (ClientHandler client : sessions.connectionSnapshot()) {
                         if (!client.isClientAlive()) {
                             System.err.println("⚠️ Dead client detected: " +
                                     (client.getCurrentUser() != null ?
@@ -489,7 +565,7 @@ public class GameServer {
 
                     // Remove dead clients
                     for (ClientHandler client : deadClients) {
-                        connectedClients.remove(client);
+                        sessions.removeConnection(client);
                         // Force disconnect
                         try {
                             client.disconnect();
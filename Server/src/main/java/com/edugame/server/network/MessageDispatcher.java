@@ -0,0 +1,270 @@
+package com.edugame.server.network;
+
+import com.edugame.server.config.ConfigManager;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MessageDispatcher - Message type → pre-registered handler
+ *
+ * Each route declares:
+ *  - whether it needs a logged-in session
+ *  - which lane it runs on: INLINE (the connection's own thread, strictly in
+ *    order with game messages) or DB (a per-connection serial lane on a shared
+ *    pool, so slow queries never hold up SUBMIT_ANSWER & co.). A lane holds at
+ *    most server.dispatch.db.lane.max requests; past that, or when the pool
+ *    queue is full, execute() throws RejectedExecutionException
+ *
+ * Every route keeps a call counter and a latency histogram.
+ */
+final class MessageDispatcher {
+
+    /**
+     * Where a handler runs
+     */
+    enum Lane { INLINE, DB }
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(ClientHandler client, JsonObject message) throws Exception;
+    }
+
+    // Histogram bucket upper bounds (ms), last bucket is everything above
+    private static final long[] BUCKET_BOUNDS_MS = {1, 5, 20, 100, 500};
+
+    private final Map<String, Route> routes = new HashMap<>();
+    private final LongAdder unknownTypes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final ThreadPoolExecutor dbPool;
+    private final int laneMax;
+
+    MessageDispatcher() {
+        int threads = ConfigManager.getDispatchDbThreads();
+        AtomicInteger ids = new AtomicInteger();
+        this.dbPool = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ConfigManager.getDispatchDbQueueSize()),
+                r -> {
+                    Thread t = new Thread(r, "DbHandler-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.dbPool.allowCoreThreadTimeOut(true);
+        this.laneMax = ConfigManager.getDispatchDbLaneMax();
+    }
+
+    /**
+     * Register a handler (only during setup, the table is read-only afterwards)
+     */
+    MessageDispatcher register(String type, boolean requiresAuth, Lane lane, Handler handler) {
+        if (routes.putIfAbsent(type, new Route(type, requiresAuth, lane, handler)) != null) {
+            throw new IllegalStateException("Duplicate handler for " + type);
+        }
+        return this;
+    }
+
+    /**
+     * @return the route for this type, or null if none is registered
+     */
+    Route route(String type) {
+        Route route = routes.get(type);
+        if (route == null) {
+            unknownTypes.increment();
+        }
+        return route;
+    }
+
+    /**
+     * A new DB lane for one connection: its DB requests run in order,
+     * but on pool threads instead of the connection's thread
+     */
+    Executor newDbLane() {
+        return new SerialLane();
+    }
+
+    /**
+     * One line per message type, busiest first
+     */
+    List<String> getStats() {
+        List<Route> sorted = new ArrayList<>(routes.values());
+        sorted.removeIf(r -> r.count.sum() == 0);
+        sorted.sort(Comparator.comparingLong((Route r) -> r.count.sum()).reversed());
+
+        List<String> lines = new ArrayList<>();
+        for (Route route : sorted) {
+            lines.add(route.describe());
+        }
+        if (unknownTypes.sum() > 0) {
+            lines.add("unknown types: " + unknownTypes.sum());
+        }
+        return lines;
+    }
+
+    String getLaneSummary() {
+        return "dbLane active=" + dbPool.getActiveCount() + "/" + dbPool.getMaximumPoolSize() +
+                ", queued=" + dbPool.getQueue().size() +
+                ", rejected=" + rejected.sum();
+    }
+
+    // ==================== ROUTE ====================
+
+    static final class Route {
+        private final String type;
+        private final boolean requiresAuth;
+        private final Lane lane;
+        private final Handler handler;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+
+        private Route(String type, boolean requiresAuth, Lane lane, Handler handler) {
+            this.type = type;
+            this.requiresAuth = requiresAuth;
+            this.lane = lane;
+            this.handler = handler;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        String getType() {
+            return type;
+        }
+
+        boolean requiresAuth() {
+            return requiresAuth;
+        }
+
+        Lane getLane() {
+            return lane;
+        }
+
+        /**
+         * Run the handler and record its latency (exceptions are counted, then rethrown)
+         */
+        void invoke(ClientHandler client, JsonObject message) throws Exception {
+            long start = System.nanoTime();
+            try {
+                handler.handle(client, message);
+            } catch (Exception e) {
+                errors.increment();
+                throw e;
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        private String describe() {
+            long n = count.sum();
+            StringBuilder sb = new StringBuilder();
+            sb.append(type).append(" [").append(lane).append("] n=").append(n)
+                    .append(", avg=").append(String.format("%.2f", totalNanos.sum() / 1e6 / Math.max(1, n))).append("ms");
+            if (errors.sum() > 0) {
+                sb.append(", errors=").append(errors.sum());
+            }
+            sb.append(", hist=");
+            for (int i = 0; i < buckets.length; i++) {
+                if (i > 0) {
+                    sb.append('/');
+                }
+                sb.append(buckets[i].sum());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Bucket labels for getStats() output, e.g. "<1/<5/<20/<100/<500/>=500 ms"
+     */
+    static String getHistogramLegend() {
+        StringBuilder sb = new StringBuilder();
+        for (long bound : BUCKET_BOUNDS_MS) {
+            sb.append('<').append(bound).append('/');
+        }
+        return sb.append(">=").append(BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]).append(" ms").toString();
+    }
+
+    // ==================== DB LANE ====================
+
+    /**
+     * Runs one connection's tasks one at a time on the shared DB pool
+     */
+    private final class SerialLane implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean active = false;
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (tasks.size() >= laneMax) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("DB lane full (" + laneMax + " pending)");
+                }
+                tasks.addLast(task);
+                if (active) {
+                    return;
+                }
+                active = true;
+            }
+            try {
+                dbPool.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Pool saturated: refuse instead of running on the caller's I/O thread.
+                // The lane was idle and only its connection's thread calls execute(),
+                // so this task is the only one queued.
+                synchronized (this) {
+                    tasks.remove(task);
+                    active = false;
+                }
+                rejected.increment();
+                throw e;
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.pollFirst();
+                    if (task == null) {
+                        active = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("❌ [Dispatch] DB lane task failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.edugame.server.network;
+
+import com.edugame.common.wire.BinaryCodec;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NioConnection - State of one non-blocking client socket
+ *
+ * - Splits inbound bytes into newline-delimited UTF-8 frames or
+ *   length-prefixed binary frames (first byte BinaryCodec.MAGIC)
+ * - Queues frames and drains them in order on the worker pool
+ * - Queues outbound bytes and writes them when the socket is writable
+ */
+final class NioConnection {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_PENDING_FRAMES = 64;
+    private static final int OUTBOUND_HIGH_WATER = 256 * 1024;
+    private static final int OUTBOUND_LOW_WATER = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final NioTransport.IoLoop loop;
+    private final NioTransport transport;
+    private final int maxFrameBytes;
+    private final SocketAddress remoteAddress;
+
+    private volatile SelectionKey key;
+    private ClientHandler handler;
+
+    // Inbound (selector thread only)
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte[] lineBuffer = new byte[1024];
+    private int lineLength = 0;
+    private boolean inBinaryFrame = false;
+    private int binaryFrameTotal = -1; // header + body, known once the header is complete
+
+    // Frames waiting for the worker pool
+    // String (JSON line) or Map (decoded binary frame)
+    private final Queue<Object> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingFrames = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private volatile boolean readPaused = false;
+
+    // Outbound
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+    private final AtomicInteger outboundBytes = new AtomicInteger();
+    private volatile Runnable writableListener;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean closeDispatched = new AtomicBoolean(false);
+
+    NioConnection(SocketChannel channel, NioTransport.IoLoop loop, NioTransport transport, int maxFrameBytes) {
+        this.channel = channel;
+        this.loop = loop;
+        this.transport = transport;
+        this.maxFrameBytes = maxFrameBytes;
+
+        SocketAddress address = null;
+        try {
+            address = channel.getRemoteAddress();
+        } catch (IOException e) {
+            // Leave null - only used for logging
+        }
+        this.remoteAddress = address;
+    }
+
+    void attach(ClientHandler handler) {
+        this.handler = handler;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+        if (closed.get()) {
+            key.cancel();
+        }
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    // ==================== INBOUND ====================
+
+    /**
+     * Called on the selector thread when data is available
+     */
+    void onReadable() throws IOException {
+        int read = channel.read(readBuffer);
+        if (read < 0) {
+            close();
+            return;
+        }
+        if (read == 0) {
+            return;
+        }
+
+        readBuffer.flip();
+        byte[] data = readBuffer.array();
+        int pos = readBuffer.position();
+        int end = readBuffer.limit();
+        boolean gotFrame = false;
+
+        while (pos < end) {
+            if (!inBinaryFrame && lineLength == 0 && data[pos] == BinaryCodec.MAGIC) {
+                inBinaryFrame = true;
+                binaryFrameTotal = -1;
+            }
+
+            if (inBinaryFrame) {
+                int need = (binaryFrameTotal < 0 ? BinaryCodec.HEADER_SIZE : binaryFrameTotal) - lineLength;
+                int take = Math.min(need, end - pos);
+                appendToLine(data, pos, take);
+                pos += take;
+
+                if (binaryFrameTotal < 0 && lineLength == BinaryCodec.HEADER_SIZE) {
+                    int bodyLength = BinaryCodec.readLength(lineBuffer, 1);
+                    if (bodyLength <= 0 || bodyLength > maxFrameBytes) {
+                        System.err.println("⚠️ [NIO] Bad binary frame length from " + remoteAddress + " - closing");
+                        readBuffer.clear();
+                        close();
+                        return;
+                    }
+                    binaryFrameTotal = BinaryCodec.HEADER_SIZE + bodyLength;
+                }
+                if (binaryFrameTotal > 0 && lineLength == binaryFrameTotal) {
+                    if (!completeBinary()) {
+                        readBuffer.clear();
+                        close();
+                        return;
+                    }
+                    gotFrame = true;
+                }
+                continue;
+            }
+
+            int newline = -1;
+            for (int i = pos; i < end; i++) {
+                if (data[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0) {
+                appendToLine(data, pos, end - pos);
+                pos = end;
+            } else {
+                appendToLine(data, pos, newline - pos);
+                pos = newline + 1;
+                gotFrame |= completeLine();
+            }
+        }
+        readBuffer.clear();
+
+        if (lineLength > maxFrameBytes) {
+            System.err.println("⚠️ [NIO] Frame too large from " + remoteAddress + " - closing");
+            close();
+            return;
+        }
+
+        if (gotFrame) {
+            if (pendingFrames.get() >= MAX_PENDING_FRAMES) {
+                pauseReading();
+            }
+            scheduleDrain();
+        }
+    }
+
+    private void appendToLine(byte[] src, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (lineLength + length > lineBuffer.length) {
+            int newSize = Math.max(lineBuffer.length * 2, lineLength + length);
+            lineBuffer = Arrays.copyOf(lineBuffer, newSize);
+        }
+        System.arraycopy(src, offset, lineBuffer, lineLength, length);
+        lineLength += length;
+    }
+
+    private boolean completeLine() {
+        int length = lineLength;
+        if (length > 0 && lineBuffer[length - 1] == '\r') {
+            length--;
+        }
+        lineLength = 0;
+
+        if (length == 0) {
+            return false;
+        }
+
+        inbox.add(new String(lineBuffer, 0, length, StandardCharsets.UTF_8));
+        pendingFrames.incrementAndGet();
+        return true;
+    }
+
+    private boolean completeBinary() {
+        try {
+            inbox.add(BinaryCodec.decode(lineBuffer, BinaryCodec.HEADER_SIZE, lineLength - BinaryCodec.HEADER_SIZE));
+            pendingFrames.incrementAndGet();
+            return true;
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ [NIO] Malformed binary frame from " + remoteAddress + ": " + e.getMessage());
+            return false;
+        } finally {
+            lineLength = 0;
+            inBinaryFrame = false;
+            binaryFrameTotal = -1;
+        }
+    }
+
+    /**
+     * Make sure exactly one drain task is running for this connection
+     */
+    void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            if (!transport.dispatch(this::drain)) {
+                drainScheduled.set(false);
+                pauseReading();
+                loop.stall(this);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            Object frame;
+            while ((frame = inbox.poll()) != null) {
+                pendingFrames.decrementAndGet();
+                try {
+                    handler.handleFrame(frame);
+                } catch (Exception e) {
+                    System.err.println("❌ [NIO] Handler error: " + e.getMessage());
+                }
+            }
+        } finally {
+            drainScheduled.set(false);
+        }
+
+        if (readPaused && !closed.get() && pendingFrames.get() < MAX_PENDING_FRAMES / 2) {
+            loop.execute(this::resumeReading);
+        }
+
+        if (!inbox.isEmpty()) {
+            scheduleDrain();
+        } else if (closed.get() && closeDispatched.compareAndSet(false, true)) {
+            handler.onTransportClosed();
+        }
+    }
+
+    private void pauseReading() {
+        if (!readPaused) {
+            readPaused = true;
+            loop.execute(() -> updateInterest(SelectionKey.OP_READ, false));
+        }
+    }
+
+    private void resumeReading() {
+        if (readPaused) {
+            readPaused = false;
+            updateInterest(SelectionKey.OP_READ, true);
+        }
+    }
+
+    // ==================== OUTBOUND ====================
+
+    /**
+     * Queue one already-encoded frame (any thread)
+     */
+    void send(byte[] frame) throws IOException {
+        if (closed.get()) {
+            throw new IOException("Connection closed");
+        }
+        outboundBytes.addAndGet(frame.length);
+        outbound.add(ByteBuffer.wrap(frame));
+        if (writeRequested.compareAndSet(false, true)) {
+            loop.execute(() -> updateInterest(SelectionKey.OP_WRITE, true));
+        }
+    }
+
+    /**
+     * Called on the selector thread when the socket can accept more bytes
+     */
+    void onWritable() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            int written = channel.write(buffer);
+            int remaining = outboundBytes.addAndGet(-written);
+            if (remaining < OUTBOUND_LOW_WATER && remaining + written >= OUTBOUND_LOW_WATER) {
+                notifyWritable();
+            }
+            if (buffer.hasRemaining()) {
+                return; // Socket buffer full - wait for next OP_WRITE
+            }
+            outbound.poll();
+        }
+
+        writeRequested.set(false);
+        updateInterest(SelectionKey.OP_WRITE, false);
+
+        // A writer may have queued data between the last poll and the flag reset
+        if (!outbound.isEmpty() && writeRequested.compareAndSet(false, true)) {
+            updateInterest(SelectionKey.OP_WRITE, true);
+        }
+    }
+
+    private void updateInterest(int op, boolean enable) {
+        SelectionKey k = key;
+        if (k == null || !k.isValid()) {
+            return;
+        }
+        int ops = k.interestOps();
+        k.interestOps(enable ? (ops | op) : (ops & ~op));
+    }
+
+    /**
+     * False while too many bytes are waiting for the socket
+     */
+    boolean isWritable() {
+        return outboundBytes.get() < OUTBOUND_HIGH_WATER;
+    }
+
+    /**
+     * Called (on the selector thread) once queued bytes drop below the low-water mark
+     */
+    void setWritableListener(Runnable listener) {
+        this.writableListener = listener;
+    }
+
+    private void notifyWritable() {
+        Runnable listener = writableListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    // ==================== CLOSE ====================
+
+    /**
+     * Close the channel (any thread). The handler is notified once, after
+     * all frames already received have been dispatched.
+     */
+    void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        outbound.clear();
+        outboundBytes.set(0);
+
+        if (handler != null) {
+            scheduleDrain();
+        }
+    }
+}
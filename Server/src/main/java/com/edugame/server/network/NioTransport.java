@@ -0,0 +1,308 @@
+package com.edugame.server.network;
+
+import com.edugame.server.config.ConfigManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NioTransport - Selector based TCP transport
+ *
+ * - 1 acceptor (the thread calling serve())
+ * - N selector threads doing non-blocking read/write + newline framing
+ * - Bounded worker pool running ClientHandler.handleMessage for complete frames
+ *
+ * Frames of one connection are always dispatched in order (one drain task per
+ * connection at a time), so handlers keep the same semantics as blocking mode.
+ */
+public class NioTransport {
+
+    private static final long STALL_RETRY_MS = 50;
+
+    private final int port;
+    private final GameServer server;
+    private final int maxFrameBytes;
+
+    private final ThreadPoolExecutor workerPool;
+    private final IoLoop[] ioLoops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private volatile boolean running;
+
+    public NioTransport(int port, GameServer server) {
+        this.port = port;
+        this.server = server;
+        this.maxFrameBytes = ConfigManager.getNioMaxFrameBytes();
+
+        int workers = ConfigManager.getNioWorkerThreads();
+        AtomicInteger workerIds = new AtomicInteger();
+        this.workerPool = new ThreadPoolExecutor(
+                workers, workers,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ConfigManager.getNioWorkerQueueSize()),
+                r -> {
+                    Thread t = new Thread(r, "NioWorker-" + workerIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.ioLoops = new IoLoop[ConfigManager.getNioIoThreads()];
+    }
+
+    /**
+     * Bind the listening socket and start selector threads
+     */
+    public void bind() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        for (int i = 0; i < ioLoops.length; i++) {
+            ioLoops[i] = new IoLoop(i + 1);
+            ioLoops[i].start();
+        }
+
+        System.out.println("✓ NIO transport bound on port " + port +
+                " (io=" + ioLoops.length + ", workers=" + workerPool.getCorePoolSize() + ")");
+    }
+
+    /**
+     * Accept loop - blocks until stop() is called
+     */
+    public void serve() {
+        while (running) {
+            try {
+                acceptSelector.select();
+                Iterator<SelectionKey> it = acceptSelector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        acceptPending();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("✗ Error accepting client: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void acceptPending() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            IoLoop loop = ioLoops[Math.floorMod(nextLoop.getAndIncrement(), ioLoops.length)];
+            NioConnection connection = new NioConnection(channel, loop, this, maxFrameBytes);
+
+            try {
+                ClientHandler handler = new ClientHandler(connection, server, server.getMatchmakingManager());
+                connection.attach(handler);
+                server.registerClient(handler);
+                loop.register(connection);
+
+                System.out.println("📊 Active connections: " + server.getConnectedClientsCount());
+            } catch (SQLException e) {
+                System.err.println("✗ Could not create handler for " + connection.getRemoteAddress() +
+                        ": " + e.getMessage());
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Hand a drain task to the worker pool.
+     * @return false if the pool is saturated (caller should back off)
+     */
+    boolean dispatch(Runnable task) {
+        try {
+            workerPool.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public void stop() {
+        running = false;
+
+        try {
+            if (acceptSelector != null) {
+                acceptSelector.close();
+            }
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Error closing NIO server channel: " + e.getMessage());
+        }
+
+        for (IoLoop loop : ioLoops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+
+        workerPool.shutdown();
+        try {
+            if (!workerPool.awaitTermination(2, TimeUnit.SECONDS)) {
+                workerPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workerPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        System.out.println("✓ NIO transport stopped");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getWorkerQueueSize() {
+        return workerPool.getQueue().size();
+    }
+
+    public int getActiveWorkerCount() {
+        return workerPool.getActiveCount();
+    }
+
+    // ==================== SELECTOR THREAD ====================
+
+    /**
+     * One selector + thread. All interestOps changes for its connections
+     * go through execute() so they run on this thread.
+     */
+    final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Queue<NioConnection> stalled = new ConcurrentLinkedQueue<>();
+
+        IoLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "NioIo-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void register(NioConnection connection) {
+            execute(() -> {
+                try {
+                    SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                    connection.setKey(key);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            });
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Worker pool was full - retry dispatching this connection later
+         */
+        void stall(NioConnection connection) {
+            stalled.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    if (stalled.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.select(STALL_RETRY_MS);
+                    }
+
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            connection.close();
+                        }
+                    }
+
+                    for (int i = stalled.size(); i > 0; i--) {
+                        NioConnection connection = stalled.poll();
+                        if (connection != null) {
+                            connection.scheduleDrain();
+                        }
+                    }
+                } catch (ClosedSelectorException e) {
+                    break;
+                } catch (Exception e) {
+                    System.err.println("❌ [NioIo] Selector error: " + e.getMessage());
+                }
+            }
+        }
+
+        void shutdown() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    Object attachment = key.attachment();
+                    if (attachment instanceof NioConnection) {
+                        ((NioConnection) attachment).close();
+                    }
+                }
+                selector.close();
+            } catch (Exception e) {
+                // Ignore - shutting down
+            }
+        }
+    }
+}
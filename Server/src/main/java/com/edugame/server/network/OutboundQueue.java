@@ -0,0 +1,255 @@
+package com.edugame.server.network;
+
+import com.edugame.server.config.ConfigManager;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OutboundQueue - Bounded per-connection send queue
+ *
+ * - Callers only enqueue, they never block on the peer's socket
+ * - One drain task per connection writes queued frames in order and
+ *   flushes once per batch
+ * - Slow consumer policy: a newer GAME_UPDATE replaces unsent older ones;
+ *   if the queue stays full longer than the stall timeout (or doubles past
+ *   its limit) the connection is dropped
+ */
+final class OutboundQueue {
+
+    /**
+     * Where drained frames go (socket stream or NIO connection)
+     */
+    interface Sink {
+        /** Write all frames, then flush once */
+        void write(List<byte[]> frames) throws IOException;
+
+        /** False while the transport is still busy with earlier bytes */
+        boolean isWritable();
+    }
+
+    private static final int MAX_BATCH = 64;
+    private static final long CLOSE_FLUSH_TIMEOUT_MS = 1000;
+
+    private static final AtomicInteger writerIds = new AtomicInteger();
+
+    // Threads only exist while some connection has data to write
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "OutboundWriter-" + writerIds.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final AtomicLong totalDroppedUpdates = new AtomicLong();
+    private static final AtomicLong totalOverflowDisconnects = new AtomicLong();
+
+    private final String name;
+    private final Sink sink;
+    private final Runnable onOverflow;
+    private final int maxFrames;
+    private final long stallTimeoutMs;
+    private final boolean dropUpdates;
+
+    // Guarded by this
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private int pendingUpdates = 0;
+    private boolean draining = false;
+    private boolean closed = false;
+    private long fullSince = 0;
+
+    OutboundQueue(String name, Sink sink, Runnable onOverflow) {
+        this.name = name;
+        this.sink = sink;
+        this.onOverflow = onOverflow;
+        this.maxFrames = ConfigManager.getOutboundMaxFrames();
+        this.stallTimeoutMs = ConfigManager.getOutboundStallTimeoutMs();
+        this.dropUpdates = ConfigManager.isOutboundDropUpdates();
+    }
+
+    /**
+     * Queue one encoded frame (any thread, never blocks on I/O).
+     * @param supersedable true for snapshot frames (GAME_UPDATE) that a newer one replaces
+     * @return false if the frame was dropped or the connection is closed
+     */
+    boolean offer(byte[] frame, boolean supersedable) {
+        boolean schedule = false;
+        boolean overflow = false;
+        boolean accepted = false;
+
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+
+            if (supersedable && dropUpdates && pendingUpdates > 0) {
+                removePendingUpdates();
+            }
+
+            if (queue.size() >= maxFrames) {
+                long now = System.currentTimeMillis();
+                if (fullSince == 0) {
+                    fullSince = now;
+                }
+                if (now - fullSince > stallTimeoutMs || queue.size() >= maxFrames * 2) {
+                    overflow = true;
+                } else if (supersedable && dropUpdates) {
+                    // Client is behind - it will get the next snapshot instead
+                    totalDroppedUpdates.incrementAndGet();
+                    return false;
+                }
+            }
+
+            if (overflow) {
+                closed = true;
+                queue.clear();
+                pendingUpdates = 0;
+            } else {
+                queue.addLast(new Frame(frame, supersedable));
+                if (supersedable) {
+                    pendingUpdates++;
+                }
+                accepted = true;
+                if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+
+        if (overflow) {
+            totalOverflowDisconnects.incrementAndGet();
+            System.err.println("⚠️ [Outbound] " + name + " is not reading (queue full for " +
+                    stallTimeoutMs + "ms) - disconnecting");
+            onOverflow.run();
+        } else if (schedule) {
+            WRITERS.execute(this::drain);
+        }
+        return accepted;
+    }
+
+    private void removePendingUpdates() {
+        Iterator<Frame> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().supersedable) {
+                it.remove();
+                totalDroppedUpdates.incrementAndGet();
+            }
+        }
+        pendingUpdates = 0;
+    }
+
+    /**
+     * Sink became writable again (NIO high-water mark cleared)
+     */
+    void resume() {
+        boolean schedule = false;
+        synchronized (this) {
+            if (!closed && !draining && !queue.isEmpty()) {
+                draining = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            WRITERS.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+
+        while (true) {
+            batch.clear();
+            synchronized (this) {
+                if (closed || queue.isEmpty() || !sink.isWritable()) {
+                    draining = false;
+                    notifyAll();
+                    return;
+                }
+                while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+                    Frame frame = queue.pollFirst();
+                    if (frame.supersedable) {
+                        pendingUpdates--;
+                    }
+                    batch.add(frame.bytes);
+                }
+                if (queue.size() < maxFrames) {
+                    fullSince = 0;
+                }
+            }
+
+            try {
+                sink.write(batch);
+            } catch (IOException e) {
+                synchronized (this) {
+                    closed = true;
+                    queue.clear();
+                    pendingUpdates = 0;
+                    draining = false;
+                    notifyAll();
+                }
+                System.err.println("⚠️ [Outbound] Write to " + name + " failed: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stop accepting frames.
+     * @param flush wait briefly for already queued frames (e.g. LOGOUT response) to be written
+     */
+    void close(boolean flush) {
+        synchronized (this) {
+            if (flush) {
+                long deadline = System.currentTimeMillis() + CLOSE_FLUSH_TIMEOUT_MS;
+                while (!closed && (draining || !queue.isEmpty())) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            closed = true;
+            queue.clear();
+            pendingUpdates = 0;
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized int size() {
+        return queue.size();
+    }
+
+    static long getTotalDroppedUpdates() {
+        return totalDroppedUpdates.get();
+    }
+
+    static long getTotalOverflowDisconnects() {
+        return totalOverflowDisconnects.get();
+    }
+
+    private static final class Frame {
+        final byte[] bytes;
+        final boolean supersedable;
+
+        Frame(byte[] bytes, boolean supersedable) {
+            this.bytes = bytes;
+            this.supersedable = supersedable;
+        }
+    }
+}
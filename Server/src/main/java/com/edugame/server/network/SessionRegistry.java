@@ -0,0 +1,182 @@
+package com.edugame.server.network;
+
+import com.edugame.server.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SessionRegistry - Connected clients indexed for constant-time lookup
+ *
+ * - All connections (logged in or not)
+ * - Logged-in sessions by userId and by username
+ * - Cached array snapshots for broadcasts, rebuilt only after a change
+ *   (each change bumps a version; a snapshot is only replaced by a newer one)
+ *
+ * ClientHandler reports login/logout through GameServer, so lookups never
+ * need to scan the whole connection list.
+ */
+public class SessionRegistry {
+
+    private static final ClientHandler[] EMPTY = new ClientHandler[0];
+
+    /**
+     * Array built from the maps as they were at version
+     */
+    private record Snapshot(long version, ClientHandler[] handlers) {
+    }
+
+    private final Set<ClientHandler> connections = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Integer, ClientHandler> byUserId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ClientHandler> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClientHandler, User> boundUsers = new ConcurrentHashMap<>();
+
+    // Version bumped after every change; readers rebuild when their snapshot is older
+    private final AtomicLong connectionsVersion = new AtomicLong();
+    private final AtomicLong sessionsVersion = new AtomicLong();
+    private final AtomicReference<Snapshot> connectionSnapshot = new AtomicReference<>(new Snapshot(0, EMPTY));
+    private final AtomicReference<Snapshot> sessionSnapshot = new AtomicReference<>(new Snapshot(0, EMPTY));
+
+    // ==================== CONNECTIONS ====================
+
+    public void addConnection(ClientHandler client) {
+        if (connections.add(client)) {
+            connectionsVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forget a connection and any session bound to it
+     */
+    public void removeConnection(ClientHandler client) {
+        if (connections.remove(client)) {
+            connectionsVersion.incrementAndGet();
+        }
+        User user = boundUsers.get(client);
+        if (user != null) {
+            unbindUser(client, user);
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public boolean isEmpty() {
+        return connections.isEmpty();
+    }
+
+    // ==================== SESSIONS ====================
+
+    /**
+     * Bind a logged-in user to its connection.
+     * @return the handler previously bound to the same userId (another device), or null
+     */
+    public ClientHandler bindUser(ClientHandler client, User user) {
+        User old = boundUsers.put(client, user);
+        if (old != null && old.getUserId() != user.getUserId()) {
+            byUserId.remove(old.getUserId(), client);
+            byUsername.remove(old.getUsername(), client);
+        }
+        ClientHandler previous = byUserId.put(user.getUserId(), client);
+        byUsername.put(user.getUsername(), client);
+        sessionsVersion.incrementAndGet();
+        return previous == client ? null : previous;
+    }
+
+    /**
+     * Unbind a user - only if it is still bound to this connection
+     */
+    public void unbindUser(ClientHandler client, User user) {
+        boolean changed = byUserId.remove(user.getUserId(), client);
+        changed |= byUsername.remove(user.getUsername(), client);
+        boundUsers.computeIfPresent(client, (c, bound) -> bound.getUserId() == user.getUserId() ? null : bound);
+        if (changed) {
+            sessionsVersion.incrementAndGet();
+        }
+    }
+
+    public ClientHandler findByUserId(int userId) {
+        return byUserId.get(userId);
+    }
+
+    public ClientHandler findByUsername(String username) {
+        return username == null ? null : byUsername.get(username);
+    }
+
+    public boolean isOnline(int userId) {
+        return byUserId.containsKey(userId);
+    }
+
+    public boolean isOnline(String username) {
+        return username != null && byUsername.containsKey(username);
+    }
+
+    public int getSessionCount() {
+        return byUserId.size();
+    }
+
+    public Set<Integer> getOnlineUserIds() {
+        return new HashSet<>(byUserId.keySet());
+    }
+
+    public List<String> getOnlineUsernames() {
+        return new ArrayList<>(byUsername.keySet());
+    }
+
+    // ==================== SNAPSHOTS ====================
+
+    /**
+     * All connections. The returned array is shared - do not modify it.
+     */
+    public ClientHandler[] connectionSnapshot() {
+        long version = connectionsVersion.get();
+        Snapshot current = connectionSnapshot.get();
+        if (current.version() == version) {
+            return current.handlers();
+        }
+        // Read after the version, so it holds at least every change up to it
+        return publish(connectionSnapshot, new Snapshot(version, connections.toArray(EMPTY)));
+    }
+
+    /**
+     * Logged-in connections only. The returned array is shared - do not modify it.
+     */
+    public ClientHandler[] sessionSnapshot() {
+        long version = sessionsVersion.get();
+        Snapshot current = sessionSnapshot.get();
+        if (current.version() == version) {
+            return current.handlers();
+        }
+        return publish(sessionSnapshot, new Snapshot(version, new HashSet<>(byUserId.values()).toArray(EMPTY)));
+    }
+
+    public void clear() {
+        connections.clear();
+        byUserId.clear();
+        byUsername.clear();
+        boundUsers.clear();
+        connectionsVersion.incrementAndGet();
+        sessionsVersion.incrementAndGet();
+    }
+
+    /**
+     * Install built unless a reader already published a newer snapshot
+     */
+    private static ClientHandler[] publish(AtomicReference<Snapshot> ref, Snapshot built) {
+        while (true) {
+            Snapshot current = ref.get();
+            if (current.version() >= built.version()) {
+                return built.handlers(); // Still correct for this caller, just not cached
+            }
+            if (ref.compareAndSet(current, built)) {
+                return built.handlers();
+            }
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.edugame.server.network;
 
+import com.edugame.common.wire.VoiceHeader;
+import com.edugame.server.config.ConfigManager;
+import com.edugame.server.network.VoiceRoomTable.Member;
+import com.edugame.server.network.VoiceRoomTable.Room;
+import com.edugame.server.util.TimerService;
+
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * VoiceChatServer - UDP Server for voice chat
@@ -17,49 +30,57 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * - Broadcast to other clients in same room
  * - Track active voice clients per room
  * - Handle JOIN_VOICE and LEAVE_VOICE messages
+ *
+ * Relay:
+ * - DatagramChannel + một direct ByteBuffer cố định cho mỗi worker: không
+ *   cấp phát gì cho mỗi packet (nhận, tra phòng, gửi lại đều trên buffer đó)
+ * - voice.relay.threads worker nhận song song. Trên Linux mỗi worker có
+ *   channel riêng cùng port (SO_REUSEPORT, kernel chia theo địa chỉ người
+ *   gửi); nơi khác các worker dùng chung một channel
+ * - Packet mang VoiceHeader (roomId / streamId ngắn cấp lúc JOIN_VOICE):
+ *   relay tra phòng và người gửi bằng index mảng, đếm gửi theo phòng
+ * - Client chỉ gửi khi có tiếng nói (VAD); khi im lặng chỉ gửi marker
+ *   FLAG_SILENCE thưa thớt, relay chỉ chuyển marker đầu mỗi khoảng lặng
+ * - Phòng có thể chuyển sang trộn phía server (MixMode, xem VoiceMixer)
+ * - Đồng hồ thô cập nhật mỗi giây thay cho currentTimeMillis() mỗi người nhận
  */
 public class VoiceChatServer {
 
     private static final int UDP_PORT = 9999;
     private static final int BUFFER_SIZE = 2048;
+    private static final long CLIENT_TIMEOUT_MS = 30000; // 30s timeout
+
+    private static final byte[] JOIN_PREFIX = "JOIN_VOICE:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LEAVE_PREFIX = "LEAVE_VOICE:".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_CONTROL_LENGTH = 100;
 
-    private DatagramSocket socket;
-    private Thread receiveThread;
-    private AtomicBoolean running = new AtomicBoolean(false);
+    private final List<DatagramChannel> channels = new CopyOnWriteArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private boolean reusePort;
 
-    // Track clients: roomId -> List<ClientInfo>
-    private Map<String, List<ClientInfo>> roomClients = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> clockTask;
+    private ScheduledFuture<?> cleanupTask;
+    private volatile long clockMs = System.currentTimeMillis();
 
-    // Track individual clients: userId -> ClientInfo
-    private Map<Integer, ClientInfo> activeClients = new ConcurrentHashMap<>();
+    private final VoiceRoomTable rooms = new VoiceRoomTable();
+    private final Map<String, MixMode> mixModes = new ConcurrentHashMap<>();
 
     /**
-     * Client information for UDP communication
+     * How a room's audio reaches its listeners
      */
-    private static class ClientInfo {
-        int userId;
-        String roomId;
-        InetAddress address;
-        int port;
-        long lastActivity;
-
-        ClientInfo(int userId, String roomId, InetAddress address, int port) {
-            this.userId = userId;
-            this.roomId = roomId;
-            this.address = address;
-            this.port = port;
-            this.lastActivity = System.currentTimeMillis();
-        }
-
-        void updateActivity() {
-            this.lastActivity = System.currentTimeMillis();
-        }
-
-        boolean isActive() {
-            return System.currentTimeMillis() - lastActivity < 30000; // 30s timeout
-        }
+    public enum MixMode {
+        OFF,  // Relay each speaker's packets to every other member
+        ON,   // Server mixes one stream per listener
+        AUTO  // ON from voice.mix.auto.members members
     }
 
+    private final LongAdder packetsIn = new LongAdder();
+    private final LongAdder packetsOut = new LongAdder();
+    private final LongAdder packetsDropped = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+    private final LongAdder silenceDropped = new LongAdder();
+
     /**
      * Start voice chat server
      *
@@ -71,29 +92,52 @@ public class VoiceChatServer {
             return false;
         }
 
+        int threads = Math.max(1, ConfigManager.getVoiceRelayThreads());
+
         try {
-            socket = new DatagramSocket(UDP_PORT);
-            socket.setReuseAddress(true);
+            reusePort = threads > 1 && supportsReusePort();
+            channels.add(openChannel(reusePort));
+            if (reusePort) {
+                for (int i = 1; i < threads; i++) {
+                    try {
+                        channels.add(openChannel(true));
+                    } catch (IOException e) {
+                        System.err.println("⚠️ Voice relay: extra SO_REUSEPORT socket failed, " +
+                                "continuing with " + channels.size() + ": " + e.getMessage());
+                        break;
+                    }
+                }
+            }
             running.set(true);
+            clockMs = System.currentTimeMillis();
 
             System.out.println("=".repeat(60));
             System.out.println("🎤 VOICE CHAT SERVER STARTED");
             System.out.println("   Port: " + UDP_PORT);
             System.out.println("   Buffer Size: " + BUFFER_SIZE + " bytes");
+            System.out.println("   Relay workers: " + threads + " on " + channels.size() +
+                    (reusePort ? " SO_REUSEPORT sockets" : " shared socket"));
             System.out.println("=".repeat(60));
 
-            // Start receive thread
-            receiveThread = new Thread(this::receiveLoop, "VoiceChat-Server");
-            receiveThread.start();
+            // Start receive workers
+            for (int i = 0; i < threads; i++) {
+                DatagramChannel channel = channels.get(i % channels.size());
+                Thread worker = new Thread(() -> receiveLoop(channel), "VoiceChat-Relay-" + (workers.size() + 1));
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
 
-            // Start cleanup thread
-            Thread cleanupThread = new Thread(this::cleanupLoop, "VoiceChat-Cleanup");
-            cleanupThread.setDaemon(true);
-            cleanupThread.start();
+            // Coarse clock + cleanup of inactive clients
+            TimerService timers = TimerService.getInstance();
+            clockTask = timers.scheduleAtFixedRate(
+                    () -> clockMs = System.currentTimeMillis(), 1, 1, TimeUnit.SECONDS);
+            cleanupTask = timers.scheduleAtFixedRate(this::cleanupInactive, 10, 10, TimeUnit.SECONDS);
             return true;
-        } catch (SocketException e) {
+        } catch (IOException e) {
             System.err.println("❌ Failed to start voice chat server: " + e.getMessage());
             e.printStackTrace();
+            closeChannels();
         }
         return false;
     }
@@ -106,77 +150,121 @@ public class VoiceChatServer {
 
         running.set(false);
 
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        if (clockTask != null) {
+            clockTask.cancel(false);
+        }
+        if (cleanupTask != null) {
+            cleanupTask.cancel(false);
         }
 
-        if (receiveThread != null) {
-            receiveThread.interrupt();
+        // Closing the channels wakes the workers blocked in receive()
+        closeChannels();
+        for (Thread worker : workers) {
+            worker.interrupt();
         }
+        workers.clear();
 
-        roomClients.clear();
-        activeClients.clear();
+        for (Room room : rooms.rooms()) {
+            VoiceMixer mixer = room.mixer;
+            if (mixer != null) {
+                mixer.stop();
+            }
+        }
+        rooms.clear();
 
         System.out.println("✅ Voice chat server stopped");
     }
 
+    private static boolean supportsReusePort() {
+        try (DatagramChannel probe = DatagramChannel.open()) {
+            return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static DatagramChannel openChannel(boolean reusePort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, ConfigManager.getVoiceSocketBufferBytes());
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, ConfigManager.getVoiceSocketBufferBytes());
+            channel.bind(new InetSocketAddress(UDP_PORT));
+            channel.configureBlocking(true);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        channels.clear();
+    }
+
     /**
-     * Main receive loop
+     * Receive loop of one relay worker - one reused direct buffer
      */
-    private void receiveLoop() {
-        byte[] buffer = new byte[BUFFER_SIZE];
+    private void receiveLoop(DatagramChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 
         while (running.get()) {
             try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                socket.receive(packet);
-
-                // Process packet in separate thread to avoid blocking
-                byte[] data = Arrays.copyOf(packet.getData(), packet.getLength());
-                InetAddress address = packet.getAddress();
-                int port = packet.getPort();
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                if (sender == null) {
+                    continue;
+                }
+                buffer.flip();
+                packetsIn.increment();
 
-                processPacket(data, address, port);
+                processPacket(channel, buffer, sender);
 
+            } catch (ClosedChannelException e) {
+                break;
             } catch (IOException e) {
                 if (running.get()) {
                     System.err.println("❌ Error receiving packet: " + e.getMessage());
                 }
+            } catch (RuntimeException e) {
+                System.err.println("❌ Error processing packet: " + e.getMessage());
             }
         }
     }
 
     /**
-     * Process received packet
+     * Process received packet (buffer: position 0, limit = packet length)
      */
-    private void processPacket(byte[] data, InetAddress address, int port) {
-        try {
-            // Check if this is a control message (JOIN_VOICE or LEAVE_VOICE)
-            String message = new String(data, 0, Math.min(50, data.length));
-
-            if (message.startsWith("JOIN_VOICE:")) {
-                handleJoinVoice(message, address, port);
-                return;
-            }
-
-            if (message.startsWith("LEAVE_VOICE:")) {
-                handleLeaveVoice(message);
-                return;
-            }
-
-            // Otherwise, it's audio data - forward to room members
-            handleAudioPacket(data, address, port);
+    private void processPacket(DatagramChannel channel, ByteBuffer buffer, SocketAddress sender) {
+        // Control messages (JOIN_VOICE or LEAVE_VOICE) are rare - decoding them to a String is fine
+        if (startsWith(buffer, JOIN_PREFIX)) {
+            handleJoinVoice(channel, decodeControl(buffer), (InetSocketAddress) sender);
+            return;
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error processing packet: " + e.getMessage());
+        if (startsWith(buffer, LEAVE_PREFIX)) {
+            handleLeaveVoice(channel, decodeControl(buffer));
+            return;
         }
+
+        // Otherwise, it's audio data - forward to room members
+        handleAudioPacket(channel, buffer, sender);
     }
 
     /**
      * Handle JOIN_VOICE message
-     * Format: JOIN_VOICE:userId:roomId
+     * Format: JOIN_VOICE:userId:roomId → reply VOICE_JOINED:voiceRoomId:streamId
      */
-    private void handleJoinVoice(String message, InetAddress address, int port) {
+    private void handleJoinVoice(DatagramChannel channel, String message, InetSocketAddress address) {
         try {
             String[] parts = message.split(":");
             if (parts.length != 3) {
@@ -187,20 +275,25 @@ public class VoiceChatServer {
             int userId = Integer.parseInt(parts[1]);
             String roomId = parts[2];
 
-            ClientInfo client = new ClientInfo(userId, roomId, address, port);
-
-            // Add to active clients
-            activeClients.put(userId, client);
-
-            // Add to room
-            roomClients.computeIfAbsent(roomId, k -> new ArrayList<>()).add(client);
+            Member previous = rooms.getMember(userId);
+            Member member = rooms.join(userId, roomId, address, clockMs);
+            if (previous != null && previous.room != (member != null ? member.room : null)) {
+                updateMixing(previous.room);
+            }
+            if (member == null) {
+                System.err.println("⚠️ No voice room / stream id left for user " + userId);
+                return;
+            }
+            updateMixing(member.room);
 
             System.out.println("✅ User " + userId + " joined voice chat in room " + roomId);
-            System.out.println("   Address: " + address + ":" + port);
-            System.out.println("   Room members: " + roomClients.get(roomId).size());
+            System.out.println("   Address: " + address);
+            System.out.println("   Voice ids: room=" + member.room.id + ", stream=" + member.streamId);
+            System.out.println("   Room members: " + member.room.members.length);
 
-            // Send confirmation packet
-            sendConfirmation(client, "VOICE_JOINED");
+            // Send confirmation packet with the ids the client must put in VoiceHeader
+            sendConfirmation(channel, address,
+                    "VOICE_JOINED:" + member.room.id + ":" + member.streamId);
 
         } catch (Exception e) {
             System.err.println("❌ Error handling JOIN_VOICE: " + e.getMessage());
@@ -211,7 +304,7 @@ public class VoiceChatServer {
      * Handle LEAVE_VOICE message
      * Format: LEAVE_VOICE:userId:roomId
      */
-    private void handleLeaveVoice(String message) {
+    private void handleLeaveVoice(DatagramChannel channel, String message) {
         try {
             String[] parts = message.split(":");
             if (parts.length != 3) return;
@@ -219,24 +312,12 @@ public class VoiceChatServer {
             int userId = Integer.parseInt(parts[1]);
             String roomId = parts[2];
 
-            // Remove from active clients
-            ClientInfo client = activeClients.remove(userId);
-
-            if (client != null) {
-                // Remove from room
-                List<ClientInfo> roomMembers = roomClients.get(roomId);
-                if (roomMembers != null) {
-                    roomMembers.removeIf(c -> c.userId == userId);
-
-                    if (roomMembers.isEmpty()) {
-                        roomClients.remove(roomId);
-                    }
-                }
-
+            Member member = rooms.getMember(userId);
+            if (member != null && member.room.roomId.equals(roomId) && leave(userId) != null) {
                 System.out.println("✅ User " + userId + " left voice chat from room " + roomId);
 
                 // Send confirmation
-                sendConfirmation(client, "VOICE_LEFT");
+                sendConfirmation(channel, member.address, "VOICE_LEFT");
             }
 
         } catch (Exception e) {
@@ -246,122 +327,181 @@ public class VoiceChatServer {
 
     /**
      * Handle audio packet - broadcast to room members
+     * Format: [VoiceHeader] [audio data]
+     *
+     * Routed by array index (header roomId / streamId), the same buffer is
+     * re-sent to each member: no copy, no allocation.
      */
-    private void handleAudioPacket(byte[] data, InetAddress senderAddress, int senderPort) {
-        try {
-            // Parse packet metadata
-            if (data.length < 12) return; // Minimum: userId(4) + roomIdLen(4) + roomId(1+) + audio
-
-            int userId = ((data[0] & 0xFF) << 24) |
-                    ((data[1] & 0xFF) << 16) |
-                    ((data[2] & 0xFF) << 8) |
-                    (data[3] & 0xFF);
-
-            int roomIdLength = ((data[4] & 0xFF) << 24) |
-                    ((data[5] & 0xFF) << 16) |
-                    ((data[6] & 0xFF) << 8) |
-                    (data[7] & 0xFF);
-
-            if (data.length < 8 + roomIdLength) return;
+    private void handleAudioPacket(DatagramChannel channel, ByteBuffer buffer, SocketAddress source) {
+        int length = buffer.limit();
+        if (!VoiceHeader.isVoice(buffer) || length == VoiceHeader.SIZE) {
+            packetsDropped.increment(); // Old header format or empty frame
+            return;
+        }
 
-            String roomId = new String(data, 8, roomIdLength);
+        Room room = rooms.get(VoiceHeader.roomId(buffer));
+        Member sender = room != null ? room.stream(VoiceHeader.streamId(buffer)) : null;
 
-            // Update client activity
-            ClientInfo sender = activeClients.get(userId);
-            if (sender != null) {
-                sender.updateActivity();
-            }
+        // Ids are small and guessable: only the address that joined may use them
+        if (sender == null || !sender.address.equals(source)) {
+            packetsDropped.increment();
+            return;
+        }
 
-            // Get room members
-            List<ClientInfo> roomMembers = roomClients.get(roomId);
-            if (roomMembers == null || roomMembers.isEmpty()) {
+        long now = clockMs;
+        sender.lastActivity = now;
+        long activeSince = now - CLIENT_TIMEOUT_MS;
+        room.packetsIn.increment();
+
+        // Silence: only the marker that starts a pause is relayed (listeners
+        // learn the talkspurt ended); repeats are keepalives and stop here
+        VoiceMixer mixer = room.mixer;
+        if ((VoiceHeader.flags(buffer) & VoiceHeader.FLAG_SILENCE) != 0) {
+            boolean pauseStart = !sender.silent;
+            sender.silent = true;
+            if (!pauseStart || mixer != null) {
+                silenceDropped.increment();
                 return;
             }
+        } else {
+            sender.silent = false;
+        }
 
-            // Broadcast to all members except sender
-            int sent = 0;
-            for (ClientInfo member : roomMembers) {
-                if (member.userId != userId && member.isActive()) {
-                    try {
-                        DatagramPacket packet = new DatagramPacket(
-                                data,
-                                data.length,
-                                member.address,
-                                member.port
-                        );
-                        socket.send(packet);
-                        sent++;
-                    } catch (IOException e) {
-                        System.err.println("⚠️ Failed to send to user " + member.userId);
-                    }
-                }
-            }
+        // Mixing room: the mixer tick sends one packet per listener instead
+        if (mixer != null) {
+            mixer.push(sender, buffer);
+            return;
+        }
 
-            // Optional: Log every 100 packets to avoid spam
-            if (Math.random() < 0.01) {
-                System.out.println("📡 Audio packet from user " + userId +
-                        " in room " + roomId +
-                        " → sent to " + sent + " members");
+        // Broadcast to all members except sender
+        int sent = 0;
+        for (Member member : room.members) {
+            if (member == sender || member.lastActivity < activeSince) {
+                continue;
             }
+            try {
+                buffer.position(0);
+                channel.send(buffer, member.address);
+                sent++;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                sendErrors.increment();
+            }
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Error handling audio packet: " + e.getMessage());
+        if (sent > 0) {
+            room.packetsOut.add(sent);
+            room.bytesOut.add((long) sent * length);
+            packetsOut.add(sent);
         }
     }
 
     /**
      * Send confirmation message to client
      */
-    private void sendConfirmation(ClientInfo client, String message) {
+    private void sendConfirmation(DatagramChannel channel, InetSocketAddress address, String message) {
         try {
-            byte[] data = message.getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                    data,
-                    data.length,
-                    client.address,
-                    client.port
-            );
-            socket.send(packet);
+            channel.send(ByteBuffer.wrap(message.getBytes(StandardCharsets.US_ASCII)), address);
         } catch (IOException e) {
             System.err.println("⚠️ Failed to send confirmation: " + e.getMessage());
         }
     }
 
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.limit() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decodeControl(ByteBuffer buffer) {
+        byte[] bytes = new byte[Math.min(MAX_CONTROL_LENGTH, buffer.limit())];
+        buffer.get(0, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    private Member leave(int userId) {
+        return left(rooms.remove(userId));
+    }
+
+    private Member leave(int userId, String roomId) {
+        return left(rooms.remove(userId, roomId));
+    }
+
+    private Member left(Member member) {
+        if (member != null) {
+            updateMixing(member.room);
+        }
+        return member;
+    }
+
     /**
-     * Cleanup inactive clients
+     * Start / stop the mixer of a room after its members or mix mode changed
      */
-    private void cleanupLoop() {
-        while (running.get()) {
-            try {
-                Thread.sleep(10000); // Check every 10 seconds
+    private void updateMixing(Room room) {
+        synchronized (room) {
+            int members = room.members.length;
+            MixMode mode = getMixMode(room.roomId);
+            boolean mix = members > 0 && running.get() && !channels.isEmpty() &&
+                    (mode == MixMode.ON || (mode == MixMode.AUTO && members >= ConfigManager.getVoiceMixAutoMembers()));
+
+            if (mix && room.mixer == null) {
+                VoiceMixer mixer = new VoiceMixer(room, channels.get(0), packetsOut);
+                mixer.start();
+                room.mixer = mixer;
+                System.out.println("🎚️ Voice room " + room.roomId + " switched to server mixing (" + members + " members)");
+            } else if (!mix && room.mixer != null) {
+                room.mixer.stop();
+                room.mixer = null;
+                System.out.println("🎚️ Voice room " + room.roomId + " switched to relay");
+            }
+        }
+    }
 
-                // Remove inactive clients
-                List<Integer> toRemove = new ArrayList<>();
+    /**
+     * Choose relay or server mixing for one room. AUTO mixes once the room
+     * has voice.mix.auto.members members. Kept until changed, also while the
+     * room has no voice members.
+     */
+    public void setMixMode(String roomId, MixMode mode) {
+        mixModes.put(roomId, mode);
+        Room room = rooms.get(roomId);
+        if (room != null) {
+            updateMixing(room);
+        }
+    }
 
-                for (Map.Entry<Integer, ClientInfo> entry : activeClients.entrySet()) {
-                    if (!entry.getValue().isActive()) {
-                        toRemove.add(entry.getKey());
-                    }
-                }
+    public MixMode getMixMode(String roomId) {
+        MixMode mode = mixModes.get(roomId);
+        return mode != null ? mode : parseMixMode(ConfigManager.getVoiceMixMode(), MixMode.OFF);
+    }
 
-                for (Integer userId : toRemove) {
-                    ClientInfo client = activeClients.remove(userId);
-                    if (client != null) {
-                        // Remove from room
-                        List<ClientInfo> roomMembers = roomClients.get(client.roomId);
-                        if (roomMembers != null) {
-                            roomMembers.removeIf(c -> c.userId == userId);
-                            if (roomMembers.isEmpty()) {
-                                roomClients.remove(client.roomId);
-                            }
-                        }
-
-                        System.out.println("🧹 Cleaned up inactive user " + userId);
-                    }
-                }
+    public static MixMode parseMixMode(String value, MixMode fallback) {
+        try {
+            return MixMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return fallback;
+        }
+    }
 
-            } catch (InterruptedException e) {
-                break;
+    /**
+     * Cleanup inactive clients
+     */
+    private void cleanupInactive() {
+        long activeSince = clockMs - CLIENT_TIMEOUT_MS;
+        for (Room room : new ArrayList<>(rooms.rooms())) {
+            for (Member member : room.members) {
+                if (member.lastActivity < activeSince &&
+                        rooms.getMember(member.userId) == member &&
+                        leave(member.userId) != null) {
+                    System.out.println("🧹 Cleaned up inactive user " + member.userId);
+                }
             }
         }
     }
@@ -370,15 +510,19 @@ public class VoiceChatServer {
      * Get active clients count in room
      */
     public int getRoomVoiceCount(String roomId) {
-        List<ClientInfo> members = roomClients.get(roomId);
-        return members != null ? members.size() : 0;
+        Room room = rooms.get(roomId);
+        return room != null ? room.members.length : 0;
     }
 
     /**
      * Get all active rooms
      */
     public Set<String> getActiveRooms() {
-        return new HashSet<>(roomClients.keySet());
+        Set<String> active = new HashSet<>();
+        for (Room room : rooms.rooms()) {
+            active.add(room.roomId);
+        }
+        return active;
     }
 
     /**
@@ -388,12 +532,12 @@ public class VoiceChatServer {
     public Map<Integer, Boolean> getRoomVoiceStatus(String roomId) {
         Map<Integer, Boolean> status = new HashMap<>();
 
-        List<ClientInfo> members = roomClients.get(roomId);
-        if (members != null) {
-            for (ClientInfo client : members) {
+        Room room = rooms.get(roomId);
+        if (room != null) {
+            for (Member member : room.members) {
                 // Check if client is still active (within 30s timeout)
-                if (client.isActive()) {
-                    status.put(client.userId, true);
+                if (isActive(member)) {
+                    status.put(member.userId, true);
                 }
             }
         }
@@ -409,19 +553,15 @@ public class VoiceChatServer {
         try {
             System.out.println("🔇 Removing voice client: userId=" + userId + ", room=" + roomId);
 
-            // Remove from active clients
-            ClientInfo client = activeClients.remove(userId);
-
-            // Remove from room
-            List<ClientInfo> roomMembers = roomClients.get(roomId);
-            if (roomMembers != null) {
-                roomMembers.removeIf(c -> c.userId == userId);
+            // Only this room - the user may already have joined another voice room
+            Member member = leave(userId, roomId);
+            if (member == null) {
+                return;
+            }
 
-                // Clean up empty room
-                if (roomMembers.isEmpty()) {
-                    roomClients.remove(roomId);
-                    System.out.println("   🧹 Cleaned up empty voice room: " + roomId);
-                }
+            // Clean up empty room
+            if (rooms.get(member.room.roomId) == null) {
+                System.out.println("   🧹 Cleaned up empty voice room: " + member.room.roomId);
             }
 
             System.out.println("   ✅ Voice client removed");
@@ -435,24 +575,63 @@ public class VoiceChatServer {
      * Check if user is in voice chat
      */
     public boolean isUserInVoiceChat(int userId) {
-        ClientInfo client = activeClients.get(userId);
-        return client != null && client.isActive();
+        Member member = rooms.getMember(userId);
+        return member != null && isActive(member);
     }
 
     /**
      * Check if user is in voice chat in specific room
      */
     public boolean isUserInVoiceChatInRoom(int userId, String roomId) {
-        List<ClientInfo> members = roomClients.get(roomId);
-        if (members == null) return false;
+        Member member = rooms.getMember(userId);
+        return member != null && member.room.roomId.equals(roomId) && isActive(member);
+    }
 
-        return members.stream()
-                .anyMatch(c -> c.userId == userId && c.isActive());
+    private boolean isActive(Member member) {
+        return clockMs - member.lastActivity < CLIENT_TIMEOUT_MS;
     }
+
     /**
      * Check if running
      */
     public boolean isRunning() {
         return running.get();
     }
-}
\ No newline at end of file
+
+    public String getStatsSummary() {
+        int mixing = 0;
+        for (Room room : rooms.rooms()) {
+            if (room.mixer != null) {
+                mixing++;
+            }
+        }
+        return "workers=" + workers.size() + (reusePort ? " (reuseport)" : "") +
+                ", rooms=" + rooms.roomCount() +
+                ", mixing=" + mixing +
+                ", clients=" + rooms.memberCount() +
+                ", in=" + packetsIn.sum() +
+                ", out=" + packetsOut.sum() +
+                ", dropped=" + packetsDropped.sum() +
+                ", silenceDropped=" + silenceDropped.sum() +
+                ", sendErrors=" + sendErrors.sum();
+    }
+
+    /**
+     * One line per open voice room: members, relay counters and mixing cost
+     */
+    public List<String> getRoomStats() {
+        List<String> lines = new ArrayList<>();
+        for (Room room : rooms.rooms()) {
+            VoiceMixer mixer = room.mixer;
+            lines.add(room.roomId + " #" + room.id +
+                    ": members=" + room.members.length +
+                    ", in=" + room.packetsIn.sum() +
+                    ", out=" + room.packetsOut.sum() +
+                    ", outKB=" + room.bytesOut.sum() / 1024 +
+                    (mixer == null ? ", relay" :
+                            String.format(", mixing cpu=%.2f%% (%dus/tick), sendErrors=%d",
+                                    mixer.getCpuPercent(), mixer.getAvgTickMicros(), mixer.sendErrors.sum())));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,245 @@
+package com.edugame.server.network;
+
+import com.edugame.common.wire.VoiceHeader;
+import com.edugame.server.network.VoiceRoomTable.Member;
+import com.edugame.server.network.VoiceRoomTable.Room;
+import com.edugame.server.util.TimerService;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VoiceMixer - Trộn voice phía server cho một phòng
+ *
+ * Thay vì chuyển packet của mỗi người nói tới mọi người nghe (N² packet,
+ * mỗi client nhận N-1 stream), relay đẩy PCM vào bộ đệm của từng stream;
+ * mỗi tick (1 frame) mixer cộng các người đang nói và gửi cho mỗi người
+ * nghe đúng 1 packet = tổng trừ giọng của chính họ.
+ *
+ * - Mỗi stream có bộ đệm vòng nhỏ: chỉ bắt đầu lấy khi đã có PREBUFFER
+ *   frame (hấp thụ jitter), hết dữ liệu thì coi là im lặng và đệm lại
+ * - Người nghe không có ai khác đang nói thì không nhận gì
+ * - Packet trộn mang FLAG_MIXED và streamId = MIXED_STREAM
+ * - Thời gian CPU mỗi tick được cộng dồn để hiện trong status
+ *
+ * push() chạy trên relay worker, tick() trên TimerService (không bao giờ 2
+ * tick chạy cùng lúc); mỗi bộ đệm stream tự đồng bộ, buffer gửi chỉ tick dùng.
+ */
+final class VoiceMixer {
+
+    static final int FRAME_SAMPLES = 512;            // 32 ms at 16 kHz, same as a client frame
+    static final long FRAME_MICROS = FRAME_SAMPLES * 1_000_000L / 16_000;
+
+    private static final int PREBUFFER_FRAMES = 2;
+    private static final int MAX_BUFFERED_FRAMES = 6; // Older audio is dropped past this
+
+    /**
+     * PCM waiting to be mixed for one stream, plus that listener's output sequence
+     */
+    private static final class StreamBuffer {
+        final short[] ring = new short[FRAME_SAMPLES * MAX_BUFFERED_FRAMES];
+        final short[] frame = new short[FRAME_SAMPLES];
+        volatile Member owner;
+        int read;
+        int size;
+        boolean primed;
+        boolean speaking;  // Filled frame this tick (tick thread only)
+        int outSequence;   // tick thread only
+
+        synchronized void push(ByteBuffer packet, int offset, int length) {
+            int samples = length / 2;
+            for (int i = 0; i < samples; i++) {
+                if (size == ring.length) {
+                    read = (read + 1) % ring.length; // Full: drop oldest sample, keep latency bounded
+                    size--;
+                }
+                int at = (read + size) % ring.length;
+                // PCM is 16-bit little-endian
+                ring[at] = (short) ((packet.get(offset + 2 * i) & 0xFF) | (packet.get(offset + 2 * i + 1) << 8));
+                size++;
+            }
+        }
+
+        synchronized boolean pull() {
+            if (!primed) {
+                if (size < FRAME_SAMPLES * PREBUFFER_FRAMES) {
+                    return false;
+                }
+                primed = true;
+            }
+            if (size < FRAME_SAMPLES) {
+                primed = false; // Underrun: treat as silence, re-buffer before resuming
+                return false;
+            }
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                frame[i] = ring[read];
+                read = (read + 1) % ring.length;
+            }
+            size -= FRAME_SAMPLES;
+            return true;
+        }
+
+        synchronized void reset(Member member) {
+            owner = member;
+            read = 0;
+            size = 0;
+            primed = false;
+            outSequence = 0;
+        }
+    }
+
+    private final Room room;
+    private final DatagramChannel channel;
+    private final LongAdder serverPacketsOut;
+    private volatile StreamBuffer[] streams = new StreamBuffer[0];
+
+    private final int[] sum = new int[FRAME_SAMPLES];
+    private final ByteBuffer out = ByteBuffer.allocateDirect(VoiceHeader.SIZE + FRAME_SAMPLES * 2);
+    private int timestamp;
+
+    private ScheduledFuture<?> tickTask;
+    private final long startedAt = System.nanoTime();
+    final LongAdder mixNanos = new LongAdder();
+    final LongAdder ticks = new LongAdder();
+    final LongAdder sendErrors = new LongAdder();
+
+    VoiceMixer(Room room, DatagramChannel channel, LongAdder serverPacketsOut) {
+        this.room = room;
+        this.channel = channel;
+        this.serverPacketsOut = serverPacketsOut;
+    }
+
+    void start() {
+        tickTask = TimerService.getInstance().scheduleAtFixedRate(
+                this::tick, FRAME_MICROS, FRAME_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+    }
+
+    /**
+     * Queue the PCM of one packet (after its VoiceHeader) from a member
+     */
+    void push(Member sender, ByteBuffer packet) {
+        StreamBuffer stream = streamFor(sender);
+        stream.push(packet, VoiceHeader.SIZE, packet.limit() - VoiceHeader.SIZE);
+    }
+
+    private StreamBuffer streamFor(Member member) {
+        StreamBuffer[] s = streams;
+        StreamBuffer stream = member.streamId < s.length ? s[member.streamId] : null;
+        if (stream == null) {
+            synchronized (this) {
+                s = streams;
+                if (member.streamId >= s.length) {
+                    StreamBuffer[] grown = new StreamBuffer[member.streamId + 4];
+                    System.arraycopy(s, 0, grown, 0, s.length);
+                    s = grown;
+                }
+                stream = s[member.streamId];
+                if (stream == null) {
+                    stream = new StreamBuffer();
+                    s[member.streamId] = stream;
+                }
+                streams = s;
+            }
+        }
+        if (stream.owner != member) {
+            stream.reset(member); // Stream id reused by a new member
+        }
+        return stream;
+    }
+
+    private void tick() {
+        long begin = System.nanoTime();
+        try {
+            mix();
+        } catch (RuntimeException e) {
+            System.err.println("❌ [VoiceMixer " + room.roomId + "] Tick failed: " + e.getMessage());
+        } finally {
+            mixNanos.add(System.nanoTime() - begin);
+            ticks.increment();
+        }
+    }
+
+    private void mix() {
+        Member[] members = room.members;
+        Arrays.fill(sum, 0);
+        int speakers = 0;
+
+        for (Member member : members) {
+            StreamBuffer stream = streamFor(member);
+            stream.speaking = stream.pull();
+            if (stream.speaking) {
+                speakers++;
+                short[] frame = stream.frame;
+                for (int i = 0; i < FRAME_SAMPLES; i++) {
+                    sum[i] += frame[i];
+                }
+            }
+        }
+        int frameTimestamp = timestamp;
+        timestamp += FRAME_SAMPLES;
+        if (speakers == 0) {
+            return;
+        }
+
+        for (Member listener : members) {
+            StreamBuffer own = streamFor(listener);
+            if (speakers == 1 && own.speaking) {
+                continue; // Only their own voice - nothing to hear
+            }
+            out.clear();
+            out.put(0, (byte) VoiceHeader.MAGIC);
+            out.put(1, (byte) VoiceHeader.FLAG_MIXED);
+            out.putShort(2, (short) room.id);
+            out.putShort(4, (short) VoiceHeader.MIXED_STREAM);
+            out.putShort(6, (short) own.outSequence);
+            out.putInt(8, frameTimestamp);
+            own.outSequence = (own.outSequence + 1) & 0xFFFF;
+
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                int sample = own.speaking ? sum[i] - own.frame[i] : sum[i];
+                if (sample > Short.MAX_VALUE) sample = Short.MAX_VALUE;
+                if (sample < Short.MIN_VALUE) sample = Short.MIN_VALUE;
+                out.putShort(VoiceHeader.SIZE + 2 * i, (short) sample);
+            }
+            out.order(ByteOrder.BIG_ENDIAN);
+
+            try {
+                channel.send(out, listener.address);
+                room.packetsOut.increment();
+                room.bytesOut.add(out.capacity());
+                serverPacketsOut.increment();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                sendErrors.increment();
+            }
+        }
+    }
+
+    /**
+     * Share of one core spent mixing this room since it switched to mixing
+     */
+    double getCpuPercent() {
+        long elapsed = System.nanoTime() - startedAt;
+        return elapsed > 0 ? mixNanos.sum() * 100.0 / elapsed : 0;
+    }
+
+    long getAvgTickMicros() {
+        long n = ticks.sum();
+        return n > 0 ? mixNanos.sum() / n / 1000 : 0;
+    }
+}
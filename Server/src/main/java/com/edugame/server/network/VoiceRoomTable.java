@@ -0,0 +1,218 @@
+package com.edugame.server.network;
+
+import com.edugame.common.wire.VoiceHeader;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * VoiceRoomTable - Bảng phòng voice, mỗi roomId được "intern" thành một id số nhỏ
+ *
+ * - Khi JOIN_VOICE, phòng nhận một id (index trong byId) và người nói nhận
+ *   một streamId (index trong room.streams); client ghi 2 id này vào
+ *   VoiceHeader, relay chỉ cần tra mảng, không hash String
+ * - Danh sách thành viên / stream là mảng copy-on-write: relay duyệt không
+ *   cần lock, chỉ join / leave (hiếm) mới chép mảng
+ * - Id của phòng / stream đã đóng được dùng lại nên các mảng luôn nhỏ
+ *
+ * Ghi (join/leave) đồng bộ trên chính bảng; đọc không lock.
+ */
+final class VoiceRoomTable {
+
+    private static final Member[] NO_MEMBERS = new Member[0];
+
+    /**
+     * One voice room; id is the compact index into byId
+     */
+    static final class Room {
+        final int id;
+        final String roomId;
+
+        volatile Member[] members = NO_MEMBERS; // Dense, for fan-out
+        volatile Member[] streams = NO_MEMBERS; // Indexed by streamId, may contain nulls
+        volatile VoiceMixer mixer;              // null = relay packets as they come
+
+        final LongAdder packetsIn = new LongAdder();
+        final LongAdder packetsOut = new LongAdder();
+        final LongAdder bytesOut = new LongAdder();
+
+        Room(int id, String roomId) {
+            this.id = id;
+            this.roomId = roomId;
+        }
+
+        Member stream(int streamId) {
+            Member[] s = streams;
+            return streamId < s.length ? s[streamId] : null;
+        }
+    }
+
+    /**
+     * One voice client; address is resolved once at JOIN_VOICE
+     */
+    static final class Member {
+        final int userId;
+        final Room room;
+        final int streamId;
+        final InetSocketAddress address;
+        volatile long lastActivity;
+        volatile boolean silent; // Last packet was a comfort-noise marker
+
+        Member(int userId, Room room, int streamId, InetSocketAddress address, long now) {
+            this.userId = userId;
+            this.room = room;
+            this.streamId = streamId;
+            this.address = address;
+            this.lastActivity = now;
+        }
+    }
+
+    private final Map<String, Room> byName = new ConcurrentHashMap<>();
+    private final Map<Integer, Member> byUser = new ConcurrentHashMap<>();
+
+    private volatile Room[] byId = new Room[16];
+
+    /**
+     * Add (or move) a user into a room. A repeated JOIN_VOICE (client retry)
+     * keeps the ids already given out.
+     * @return the membership, or null if no room / stream id is left
+     */
+    synchronized Member join(int userId, String roomId, InetSocketAddress address, long now) {
+        Member current = byUser.get(userId);
+        if (current != null && current.room.roomId.equals(roomId) && current.address.equals(address)) {
+            current.lastActivity = now;
+            return current;
+        }
+        remove(userId);
+        Room room = byName.get(roomId);
+        if (room == null) {
+            room = intern(roomId);
+            if (room == null) {
+                return null;
+            }
+        }
+
+        Member[] streams = room.streams;
+        int streamId = freeSlot(streams);
+        if (streamId > VoiceHeader.MAX_ID) {
+            return null;
+        }
+        streams = streamId < streams.length ? streams.clone() : Arrays.copyOf(streams, streams.length + 4);
+
+        Member member = new Member(userId, room, streamId, address, now);
+        streams[streamId] = member;
+        Member[] members = Arrays.copyOf(room.members, room.members.length + 1);
+        members[members.length - 1] = member;
+        room.streams = streams;
+        room.members = members;
+        byUser.put(userId, member);
+        return member;
+    }
+
+    /**
+     * Remove a user from its room; empty rooms are released
+     */
+    synchronized Member remove(int userId) {
+        Member member = byUser.remove(userId);
+        if (member == null) {
+            return null;
+        }
+        Room room = member.room;
+        Member[] members = room.members;
+        int n = 0;
+        Member[] remaining = new Member[members.length];
+        for (Member m : members) {
+            if (m != member) {
+                remaining[n++] = m;
+            }
+        }
+        Member[] streams = room.streams.clone();
+        streams[member.streamId] = null;
+        room.streams = streams;
+        room.members = Arrays.copyOf(remaining, n);
+        if (n == 0) {
+            release(room);
+        }
+        return member;
+    }
+
+    /**
+     * Remove a user only if it is still in roomId (it may have joined another room since)
+     */
+    synchronized Member remove(int userId, String roomId) {
+        Member member = byUser.get(userId);
+        if (member == null || !member.room.roomId.equals(roomId)) {
+            return null;
+        }
+        return remove(userId);
+    }
+
+    synchronized void clear() {
+        byName.clear();
+        byUser.clear();
+        byId = new Room[16];
+    }
+
+    Room get(String roomId) {
+        return byName.get(roomId);
+    }
+
+    Room get(int id) {
+        Room[] rooms = byId;
+        return id < rooms.length ? rooms[id] : null;
+    }
+
+    Member getMember(int userId) {
+        return byUser.get(userId);
+    }
+
+    Collection<Room> rooms() {
+        return Collections.unmodifiableCollection(byName.values());
+    }
+
+    int roomCount() {
+        return byName.size();
+    }
+
+    int memberCount() {
+        return byUser.size();
+    }
+
+    // ==================== INTERNALS (hold the table lock) ====================
+
+    private Room intern(String roomId) {
+        Room[] rooms = byId;
+        int id = freeSlot(rooms);
+        if (id > VoiceHeader.MAX_ID) {
+            return null;
+        }
+        rooms = id < rooms.length ? rooms.clone() : Arrays.copyOf(rooms, rooms.length * 2);
+        Room room = new Room(id, roomId);
+        rooms[id] = room;
+        byId = rooms;
+        byName.put(roomId, room);
+        return room;
+    }
+
+    private void release(Room room) {
+        if (!byName.remove(room.roomId, room)) {
+            return;
+        }
+        Room[] rooms = byId.clone();
+        rooms[room.id] = null;
+        byId = rooms;
+    }
+
+    private static int freeSlot(Object[] slots) {
+        int i = 0;
+        while (i < slots.length && slots[i] != null) {
+            i++;
+        }
+        return i;
+    }
+}
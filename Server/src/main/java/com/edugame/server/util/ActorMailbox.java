@@ -0,0 +1,136 @@
+package com.edugame.server.util;
+
+import com.edugame.server.config.ConfigManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * ActorMailbox - Hộp thư của một "actor" (vd. một GameSession)
+ *
+ * - Mọi việc của actor (answer, timeout, disconnect, tick...) được xếp vào
+ *   hộp thư và chạy lần lượt, không bao giờ 2 việc cùng lúc → state của actor
+ *   không cần lock
+ * - Tất cả actor dùng chung một pool nhỏ (game.session.threads); actor không
+ *   có việc thì không giữ thread nào
+ * - Mỗi lượt chạy tối đa BATCH việc rồi nhường pool cho actor khác
+ */
+public final class ActorMailbox implements Executor {
+
+    private static final int BATCH = 32;
+
+    private static final AtomicLong processed = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+
+    private final String name;
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread runner;
+
+    public ActorMailbox(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Shared worker pool, created on first use
+     */
+    private static final class Pool {
+        static final ThreadPoolExecutor WORKERS;
+
+        static {
+            int threads = ConfigManager.getGameSessionThreads();
+            AtomicInteger ids = new AtomicInteger();
+            WORKERS = new ThreadPoolExecutor(
+                    threads, threads,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread t = new Thread(r, "SessionWorker-" + ids.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            WORKERS.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Xếp việc vào hộp thư (gọi từ thread nào cũng được, không block)
+     */
+    @Override
+    public void execute(Runnable task) {
+        queue.add(task);
+        if (pending.getAndIncrement() == 0) {
+            Pool.WORKERS.execute(this::drain);
+        }
+    }
+
+    /**
+     * Xếp việc có kết quả; future hoàn thành trên thread của actor
+     */
+    public <T> CompletableFuture<T> call(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                throw t;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * True when called from inside one of this actor's tasks
+     */
+    public boolean isActorThread() {
+        return runner == Thread.currentThread();
+    }
+
+    public int getQueuedCount() {
+        return pending.get();
+    }
+
+    private void drain() {
+        for (int n = 1; ; n++) {
+            runner = Thread.currentThread();
+            // pending > 0 is only reached after the matching add(), so poll() never misses
+            run(queue.poll());
+            // Clear before decrementing: once pending hits 0 another worker may take over
+            runner = null;
+            if (pending.decrementAndGet() == 0) {
+                return;
+            }
+            if (n >= BATCH) {
+                // More work queued: let other actors run first, we keep our turn
+                Pool.WORKERS.execute(this::drain);
+                return;
+            }
+        }
+    }
+
+    private void run(Runnable task) {
+        processed.incrementAndGet();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            System.err.println("❌ [Actor " + name + "] Task failed: " + t.getMessage());
+            t.printStackTrace();
+        }
+    }
+
+    public static String getSummary() {
+        return "workers=" + Pool.WORKERS.getActiveCount() + "/" + Pool.WORKERS.getMaximumPoolSize() +
+                ", queued=" + Pool.WORKERS.getQueue().size() +
+                ", processed=" + processed.get() +
+                ", failed=" + failed.get();
+    }
+}
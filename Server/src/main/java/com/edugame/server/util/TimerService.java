@@ -0,0 +1,129 @@
+package com.edugame.server.util;
+
+import com.edugame.server.config.ConfigManager;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TimerService - Một timer dùng chung cho toàn server
+ *
+ * - 1 tick thread chỉ giữ hàng đợi timer (question timeout, position
+ *   broadcast, game duration, matchmaking timeout, heartbeat check...)
+ * - Khi đến hạn, callback được chuyển sang một pool nhỏ để callback chậm
+ *   (DB khi kết thúc game) không làm trễ các timer khác
+ * - Timer bị cancel được gỡ khỏi hàng đợi ngay (removeOnCancel)
+ */
+public final class TimerService {
+
+    private static volatile TimerService instance;
+
+    private final ScheduledThreadPoolExecutor ticker;
+    private final ExecutorService workers;
+
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private TimerService() {
+        this.ticker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "TimerTick");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ticker.setRemoveOnCancelPolicy(true);
+        this.ticker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        int threads = ConfigManager.getTimerWorkerThreads();
+        AtomicInteger ids = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "TimerWorker-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        ((ThreadPoolExecutor) this.workers).allowCoreThreadTimeOut(true);
+    }
+
+    public static TimerService getInstance() {
+        if (instance == null) {
+            synchronized (TimerService.class) {
+                if (instance == null) {
+                    instance = new TimerService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Chạy task một lần sau delay. Gọi cancel(false) trên kết quả để huỷ.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return ticker.schedule(() -> workers.execute(() -> run(task)), delay, unit);
+    }
+
+    /**
+     * Chạy task lặp lại. Một lần chạy chậm không làm dồn các lần sau
+     * (lần tiếp theo bị bỏ qua nếu lần trước chưa xong).
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        AtomicInteger inFlight = new AtomicInteger();
+        return ticker.scheduleAtFixedRate(() -> {
+            if (inFlight.compareAndSet(0, 1)) {
+                workers.execute(() -> {
+                    try {
+                        run(task);
+                    } finally {
+                        inFlight.set(0);
+                    }
+                });
+            }
+        }, initialDelay, period, unit);
+    }
+
+    private void run(Runnable task) {
+        fired.incrementAndGet();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            System.err.println("❌ [Timer] Task failed: " + t.getMessage());
+            t.printStackTrace();
+        }
+    }
+
+    /**
+     * Timers waiting to fire (repeating timers count once)
+     */
+    public int getPendingCount() {
+        return ticker.getQueue().size();
+    }
+
+    public String getSummary() {
+        return "pending=" + getPendingCount() +
+                ", fired=" + fired.get() +
+                ", failed=" + failed.get();
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(2, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -23,6 +23,11 @@ import java.util.*;
 class ApiStatsHandler implements HttpHandler {
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final WebExecutor executor;
+
+    ApiStatsHandler(WebExecutor executor) {
+        this.executor = executor;
+    }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
@@ -51,6 +56,7 @@ class ApiStatsHandler implements HttpHandler {
             serverInfo.put("uptimeMs",
                     java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime());
             stats.put("server", serverInfo);
+            stats.put("web", executor.getStats());
 
             String json = gson.toJson(stats);
             WebServer.sendResponse(exchange, 200, json, "application/json");
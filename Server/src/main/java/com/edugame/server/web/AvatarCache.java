@@ -0,0 +1,332 @@
+package com.edugame.server.web;
+
+import com.edugame.server.config.ConfigManager;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AvatarCache - Avatar (và thumbnail) đã đọc sẵn trong bộ nhớ
+ *
+ * - LRU giới hạn theo tổng số byte (web.avatar.cache.bytes)
+ * - File lớn hơn web.avatar.inline.max.bytes không nạp vào RAM, handler gửi
+ *   thẳng từ file bằng FileChannel.transferTo
+ * - Avatar trên filesystem được kiểm tra lại (size + mtime) mỗi lần lấy,
+ *   avatar trong resources thì bất biến
+ * - Thumbnail (?size=N) được tạo lần đầu rồi cache như avatar thường
+ */
+final class AvatarCache {
+
+    private static final String RESOURCE_DIR = "/images/avatars/";
+    private static final Path EXTERNAL_DIR = Paths.get("avatars");
+
+    // Thumbnail sizes we render; other requests snap to the next one up
+    private static final int[] THUMBNAIL_SIZES = {32, 48, 64, 96, 128, 256};
+
+    // Metadata cost of an entry whose bytes stay on disk
+    private static final int FILE_ENTRY_WEIGHT = 256;
+
+    private static final AvatarCache INSTANCE = new AvatarCache();
+
+    private final long maxBytes;
+    private final long inlineMaxBytes;
+    private final long startedAt = System.currentTimeMillis();
+
+    // Guarded by this
+    private final LinkedHashMap<String, Avatar> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong thumbnails = new AtomicLong();
+
+    private AvatarCache() {
+        this.maxBytes = ConfigManager.getWebAvatarCacheBytes();
+        this.inlineMaxBytes = ConfigManager.getWebAvatarInlineMaxBytes();
+    }
+
+    static AvatarCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param size thumbnail size in px, 0 = original
+     * @return null if no such avatar
+     */
+    Avatar get(String filename, int size) throws IOException {
+        Avatar original = resolve(filename);
+        if (original == null || size <= 0) {
+            return original;
+        }
+
+        int snapped = snapSize(size);
+        String key = filename + "@" + snapped;
+        Avatar thumb = lookup(key);
+        if (thumb != null && thumb.sourceEtag.equals(original.etag)) {
+            hits.incrementAndGet();
+            return thumb;
+        }
+
+        thumb = makeThumbnail(original, snapped);
+        store(key, thumb);
+        return thumb;
+    }
+
+    String getStatsSummary() {
+        synchronized (this) {
+            return "entries=" + entries.size() +
+                    ", bytes=" + cachedBytes / 1024 + "KB" +
+                    ", hits=" + hits.get() +
+                    ", loads=" + loads.get() +
+                    ", thumbnails=" + thumbnails.get();
+        }
+    }
+
+    // ==================== LOADING ====================
+
+    private Avatar resolve(String filename) throws IOException {
+        Avatar cached = lookup(filename);
+        if (cached != null) {
+            if (cached.path == null || isUnchanged(cached)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            evict(filename);
+        }
+
+        Avatar loaded = loadResource(filename);
+        if (loaded == null) {
+            loaded = loadFile(filename);
+        }
+        if (loaded != null) {
+            loads.incrementAndGet();
+            store(filename, loaded);
+        }
+        return loaded;
+    }
+
+    private Avatar loadResource(String filename) throws IOException {
+        URL url = AvatarCache.class.getResource(RESOURCE_DIR + filename);
+        if (url == null) {
+            return null;
+        }
+        URLConnection conn = url.openConnection();
+        long lastModified = conn.getLastModified();
+        byte[] bytes;
+        try (InputStream in = conn.getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        return Avatar.inMemory(bytes, null, contentTypeOf(filename),
+                lastModified > 0 ? lastModified : startedAt, null, true);
+    }
+
+    private Avatar loadFile(String filename) throws IOException {
+        Path path = EXTERNAL_DIR.resolve(filename);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (attrs.size() > inlineMaxBytes) {
+            return Avatar.onDisk(path, attrs.size(), contentTypeOf(filename), lastModified);
+        }
+        return Avatar.inMemory(Files.readAllBytes(path), path, contentTypeOf(filename), lastModified, null, false);
+    }
+
+    private boolean isUnchanged(Avatar cached) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(cached.path, BasicFileAttributes.class);
+            return attrs.size() == cached.length
+                    && attrs.lastModifiedTime().toMillis() == cached.lastModified;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Thu nhỏ vừa khung size x size (giữ tỉ lệ). Ảnh đã nhỏ hơn hoặc định dạng
+     * không đọc/ghi được thì dùng lại chính ảnh gốc (vẫn cache để khỏi decode lại).
+     */
+    private Avatar makeThumbnail(Avatar original, int size) throws IOException {
+        BufferedImage source;
+        if (original.bytes != null) {
+            source = ImageIO.read(new ByteArrayInputStream(original.bytes));
+        } else {
+            source = ImageIO.read(original.path.toFile());
+        }
+        if (source == null || (source.getWidth() <= size && source.getHeight() <= size)) {
+            return original.sharedAsThumbnail();
+        }
+
+        boolean jpeg = "image/jpeg".equals(original.contentType);
+        double scale = Math.min((double) size / source.getWidth(), (double) size / source.getHeight());
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(scaled, jpeg ? "jpeg" : "png", out)) {
+            return original.sharedAsThumbnail();
+        }
+        thumbnails.incrementAndGet();
+        return Avatar.inMemory(out.toByteArray(), null, jpeg ? "image/jpeg" : "image/png",
+                original.lastModified, original.etag, original.immutable);
+    }
+
+    static int snapSize(int size) {
+        for (int candidate : THUMBNAIL_SIZES) {
+            if (size <= candidate) {
+                return candidate;
+            }
+        }
+        return THUMBNAIL_SIZES[THUMBNAIL_SIZES.length - 1];
+    }
+
+    static String contentTypeOf(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".gif")) return "image/gif";
+        if (lower.endsWith(".webp")) return "image/webp";
+        return "application/octet-stream";
+    }
+
+    // ==================== LRU ====================
+
+    private synchronized Avatar lookup(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void store(String key, Avatar avatar) {
+        Avatar old = entries.put(key, avatar);
+        if (old != null) {
+            cachedBytes -= old.weight();
+        }
+        cachedBytes += avatar.weight();
+
+        Iterator<Map.Entry<String, Avatar>> it = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Avatar> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue; // Keep what we just loaded even if it alone exceeds the budget
+            }
+            cachedBytes -= eldest.getValue().weight();
+            it.remove();
+        }
+    }
+
+    /**
+     * Drop an avatar and its thumbnails
+     */
+    private synchronized void evict(String filename) {
+        Iterator<Map.Entry<String, Avatar>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Avatar> entry = it.next();
+            String key = entry.getKey();
+            if (key.equals(filename) || key.startsWith(filename + "@")) {
+                cachedBytes -= entry.getValue().weight();
+                it.remove();
+            }
+        }
+    }
+
+    // ==================== AVATAR ====================
+
+    /**
+     * Một avatar sẵn sàng để gửi: bytes trong RAM, hoặc path nếu file lớn
+     */
+    static final class Avatar {
+        final byte[] bytes;        // null → stream from path
+        final Path path;           // set for filesystem avatars (used to revalidate)
+        final long length;
+        final String contentType;
+        final String etag;
+        final String sourceEtag;   // thumbnails: etag of the original they were made from
+        final long lastModified;
+        final boolean immutable;   // bundled in resources - never changes while running
+        private final boolean shared; // same bytes as another entry - not counted twice
+
+        private Avatar(byte[] bytes, Path path, long length, String contentType,
+                       String etag, String sourceEtag, long lastModified, boolean immutable, boolean shared) {
+            this.bytes = bytes;
+            this.path = path;
+            this.length = length;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.sourceEtag = sourceEtag;
+            this.lastModified = lastModified;
+            this.immutable = immutable;
+            this.shared = shared;
+        }
+
+        static Avatar inMemory(byte[] bytes, Path path, String contentType, long lastModified,
+                               String sourceEtag, boolean immutable) {
+            return new Avatar(bytes, path, bytes.length, contentType, etagOf(bytes),
+                    sourceEtag, lastModified, immutable, false);
+        }
+
+        static Avatar onDisk(Path path, long length, String contentType, long lastModified) {
+            // Hashing a large file on every change is what we are avoiding - size + mtime is enough
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            return new Avatar(null, path, length, contentType, etag, null, lastModified, false, false);
+        }
+
+        /**
+         * This avatar served as its own thumbnail
+         */
+        Avatar sharedAsThumbnail() {
+            return new Avatar(bytes, path, length, contentType, etag, etag, lastModified, immutable, true);
+        }
+
+        private long weight() {
+            return bytes != null && !shared ? bytes.length : FILE_ENTRY_WEIGHT;
+        }
+
+        private static String etagOf(byte[] bytes) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                return "\"" + Integer.toHexString(java.util.Arrays.hashCode(bytes)) + "-" + bytes.length + "\"";
+            }
+        }
+    }
+}
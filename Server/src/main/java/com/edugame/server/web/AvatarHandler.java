@@ -1,15 +1,25 @@
 package com.edugame.server.web;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 /**
  * ✅ AvatarHandler - Serve avatar images từ resources
+ *
+ * Ảnh lấy qua AvatarCache (không đọc lại file mỗi request).
+ * Hỗ trợ ETag / Last-Modified → 304 và thumbnail: /avatars/a.png?size=64
  */
 public class AvatarHandler implements HttpHandler {
 
@@ -20,65 +30,118 @@ public class AvatarHandler implements HttpHandler {
 
         // Security: Chỉ cho phép file image
         if (!filename.matches(".*\\.(png|jpg|jpeg|gif|webp)$")) {
-            exchange.sendResponseHeaders(400, 0);
+            exchange.sendResponseHeaders(400, -1);
             exchange.close();
             return;
         }
 
         try {
-            // 1. Thử load từ resources (trong JAR)
-            InputStream resourceStream = getClass().getResourceAsStream("/images/avatars/" + filename);
-
-            if (resourceStream != null) {
-                byte[] imageBytes = resourceStream.readAllBytes();
-                resourceStream.close();
-
-                String contentType = getContentType(filename);
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.getResponseHeaders().set("Cache-Control", "public, max-age=86400"); // Cache 1 ngày
-                exchange.sendResponseHeaders(200, imageBytes.length);
-
-                OutputStream os = exchange.getResponseBody();
-                os.write(imageBytes);
-                os.close();
-
-                System.out.println("✅ Served avatar from resources: " + filename);
+            AvatarCache.Avatar avatar = AvatarCache.getInstance().get(filename,
+                    parseSize(exchange.getRequestURI().getQuery()));
+            if (avatar == null) {
+                send404(exchange, filename);
                 return;
             }
+            send(exchange, avatar);
 
-            // 2. Thử load từ filesystem (nếu có thư mục external)
-            Path externalPath = Paths.get("avatars/" + filename);
-            if (Files.exists(externalPath)) {
-                byte[] imageBytes = Files.readAllBytes(externalPath);
+        } catch (IOException e) {
+            System.err.println("❌ Error serving avatar: " + e.getMessage());
+            send404(exchange, filename);
+        }
+    }
 
-                String contentType = getContentType(filename);
-                exchange.getResponseHeaders().set("Content-Type", contentType);
-                exchange.sendResponseHeaders(200, imageBytes.length);
+    private void send(HttpExchange exchange, AvatarCache.Avatar avatar) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", avatar.contentType);
+        headers.set("ETag", avatar.etag);
+        headers.set("Last-Modified", httpDate(avatar.lastModified));
+        // Resources never change while running; filesystem avatars may be replaced
+        headers.set("Cache-Control", avatar.immutable ? "public, max-age=86400" : "public, max-age=300");
 
-                OutputStream os = exchange.getResponseBody();
-                os.write(imageBytes);
-                os.close();
+        if (isNotModified(exchange.getRequestHeaders(), avatar)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
 
-                System.out.println("✅ Served avatar from filesystem: " + filename);
-                return;
+        boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(200, head ? -1 : avatar.length);
+        if (head) {
+            exchange.close();
+            return;
+        }
+
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (avatar.bytes != null) {
+                os.write(avatar.bytes);
+            } else {
+                // Large file: stream it in chunks instead of caching the whole file
+                // (the response is not a socket channel, so this still copies through a heap buffer)
+                try (FileChannel file = FileChannel.open(avatar.path, StandardOpenOption.READ)) {
+                    WritableByteChannel out = Channels.newChannel(os);
+                    long position = 0;
+                    while (position < avatar.length) {
+                        long sent = file.transferTo(position, avatar.length - position, out);
+                        if (sent <= 0) {
+                            throw new EOFException("Avatar file shrank while sending");
+                        }
+                        position += sent;
+                    }
+                }
             }
+        }
+    }
 
-            // 3. Không tìm thấy → 404
-            send404(exchange, filename);
+    /**
+     * If-None-Match wins over If-Modified-Since (RFC 9110)
+     */
+    private boolean isNotModified(Headers request, AvatarCache.Avatar avatar) {
+        String ifNoneMatch = request.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(avatar.etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        } catch (IOException e) {
-            System.err.println("❌ Error serving avatar: " + e.getMessage());
-            send404(exchange, filename);
+        String ifModifiedSince = request.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli();
+                return avatar.lastModified / 1000 <= since / 1000; // HTTP dates have 1 s precision
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * ?size=64 → 64, thiếu / sai → 0 (ảnh gốc)
+     */
+    private int parseSize(String query) {
+        if (query == null) {
+            return 0;
+        }
+        for (String param : query.split("&")) {
+            if (param.startsWith("size=")) {
+                try {
+                    return Math.max(0, Integer.parseInt(param.substring(5)));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
         }
+        return 0;
     }
 
-    private String getContentType(String filename) {
-        String lower = filename.toLowerCase();
-        if (lower.endsWith(".png")) return "image/png";
-        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
-        if (lower.endsWith(".gif")) return "image/gif";
-        if (lower.endsWith(".webp")) return "image/webp";
-        return "application/octet-stream";
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
     }
 
     private void send404(HttpExchange exchange, String filename) throws IOException {
@@ -90,4 +153,4 @@ public class AvatarHandler implements HttpHandler {
 
         System.err.println("⚠️ Avatar not found: " + filename);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,255 @@
+package com.edugame.server.web;
+
+import com.edugame.server.config.ConfigManager;
+import com.edugame.server.database.GameResultWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * PageCache - Trang HTML đã render sẵn cho /leaderboard, /statistics, /profile
+ *
+ * - Giữ bytes UTF-8 + bản gzip + ETag của mỗi trang
+ * - Render lại khi hết TTL hoặc khi có kết quả game mới được ghi
+ * - Mỗi key chỉ một thread render, các request khác chờ rồi dùng chung kết quả
+ * - If-None-Match khớp → 304, Accept-Encoding: gzip → gửi bản nén
+ * - Bản gzip có ETag riêng (hậu tố -gz) vì bytes khác bản gốc
+ */
+final class PageCache {
+
+    /**
+     * Builds the page HTML, or returns null if there is nothing to show (not cached)
+     */
+    @FunctionalInterface
+    interface Renderer {
+        String render() throws SQLException;
+    }
+
+    // Gzip is not worth it for tiny bodies
+    private static final int MIN_GZIP_BYTES = 1024;
+
+    private static final PageCache INSTANCE = new PageCache();
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final int maxEntries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    private PageCache() {
+        this.ttlMs = ConfigManager.getWebCacheTtlMs();
+        this.maxEntries = ConfigManager.getWebCacheMaxEntries();
+    }
+
+    static PageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gửi trang key (render nếu cần).
+     *
+     * @return false if the renderer returned null - the caller sends its own error page
+     */
+    boolean serve(HttpExchange exchange, String key, Renderer renderer) throws IOException, SQLException {
+        Page page = lookup(key, renderer);
+        if (page == null) {
+            return false;
+        }
+
+        boolean gzip = page.gzip != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        String etag = gzip ? page.gzipEtag : page.etag;
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        headers.set("Vary", "Accept-Encoding");
+        headers.set("Access-Control-Allow-Origin", "*");
+
+        if (matchesEtag(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            WebServer.log("📤 " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " → 304");
+            return true;
+        }
+
+        byte[] body = page.body;
+        if (gzip) {
+            body = page.gzip;
+            headers.set("Content-Encoding", "gzip");
+        }
+        headers.set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+        WebServer.log("📤 " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + " → 200");
+        return true;
+    }
+
+    String getStatsSummary() {
+        return "pages=" + slots.size() +
+                ", hits=" + hits.get() +
+                ", renders=" + renders.get() +
+                ", 304=" + notModified.get();
+    }
+
+    // ==================== INTERNAL ====================
+
+    private Page lookup(String key, Renderer renderer) throws SQLException {
+        long version = GameResultWriter.getInstance().getWrittenCount();
+
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            if (slots.size() >= maxEntries) {
+                evict();
+            }
+            slot = slots.computeIfAbsent(key, k -> new Slot());
+        }
+
+        Page page = slot.page;
+        if (isFresh(page, version)) {
+            hits.incrementAndGet();
+            return page;
+        }
+
+        synchronized (slot) {
+            page = slot.page;
+            if (isFresh(page, version)) {
+                hits.incrementAndGet(); // Someone else rendered it while we waited
+                return page;
+            }
+            String html = renderer.render();
+            renders.incrementAndGet();
+            if (html == null) {
+                slots.remove(key, slot);
+                return null;
+            }
+            page = Page.of(html, version);
+            slot.page = page;
+            return page;
+        }
+    }
+
+    private boolean isFresh(Page page, long version) {
+        return page != null
+                && page.version == version
+                && System.currentTimeMillis() - page.renderedAt < ttlMs;
+    }
+
+    /**
+     * Bỏ các trang hết hạn; nếu vẫn đầy thì bỏ trang cũ nhất
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        String oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            Page page = entry.getValue().page;
+            if (page == null) {
+                continue; // Being rendered
+            }
+            if (now - page.renderedAt >= ttlMs) {
+                slots.remove(entry.getKey(), entry.getValue());
+            } else if (page.renderedAt < oldest) {
+                oldest = page.renderedAt;
+                oldestKey = entry.getKey();
+            }
+        }
+        if (slots.size() >= maxEntries && oldestKey != null) {
+            slots.remove(oldestKey);
+        }
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (tokens[0].trim().equalsIgnoreCase("gzip")) {
+                return tokens.length < 2 || !tokens[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    private static final class Slot {
+        volatile Page page;
+    }
+
+    /**
+     * Một trang đã render - bất biến
+     */
+    private static final class Page {
+        final byte[] body;
+        final byte[] gzip;
+        final String etag;
+        final String gzipEtag;
+        final long version;
+        final long renderedAt;
+
+        private Page(byte[] body, byte[] gzip, String etag, long version) {
+            this.body = body;
+            this.gzip = gzip;
+            this.etag = etag;
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.version = version;
+            this.renderedAt = System.currentTimeMillis();
+        }
+
+        static Page of(String html, long version) {
+            byte[] body = html.getBytes(StandardCharsets.UTF_8);
+            return new Page(body, body.length >= MIN_GZIP_BYTES ? gzip(body) : null, etagOf(body), version);
+        }
+
+        private static String etagOf(byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                return "\"" + Integer.toHexString(java.util.Arrays.hashCode(body)) + "-" + body.length + "\"";
+            }
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(body);
+            } catch (IOException e) {
+                return null; // Cannot happen in memory - just send uncompressed
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -34,30 +34,38 @@ public class ProfileHandler implements HttpHandler {
                 return;
             }
 
-            // Get user data from UserDAO
-            UserDAO userDAO = new UserDAO();
-            UserDAO.PlayerInfo player = userDAO.getPlayerInfoById(userId);
-
-            if (player == null) {
+            boolean found = PageCache.getInstance().serve(exchange, "profile:" + userId,
+                    () -> renderPage(userId));
+            if (!found) {
                 sendError(exchange, "User not found");
-                return;
             }
 
-            // Get game history
-            GameResultDAO gameResultDAO = new GameResultDAO();
-            List<GameResultDAO.GameResult> history = gameResultDAO.getUserGameHistory(userId, 10);
-
-            // Build HTML
-            String html = buildProfilePage(player, history);
-
-            WebServer.sendResponse(exchange, 200, html, "text/html");
-
         } catch (SQLException e) {
             e.printStackTrace();
             sendError(exchange, "Database error: " + e.getMessage());
         }
     }
 
+    /**
+     * @return null if the user does not exist
+     */
+    private String renderPage(int userId) throws SQLException {
+        // Get user data from UserDAO
+        UserDAO userDAO = new UserDAO();
+        UserDAO.PlayerInfo player = userDAO.getPlayerInfoById(userId);
+
+        if (player == null) {
+            return null;
+        }
+
+        // Get game history
+        GameResultDAO gameResultDAO = new GameResultDAO();
+        List<GameResultDAO.GameResult> history = gameResultDAO.getUserGameHistory(userId, 10);
+
+        // Build HTML
+        return buildProfilePage(player, history);
+    }
+
     private String buildProfilePage(UserDAO.PlayerInfo player,
                                     List<GameResultDAO.GameResult> history) {
 
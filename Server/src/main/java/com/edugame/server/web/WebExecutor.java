@@ -0,0 +1,246 @@
+package com.edugame.server.web;
+
+import com.edugame.server.config.ConfigManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebExecutor - Executor cho HttpServer, chọn qua web.executor
+ *
+ *  - "pool"    : web.threads thread, hàng đợi tối đa web.queue.max;
+ *                đầy thì request bị trả 503 ngay (không xếp hàng vô hạn)
+ *  - "virtual" : mỗi request một virtual thread (Java 21+), nếu JVM không
+ *                hỗ trợ thì quay về "pool"
+ *
+ * instrument() bọc từng handler để đo latency, thời gian chờ trong hàng đợi
+ * và trả 503 cho request bị từ chối.
+ */
+final class WebExecutor implements Executor {
+
+    static final String MODE_POOL = "pool";
+    static final String MODE_VIRTUAL = "virtual";
+
+    // Histogram bucket upper bounds (ms), last bucket is everything above
+    private static final long[] BUCKET_BOUNDS_MS = {5, 20, 100, 500, 2000};
+
+    // Set while a rejected request runs on the dispatcher thread
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+    // Nanos the current request spent queued before a thread picked it up
+    private static final ThreadLocal<Long> QUEUE_WAIT = new ThreadLocal<>();
+
+    private final String mode;
+    private final ExecutorService delegate;
+    private final ThreadPoolExecutor pool; // null in virtual mode
+    private final int queueMax;
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+
+    private WebExecutor(String mode, ExecutorService delegate, ThreadPoolExecutor pool, int queueMax) {
+        this.mode = mode;
+        this.delegate = delegate;
+        this.pool = pool;
+        this.queueMax = queueMax;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Build the executor configured by web.executor / web.threads / web.queue.max
+     */
+    static WebExecutor create() {
+        String mode = ConfigManager.getWebExecutorMode();
+        if (MODE_VIRTUAL.equals(mode)) {
+            ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) {
+                return new WebExecutor(MODE_VIRTUAL, virtual, null, 0);
+            }
+            System.err.println("⚠️ [Web] Virtual threads need Java 21+, using a thread pool");
+        } else if (!MODE_POOL.equals(mode)) {
+            System.err.println("⚠️ [Web] Unknown web.executor '" + mode + "', using a thread pool");
+        }
+
+        int threads = ConfigManager.getWebThreads();
+        int queueMax = ConfigManager.getWebQueueMax();
+        AtomicInteger ids = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueMax),
+                r -> {
+                    Thread t = new Thread(r, "WebHandler-" + ids.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return new WebExecutor(MODE_POOL, pool, pool, queueMax);
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up at runtime - we still compile for Java 17
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        waiting.incrementAndGet();
+        Runnable timed = () -> {
+            waiting.decrementAndGet();
+            QUEUE_WAIT.set(System.nanoTime() - enqueuedAt);
+            try {
+                task.run();
+            } finally {
+                QUEUE_WAIT.remove();
+            }
+        };
+
+        try {
+            delegate.execute(timed);
+        } catch (RejectedExecutionException e) {
+            waiting.decrementAndGet();
+            // Queue full (or shutting down): run on the dispatcher thread, the handler only answers 503
+            SHEDDING.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                SHEDDING.remove();
+            }
+        }
+    }
+
+    /**
+     * Wrap a handler with metrics and load shedding
+     */
+    HttpHandler instrument(HttpHandler handler) {
+        return exchange -> {
+            if (SHEDDING.get() != null) {
+                shed.increment();
+                sendBusy(exchange);
+                return;
+            }
+
+            Long queueNanos = QUEUE_WAIT.get();
+            if (queueNanos != null) {
+                totalQueueNanos.add(queueNanos);
+            }
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                handler.handle(exchange);
+                failed = exchange.getResponseCode() >= 500;
+            } finally {
+                inFlight.decrementAndGet();
+                record(System.nanoTime() - start, failed);
+            }
+        };
+    }
+
+    private void record(long nanos, boolean failed) {
+        requests.increment();
+        totalNanos.add(nanos);
+        if (failed) {
+            errors.increment();
+        }
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+    }
+
+    private static void sendBusy(HttpExchange exchange) throws IOException {
+        byte[] body = "Server busy, please retry".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.sendResponseHeaders(503, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Snapshot for /api/stats
+     */
+    Map<String, Object> getStats() {
+        long n = requests.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("executor", mode);
+        if (pool != null) {
+            stats.put("threads", pool.getMaximumPoolSize());
+            stats.put("activeThreads", pool.getActiveCount());
+            stats.put("queueMax", queueMax);
+        }
+        stats.put("queueDepth", waiting.get());
+        stats.put("inFlight", inFlight.get());
+        stats.put("requests", n);
+        stats.put("errors", errors.sum());
+        stats.put("shed", shed.sum());
+        stats.put("avgLatencyMs", round2(totalNanos.sum() / 1e6 / Math.max(1, n)));
+        stats.put("avgQueueWaitMs", round2(totalQueueNanos.sum() / 1e6 / Math.max(1, n)));
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            String label = i < BUCKET_BOUNDS_MS.length
+                    ? "<" + BUCKET_BOUNDS_MS[i] + "ms"
+                    : ">=" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms";
+            histogram.put(label, buckets[i].sum());
+        }
+        stats.put("latencyHistogram", histogram);
+        return stats;
+    }
+
+    String getSummary() {
+        return mode + ", queued=" + waiting.get() +
+                ", inFlight=" + inFlight.get() +
+                ", requests=" + requests.sum() +
+                ", shed=" + shed.sum();
+    }
+
+    void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(2, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -9,7 +9,6 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.Executors;
 
 /**
  * WebServer - Simple HTTP Server for web interface
@@ -31,6 +30,7 @@ public class WebServer {
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     private HttpServer server;
+    private WebExecutor executor;
     private boolean running;
 
     public WebServer() {
@@ -44,25 +44,27 @@ public class WebServer {
         // Create HTTP server
         server = HttpServer.create(new InetSocketAddress(WEB_PORT), 0);
 
+        // Executor from config (bounded pool or virtual threads)
+        executor = WebExecutor.create();
+
         // Register endpoints
-        server.createContext("/", new HomeHandler());
-        server.createContext("/leaderboard", new LeaderboardHandler());
-        server.createContext("/statistics", new StatisticsHandler());
-        server.createContext("/profile", new ProfileHandler());
-        server.createContext("/api/stats", new ApiStatsHandler());
-        server.createContext("/api/leaderboard", new ApiLeaderboardHandler());
+        server.createContext("/", executor.instrument(new HomeHandler()));
+        server.createContext("/leaderboard", executor.instrument(new LeaderboardHandler()));
+        server.createContext("/statistics", executor.instrument(new StatisticsHandler()));
+        server.createContext("/profile", executor.instrument(new ProfileHandler()));
+        server.createContext("/api/stats", executor.instrument(new ApiStatsHandler(executor)));
+        server.createContext("/api/leaderboard", executor.instrument(new ApiLeaderboardHandler()));
 
 
-        server.createContext("/avatars", new AvatarHandler());
+        server.createContext("/avatars", executor.instrument(new AvatarHandler()));
 
-        // Set executor (thread pool)
-        server.setExecutor(Executors.newFixedThreadPool(10));
+        server.setExecutor(executor);
 
         // Start server
         server.start();
         running = true;
 
-        log("✅ Web Server started on port " + WEB_PORT);
+        log("✅ Web Server started on port " + WEB_PORT + " (" + executor.getSummary() + ")");
         log("📱 Access at: http://localhost:" + WEB_PORT);
         log("📊 Leaderboard: http://localhost:" + WEB_PORT + "/leaderboard");
         log("📈 Statistics: http://localhost:" + WEB_PORT + "/statistics");
@@ -74,6 +76,7 @@ public class WebServer {
     public void stop() {
         if (server != null && running) {
             server.stop(0);
+            executor.shutdown();
             running = false;
             log("🛑 Web Server stopped");
         }
@@ -93,6 +96,27 @@ public class WebServer {
         return "http://localhost:" + WEB_PORT;
     }
 
+    /**
+     * Rendered page cache stats (leaderboard / statistics / profile)
+     */
+    public String getPageCacheSummary() {
+        return PageCache.getInstance().getStatsSummary();
+    }
+
+    /**
+     * Request executor stats (mode, queue depth, requests, shed)
+     */
+    public String getExecutorSummary() {
+        return executor != null ? executor.getSummary() : "not started";
+    }
+
+    /**
+     * Avatar cache stats
+     */
+    public String getAvatarCacheSummary() {
+        return AvatarCache.getInstance().getStatsSummary();
+    }
+
     // ==================== HANDLERS ====================
 
     /**
@@ -268,7 +292,7 @@ public class WebServer {
     /**
      * Logging with timestamp
      */
-    private static void log(String message) {
+    static void log(String message) {
         String timestamp = LocalDateTime.now().format(TIME_FORMAT);
         System.out.println("[" + timestamp + "] [WebServer] " + message);
     }
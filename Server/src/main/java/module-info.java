@@ -8,9 +8,11 @@ module com.edugame.server {
     requires java.management;
     requires org.apache.poi.ooxml;
     requires java.net.http;
+    requires java.desktop; // ImageIO for avatar thumbnails
 
     opens com.edugame.server.controller to javafx.fxml;
 
     opens com.edugame.server to javafx.fxml;
+    opens com.edugame.server.database to com.google.gson; // GameResultWriter journal records
     exports com.edugame.server;
 }
\ No newline at end of file